@@ -0,0 +1,54 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.execution;
+
+/**
+ * An {@link Execution} that can be composed with further processing of its result without blocking any thread.
+ * <p>
+ * Functions are applied by the thread that completes the execution, or by the calling thread if the execution is
+ * already completed. If the execution fails or is terminated, derived executions fail as well without the function
+ * being called. Terminating a derived execution does not terminate the original one.
+ *
+ * @param <RESULT>
+ *     Type of result to be returned from this execution
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+public interface CompletableExecution<RESULT> extends ObservableExecution<RESULT> {
+
+    /**
+     * Creates an execution that completes with result of this execution transformed by {@code function}
+     *
+     * @param function
+     *     transformation of the result
+     *
+     * @return derived execution
+     */
+    <OUT> CompletableExecution<OUT> thenApply(ExecutionFunction<? super RESULT, ? extends OUT> function);
+
+    /**
+     * Creates an execution that completes with result of the execution returned by {@code function}. The function is
+     * called with result of this execution.
+     *
+     * @param function
+     *     function that starts next execution
+     *
+     * @return derived execution
+     */
+    <OUT> CompletableExecution<OUT> thenCompose(
+        ExecutionFunction<? super RESULT, ? extends Execution<OUT>> function);
+}
@@ -0,0 +1,40 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.execution;
+
+/**
+ * A listener notified once an {@link Execution} completes, either successfully, by failure or by termination.
+ * <p>
+ * Listener is invoked from the thread that detected the completion, so it should return quickly. If the execution was
+ * already completed when the listener was registered, it is invoked immediately from the registering thread.
+ *
+ * @param <RESULT>
+ *     Type of the execution result
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+public interface CompletionListener<RESULT> {
+
+    /**
+     * Called once the execution is completed. Result of the execution or its failure can be retrieved by
+     * {@link Execution#await()}.
+     *
+     * @param execution
+     *     completed execution
+     */
+    void completed(Execution<RESULT> execution);
+}
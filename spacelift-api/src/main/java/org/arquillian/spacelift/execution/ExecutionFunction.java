@@ -0,0 +1,45 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.execution;
+
+/**
+ * A transformation of an execution result, used to compose executions without blocking.
+ *
+ * @param <IN>
+ *     Type of the execution result
+ * @param <OUT>
+ *     Type of the transformed result
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ *
+ * @see CompletableExecution
+ */
+public interface ExecutionFunction<IN, OUT> {
+
+    /**
+     * Transforms result of an execution
+     *
+     * @param input
+     *     result of the execution
+     *
+     * @return transformed result
+     *
+     * @throws Exception
+     *     if transformation fails for any reason, the derived execution then fails
+     */
+    OUT apply(IN input) throws Exception;
+}
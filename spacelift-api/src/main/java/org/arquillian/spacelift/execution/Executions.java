@@ -0,0 +1,86 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.execution;
+
+import java.util.concurrent.Callable;
+import org.arquillian.spacelift.Spacelift;
+
+/**
+ * Utility methods for {@link Execution}s that do not necessarily implement {@link ObservableExecution}.
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+public final class Executions {
+
+    /**
+     * No instantiation
+     */
+    private Executions() {
+        throw new UnsupportedOperationException("No instantiation");
+    }
+
+    /**
+     * Registers a listener notified once {@code execution} completes. Any execution other than
+     * {@link ObservableExecution} is awaited by a task submitted to the default {@link ExecutionService}.
+     *
+     * @param execution
+     *     the execution
+     * @param listener
+     *     the listener
+     *
+     * @throws ExecutionException
+     *     if execution cannot be awaited
+     */
+    public static <RESULT> void onComplete(Execution<RESULT> execution, CompletionListener<RESULT> listener)
+        throws ExecutionException {
+        onComplete(execution, listener, Spacelift.service());
+    }
+
+    /**
+     * Registers a listener notified once {@code execution} completes. Any execution other than
+     * {@link ObservableExecution} is awaited by a task submitted to {@code service}.
+     *
+     * @param execution
+     *     the execution
+     * @param listener
+     *     the listener
+     * @param service
+     *     service that awaits execution which does not notify about its completion
+     *
+     * @throws ExecutionException
+     *     if execution cannot be awaited
+     */
+    public static <RESULT> void onComplete(final Execution<RESULT> execution,
+        final CompletionListener<RESULT> listener, ExecutionService service) throws ExecutionException {
+        if (execution instanceof ObservableExecution) {
+            ((ObservableExecution<RESULT>) execution).onComplete(listener);
+            return;
+        }
+        service.execute(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                try {
+                    execution.await();
+                } catch (ExecutionException ignore) {
+                    // failure is retrieved by the listener
+                }
+                listener.completed(execution);
+                return null;
+            }
+        });
+    }
+}
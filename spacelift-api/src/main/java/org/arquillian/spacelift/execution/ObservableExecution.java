@@ -0,0 +1,45 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.execution;
+
+/**
+ * An {@link Execution} that notifies listeners about its completion. This allows to react on completion without
+ * blocking a thread in {@link #await()} or polling {@link #isFinished()}.
+ * <p>
+ * Executions created by Spacelift implement this interface. Use {@link Executions#onComplete(Execution,
+ * CompletionListener)} to be notified about completion of any other {@link Execution}.
+ *
+ * @param <RESULT>
+ *     Type of result to be returned from this execution
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+public interface ObservableExecution<RESULT> extends Execution<RESULT> {
+
+    /**
+     * Registers a listener notified as soon as the execution completes.
+     * <p>
+     * Marking execution as finished does not notify listeners. For executions of external processes, listeners are
+     * notified once the process exits.
+     *
+     * @param listener
+     *     the listener
+     *
+     * @return this execution
+     */
+    ObservableExecution<RESULT> onComplete(CompletionListener<RESULT> listener);
+}
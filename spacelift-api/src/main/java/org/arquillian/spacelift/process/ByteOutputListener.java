@@ -0,0 +1,40 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.process;
+
+/**
+ * A listener notified about raw process output, before it is decoded into lines.
+ * <p>
+ * Listener is invoked from the thread that consumes process output, so it should return quickly.
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+public interface ByteOutputListener {
+
+    /**
+     * Called when a block of output was read from the process. The buffer is reused for further reads, so listener
+     * must copy the data it wants to keep.
+     *
+     * @param buffer
+     *     buffer with the data
+     * @param offset
+     *     index of the first byte in the buffer
+     * @param length
+     *     number of bytes read
+     */
+    void onBytes(byte[] buffer, int offset, int length);
+}
@@ -0,0 +1,37 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.process;
+
+/**
+ * A listener notified about each line of process output as soon as it is read.
+ * <p>
+ * Listener is invoked from the thread that consumes process output, so it should return quickly. A slow listener
+ * delays further processing of the output, including replies defined by {@link ProcessInteraction}.
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+public interface OutputListener {
+
+    /**
+     * Called when a line of output is complete. The line is passed without line terminator and includes a reply
+     * written to the process, if any.
+     *
+     * @param line
+     *     the line
+     */
+    void onLine(String line);
+}
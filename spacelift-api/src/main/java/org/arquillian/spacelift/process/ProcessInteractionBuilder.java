@@ -118,11 +118,12 @@ public class ProcessInteractionBuilder {
      * @return {@link ProcessInteraction}
      */
     public ProcessInteraction build() {
-        return new ProcessInteractionImpl(replyMap, transformer, allowedOutput, errorOutput, terminatingOutput,
-            textTypedIn);
+        return new ProcessInteractionImpl(new LinkedHashMap<Pattern, String>(replyMap), transformer,
+            new ArrayList<Pattern>(allowedOutput), new ArrayList<Pattern>(errorOutput),
+            new ArrayList<Pattern>(terminatingOutput), textTypedIn);
     }
 
-    private static class ProcessInteractionImpl implements ProcessInteraction {
+    static class ProcessInteractionImpl implements ProcessInteraction {
 
         private final String textTypedIn;
 
@@ -136,6 +137,8 @@ public class ProcessInteractionBuilder {
 
         private final OutputTransformer transformer;
 
+        private final ProcessInteractionMatcher.Rule[] rules;
+
         public ProcessInteractionImpl(Map<Pattern, String> replyMap, OutputTransformer outputTransformer,
             List<Pattern> allowedOutput,
             List<Pattern> errorOutput, List<Pattern> terminatingOutput, String textTypedIn) {
@@ -145,6 +148,12 @@ public class ProcessInteractionBuilder {
             this.errorOutput = errorOutput;
             this.terminatingOutput = terminatingOutput;
             this.textTypedIn = textTypedIn;
+            // patterns are compiled into matcher rules only once, all consumers of the interaction share them
+            this.rules = ProcessInteractionMatcher.compile(this);
+        }
+
+        ProcessInteractionMatcher.Rule[] rules() {
+            return rules;
         }
 
         @Override
@@ -0,0 +1,389 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.process;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Matches a line of process output against all rules of a {@link ProcessInteraction} in a single pass.
+ * <p>
+ * Patterns sharing the same regular expression are evaluated only once per line. If a pattern starts or ends with a
+ * literal text, lines that do not start or end with it are skipped without evaluating the regular expression.
+ * <p>
+ * Lines that are still being read can be matched by {@link #matchPrefix(CharSequence, int, int)}, which applies reply
+ * and termination rules to the line as if it ended after any of its characters.
+ * <p>
+ * Matcher keeps the result of the last match and reuses {@link Matcher} instances, so it is not thread safe. Use
+ * {@link #of(ProcessInteraction)} to get a matcher for each consumer of process output.
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+public class ProcessInteractionMatcher {
+
+    static final int REPLY = 1;
+    static final int TERMINATE = 2;
+    static final int OUTPUT = 4;
+    static final int ERROR = 8;
+
+    private final Rule[] rules;
+    private final Matcher[] matchers;
+    // rules that cannot match any longer prefix of the line matched by matchPrefix
+    private final boolean[] exhausted;
+
+    private String reply;
+    private int matched;
+
+    ProcessInteractionMatcher(Rule[] rules) {
+        this.rules = rules;
+        this.matchers = new Matcher[rules.length];
+        this.exhausted = new boolean[rules.length];
+    }
+
+    /**
+     * Creates a matcher for the interaction. Rules of interactions created by {@link ProcessInteractionBuilder} are
+     * compiled only once, other interactions are compiled each time this method is called.
+     *
+     * @param interaction
+     *     the interaction
+     *
+     * @return new matcher
+     */
+    public static ProcessInteractionMatcher of(ProcessInteraction interaction) {
+        if (interaction instanceof ProcessInteractionBuilder.ProcessInteractionImpl) {
+            return new ProcessInteractionMatcher(((ProcessInteractionBuilder.ProcessInteractionImpl) interaction).rules());
+        }
+        return new ProcessInteractionMatcher(compile(interaction));
+    }
+
+    /**
+     * Matches the line against all rules of the interaction. Results are available via {@link #reply()},
+     * {@link #terminates()}, {@link #printsToOut()} and {@link #printsToErr()} until next line is matched.
+     *
+     * @param line
+     *     the line
+     *
+     * @return current instance to allow chaining
+     */
+    public ProcessInteractionMatcher match(CharSequence line) {
+        this.reply = null;
+        this.matched = 0;
+
+        for (int i = 0; i < rules.length; i++) {
+            Rule rule = rules[i];
+
+            // skip rules whose actions were already decided by previous rules
+            if ((rule.actions & ~matched) == 0 || !rule.canMatch(line, line.length())) {
+                continue;
+            }
+
+            if (!rule.literal) {
+                Matcher m = matchers[i];
+                if (m == null) {
+                    m = matchers[i] = rule.pattern.matcher(line);
+                } else {
+                    m.reset(line);
+                }
+                if (!m.matches()) {
+                    continue;
+                }
+            }
+
+            if (reply == null && rule.reply != null) {
+                reply = rule.reply;
+            }
+            matched |= rule.actions;
+        }
+
+        // reply rule sharing a pattern with other rules might have not provided a reply
+        if (reply == null) {
+            matched &= ~REPLY;
+        }
+
+        return this;
+    }
+
+    /**
+     * Matches prefixes of a line against reply and termination rules, shortest first, and stops at the first prefix
+     * matching any of them. This is equivalent to matching the line after each of its characters was read. Results
+     * are available via {@link #reply()} and {@link #terminates()}, while {@link #printsToOut()} and
+     * {@link #printsToErr()} return {@code false}, as output rules apply to complete lines only.
+     * <p>
+     * A line that grows is matched by consecutive calls, each starting where the previous one ended. Call with
+     * {@code from} equal to {@code 0} starts a new line.
+     *
+     * @param line
+     *     the line
+     * @param from
+     *     length of the prefix that was already matched, only longer prefixes are matched
+     * @param to
+     *     length of the longest prefix to be matched
+     *
+     * @return length of the matching prefix, or {@code -1} if no prefix matches
+     */
+    public int matchPrefix(CharSequence line, int from, int to) {
+        this.reply = null;
+        this.matched = 0;
+
+        if (from == 0) {
+            Arrays.fill(exhausted, false);
+        }
+
+        for (int length = from + 1; length <= to; length++) {
+            for (int i = 0; i < rules.length; i++) {
+                Rule rule = rules[i];
+                if ((rule.actions & (REPLY | TERMINATE)) == 0 || exhausted[i] || !rule.canMatch(line, length)) {
+                    continue;
+                }
+
+                if (!rule.literal) {
+                    Matcher m = matchers[i];
+                    if (m == null) {
+                        m = matchers[i] = rule.pattern.matcher(line);
+                    } else {
+                        m.reset(line);
+                    }
+                    m.region(0, length);
+                    if (!m.matches()) {
+                        // more characters would not help
+                        exhausted[i] = !m.hitEnd();
+                        continue;
+                    }
+                }
+
+                if (reply == null && rule.reply != null) {
+                    reply = rule.reply;
+                }
+                matched |= rule.actions & (REPLY | TERMINATE);
+            }
+
+            if (reply == null) {
+                matched &= ~REPLY;
+            }
+            if (matched != 0) {
+                return length;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns text that should be written to stdin of the process as a reply to last line, might be {@code null}
+     */
+    public String reply() {
+        return reply;
+    }
+
+    /**
+     * Returns {@code true} if last line should cause process to terminate
+     */
+    public boolean terminates() {
+        return (matched & TERMINATE) != 0;
+    }
+
+    /**
+     * Returns {@code true} if last line should be propagated to standard output
+     */
+    public boolean printsToOut() {
+        return (matched & OUTPUT) != 0;
+    }
+
+    /**
+     * Returns {@code true} if last line should be propagated to error output
+     */
+    public boolean printsToErr() {
+        return (matched & ERROR) != 0;
+    }
+
+    /**
+     * Compiles all patterns of the interaction into rules. Patterns with the same expression and flags are merged into a
+     * single rule. Replies keep the order defined by the interaction, so the first matching reply wins.
+     */
+    static Rule[] compile(ProcessInteraction interaction) {
+        Map<String, Rule> rules = new LinkedHashMap<String, Rule>();
+
+        for (Map.Entry<Pattern, String> entry : interaction.replyMap().entrySet()) {
+            rule(rules, entry.getKey(), REPLY).reply(entry.getValue());
+        }
+        for (Pattern p : interaction.terminatingOutput()) {
+            rule(rules, p, TERMINATE);
+        }
+        for (Pattern p : interaction.allowedOutput()) {
+            rule(rules, p, OUTPUT);
+        }
+        for (Pattern p : interaction.errorOutput()) {
+            rule(rules, p, ERROR);
+        }
+
+        return rules.values().toArray(new Rule[rules.size()]);
+    }
+
+    private static Rule rule(Map<String, Rule> rules, Pattern pattern, int action) {
+        String key = pattern.flags() + ":" + pattern.pattern();
+        Rule rule = rules.get(key);
+        if (rule == null) {
+            rule = new Rule(pattern);
+            rules.put(key, rule);
+        }
+        rule.actions |= action;
+        return rule;
+    }
+
+    /**
+     * A pattern with all actions that should be applied if it is matched
+     */
+    static final class Rule {
+
+        private static final Character WILDCARD = null;
+
+        final Pattern pattern;
+        final String prefix;
+        final String suffix;
+        // pattern does not contain any special construct, it can be compared as a string
+        final boolean literal;
+
+        int actions;
+        String reply;
+
+        Rule(Pattern pattern) {
+            this.pattern = pattern;
+
+            List<Character> tokens = new ArrayList<Character>();
+            boolean complete = pattern.flags() == 0 && tokenize(pattern.pattern(), tokens);
+
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < tokens.size() && tokens.get(i) != WILDCARD; i++) {
+                sb.append(tokens.get(i).charValue());
+            }
+            this.prefix = sb.toString();
+            this.literal = complete && prefix.length() == tokens.size();
+
+            sb.setLength(0);
+            for (int i = tokens.size() - 1; complete && i >= 0 && tokens.get(i) != WILDCARD; i--) {
+                sb.append(tokens.get(i).charValue());
+            }
+            this.suffix = sb.reverse().toString();
+        }
+
+        void reply(String reply) {
+            if (this.reply == null) {
+                this.reply = reply;
+            }
+        }
+
+        /**
+         * Checks literal prefix and suffix of the pattern against first {@code length} characters of the line, for
+         * literal patterns this is the complete match
+         */
+        boolean canMatch(CharSequence line, int length) {
+            if (literal) {
+                return length == prefix.length() && startsWith(line, prefix);
+            }
+            if (length < prefix.length() || length < suffix.length()) {
+                return false;
+            }
+            return startsWith(line, prefix) && endsWith(line, length, suffix);
+        }
+
+        private static boolean startsWith(CharSequence line, String prefix) {
+            for (int i = 0; i < prefix.length(); i++) {
+                if (line.charAt(i) != prefix.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean endsWith(CharSequence line, int length, String suffix) {
+            int offset = length - suffix.length();
+            for (int i = 0; i < suffix.length(); i++) {
+                if (line.charAt(offset + i) != suffix.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Splits expression into literal characters and wildcards, that is anything that might match a different text.
+         * Returns {@code false} if expression contains a construct that prevents figuring out the suffix, in such case
+         * only tokens before such construct are returned.
+         */
+        private static boolean tokenize(String regex, List<Character> tokens) {
+
+            // alternation can be anywhere, there is no common prefix nor suffix
+            if (regex.indexOf('|') != -1) {
+                return false;
+            }
+
+            int length = regex.length();
+            for (int i = 0; i < length; i++) {
+                char c = regex.charAt(i);
+                switch (c) {
+                    case '\\':
+                        // backslash before non-alphabetic character always denotes the character itself
+                        if (i + 1 < length && !Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                            tokens.add(regex.charAt(++i));
+                            break;
+                        }
+                        return false;
+                    case '?':
+                    case '*':
+                    case '+':
+                        // previous token might be missing or repeated
+                        if (!tokens.isEmpty()) {
+                            tokens.set(tokens.size() - 1, WILDCARD);
+                        }
+                        break;
+                    case '{':
+                        if (!tokens.isEmpty()) {
+                            tokens.set(tokens.size() - 1, WILDCARD);
+                        }
+                        return false;
+                    case '.':
+                        tokens.add(WILDCARD);
+                        break;
+                    case '^':
+                        // whole line is matched, so leading anchor can be ignored
+                        if (i != 0) {
+                            return false;
+                        }
+                        break;
+                    case '$':
+                        if (i != length - 1) {
+                            return false;
+                        }
+                        break;
+                    case '(':
+                    case ')':
+                    case '[':
+                    case ']':
+                    case '}':
+                        return false;
+                    default:
+                        tokens.add(c);
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package org.arquillian.spacelift.task;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Callable;
 import org.arquillian.spacelift.Spacelift;
+import org.arquillian.spacelift.execution.CompletableExecution;
 import org.arquillian.spacelift.execution.Execution;
 import org.arquillian.spacelift.execution.ExecutionException;
+import org.arquillian.spacelift.execution.ExecutionFunction;
 import org.arquillian.spacelift.execution.ExecutionService;
 
 /**
@@ -73,6 +78,20 @@ public abstract class Task<IN, OUT> {
         });
     }
 
+    /**
+     * Asynchronously executes current chain of tasks, each task as a separate execution. A task is submitted to its
+     * {@link ExecutionService} once the previous task provides its output, so no thread is blocked while waiting for it
+     * if execution service provides {@link CompletableExecution}s.
+     *
+     * @return Execution object that allows later retrieved result of the last task and timing of all tasks in the chain
+     *
+     * @throws ExecutionException
+     */
+    public TimedExecution<OUT> executePipelined() throws ExecutionException {
+        List<TaskTiming> timings = Collections.synchronizedList(new ArrayList<TaskTiming>());
+        return new TimedExecution<OUT>(stage(System.nanoTime(), timings), timings);
+    }
+
     /**
      * Represents a transformation of {@code input} into {@code output}.
      *
@@ -96,6 +115,10 @@ public abstract class Task<IN, OUT> {
             in = previous.run();
         }
 
+        return runWith(in);
+    }
+
+    OUT runWith(IN in) throws ExecutionException {
         try {
             return process(in);
         } catch (Exception e) {
@@ -103,6 +126,60 @@ public abstract class Task<IN, OUT> {
         }
     }
 
+    private Execution<OUT> stage(long origin, List<TaskTiming> timings) throws ExecutionException {
+
+        if (getExecutionService() == null) {
+            throw new ExecutionException("Unable to execute a task, execution service was not set.");
+        }
+
+        if (previous == null) {
+            TaskTiming timing = new TaskTiming(getClass().getSimpleName(), origin);
+            timings.add(timing);
+            return getExecutionService().execute(timed(null, timing));
+        }
+
+        Execution<? extends IN> input = previous.stage(origin, timings);
+        TaskTiming timing = new TaskTiming(getClass().getSimpleName(), origin);
+        timing.dependsOn(timings.get(timings.size() - 1));
+        timings.add(timing);
+        return stageAfter(input, timing);
+    }
+
+    private <I extends IN> Execution<OUT> stageAfter(final Execution<I> input, final TaskTiming timing) {
+
+        // submit the task only after input is available
+        if (input instanceof CompletableExecution) {
+            return ((CompletableExecution<I>) input).thenCompose(new ExecutionFunction<I, Execution<OUT>>() {
+                @Override
+                public Execution<OUT> apply(I in) throws Exception {
+                    return getExecutionService().execute(timed(in, timing));
+                }
+            });
+        }
+
+        // execution service cannot notify us, so we need to wait for input in the task itself
+        return getExecutionService().execute(new Callable<OUT>() {
+            @Override
+            public OUT call() throws Exception {
+                return timed(input.await(), timing).call();
+            }
+        });
+    }
+
+    private Callable<OUT> timed(final IN in, final TaskTiming timing) {
+        return new Callable<OUT>() {
+            @Override
+            public OUT call() throws Exception {
+                timing.started();
+                try {
+                    return runWith(in);
+                } finally {
+                    timing.finished();
+                }
+            }
+        };
+    }
+
     /**
      * Returns {@see ExecutionService}. If using {@see Tasks} or {@see ToolRegistry}, this method is guaranteed to never
      * return {@code null}
@@ -119,6 +196,13 @@ public abstract class Task<IN, OUT> {
         return this;
     }
 
+    /**
+     * Checks whether the task is connected to a previous task, which provides its input
+     */
+    boolean hasPreviousTask() {
+        return previous != null;
+    }
+
     /**
      * Sets previous task
      */
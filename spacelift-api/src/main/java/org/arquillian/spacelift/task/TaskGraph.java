@@ -0,0 +1,452 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import org.arquillian.spacelift.Spacelift;
+import org.arquillian.spacelift.execution.CompletionListener;
+import org.arquillian.spacelift.execution.Execution;
+import org.arquillian.spacelift.execution.ExecutionException;
+import org.arquillian.spacelift.execution.ExecutionService;
+import org.arquillian.spacelift.execution.Executions;
+
+/**
+ * A graph of tasks where output of a task can be passed to multiple tasks and outputs of multiple tasks can be joined
+ * into a single input. Tasks whose inputs are available are executed in parallel, up to a concurrency limit.
+ * <p>
+ * A node can only depend on nodes already added to the graph, so the graph never contains a cycle.
+ *
+ * <pre>
+ * TaskGraph graph = new TaskGraph().concurrency(4);
+ * List&lt;TaskGraph.Node&lt;File&gt;&gt; downloads = new ArrayList&lt;TaskGraph.Node&lt;File&gt;&gt;();
+ * for (String url : urls) {
+ *     downloads.add(graph.add(Spacelift.task(DownloadTool.class).from(url).to(...)));
+ * }
+ * TaskGraph.Node&lt;Server&gt; server = graph.join(downloads, Spacelift.task(StartServer.class));
+ * Server started = graph.execute().await().get(server);
+ * </pre>
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+public class TaskGraph {
+
+    private final List<Node<?>> nodes = new ArrayList<Node<?>>();
+    private final ExecutionService executionService;
+    private int concurrency = Integer.MAX_VALUE;
+
+    /**
+     * Creates a graph executed by default {@link ExecutionService}
+     */
+    public TaskGraph() {
+        this(Spacelift.service());
+    }
+
+    /**
+     * Creates a graph executed by {@code executionService}
+     *
+     * @param executionService
+     *     execution service
+     */
+    public TaskGraph(ExecutionService executionService) {
+        if (executionService == null) {
+            throw new IllegalArgumentException("Execution service must not be null");
+        }
+        this.executionService = executionService;
+    }
+
+    /**
+     * Sets maximal number of tasks of the graph executed at the same time. There is no limit by default.
+     *
+     * @param concurrency
+     *     maximal number of tasks executed in parallel
+     *
+     * @return current instance to allow chaining
+     */
+    public TaskGraph concurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1, was " + concurrency);
+        }
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * Adds a task that does not depend on any other node. If the task is connected to previous tasks by
+     * {@link Task#then(Class)}, whole chain is executed as a single node.
+     *
+     * @param task
+     *     task to be executed
+     *
+     * @return node representing output of the task
+     */
+    public <OUT> Node<OUT> add(final Task<?, OUT> task) {
+        return register(new Node<OUT>(this, task.getClass().getSimpleName(), Collections.<Node<?>>emptyList()) {
+            @Override
+            OUT run(Map<Node<?>, Object> results) throws ExecutionException {
+                return task.run();
+            }
+        });
+    }
+
+    /**
+     * Adds a task that processes output of {@code input} node. Output of a node can be processed by any number of tasks.
+     *
+     * @param input
+     *     node providing input of the task
+     * @param task
+     *     task to be executed
+     *
+     * @return node representing output of the task
+     *
+     * @throws IllegalArgumentException
+     *     if the task is connected to a previous task by {@link Task#then(Class)}, as its input would be ambiguous
+     */
+    public <IN, OUT> Node<OUT> add(final Node<IN> input, final Task<? super IN, OUT> task)
+        throws IllegalArgumentException {
+        rejectChained(task);
+        return register(new Node<OUT>(this, task.getClass().getSimpleName(), Collections.<Node<?>>singletonList(input)) {
+            @Override
+            OUT run(Map<Node<?>, Object> results) throws ExecutionException {
+                return task.runWith(input.resultIn(results));
+            }
+        });
+    }
+
+    /**
+     * Adds a task that processes outputs of all {@code inputs} nodes. The task gets outputs in the same order as nodes
+     * are listed.
+     *
+     * @param inputs
+     *     nodes providing input of the task
+     * @param task
+     *     task to be executed
+     *
+     * @return node representing output of the task
+     *
+     * @throws IllegalArgumentException
+     *     if the task is connected to a previous task by {@link Task#then(Class)}, as its input would be ambiguous
+     */
+    public <IN, OUT> Node<OUT> join(final List<? extends Node<? extends IN>> inputs,
+        final Task<? super List<IN>, OUT> task) throws IllegalArgumentException {
+        rejectChained(task);
+        return register(new Node<OUT>(this, task.getClass().getSimpleName(), new ArrayList<Node<?>>(inputs)) {
+            @Override
+            OUT run(Map<Node<?>, Object> results) throws ExecutionException {
+                List<IN> in = new ArrayList<IN>(inputs.size());
+                for (Node<? extends IN> input : inputs) {
+                    in.add(input.resultIn(results));
+                }
+                return task.runWith(in);
+            }
+        });
+    }
+
+    /**
+     * Asynchronously executes all tasks of the graph. If any task fails, no further tasks are started and the execution
+     * fails with the same exception. Terminating the execution terminates all running tasks.
+     *
+     * @return Execution object that allows later retrieve outputs of all nodes and timing of all tasks
+     *
+     * @throws ExecutionException
+     */
+    public TimedExecution<Results> execute() throws ExecutionException {
+
+        long origin = System.nanoTime();
+        List<TaskTiming> timings = new ArrayList<TaskTiming>(nodes.size());
+        Map<Node<?>, TaskTiming> timingOf = new IdentityHashMap<Node<?>, TaskTiming>();
+        for (Node<?> node : nodes) {
+            TaskTiming timing = new TaskTiming(node.name, origin);
+            for (Node<?> input : node.inputs) {
+                timing.dependsOn(timingOf.get(input));
+            }
+            timingOf.put(node, timing);
+            timings.add(timing);
+        }
+
+        final List<Node<?>> graph = new ArrayList<Node<?>>(nodes);
+        final List<TaskTiming> graphTimings = timings;
+        final int limit = concurrency;
+        Execution<Results> execution = executionService.execute(new Callable<Results>() {
+            @Override
+            public Results call() throws Exception {
+                return new Run(graph, graphTimings, limit).call();
+            }
+        });
+
+        return new TimedExecution<Results>(execution, timings);
+    }
+
+    private static void rejectChained(Task<?, ?> task) {
+        if (task.hasPreviousTask()) {
+            throw new IllegalArgumentException("Task " + task.getClass().getSimpleName()
+                + " gets its input from a previous task, it can only be added to the graph without input nodes");
+        }
+    }
+
+    private <OUT> Node<OUT> register(Node<OUT> node) {
+        for (Node<?> input : node.inputs) {
+            if (input == null || input.graph != this) {
+                throw new IllegalArgumentException("Input of task " + node.name + " is not a node of this graph");
+            }
+        }
+        nodes.add(node);
+        return node;
+    }
+
+    /**
+     * Single execution of the graph. Nodes are submitted to execution service once all their inputs are available, so
+     * no thread is blocked by a node waiting for its inputs.
+     */
+    private class Run {
+
+        private final List<Node<?>> graph;
+        private final List<TaskTiming> timings;
+        private final int limit;
+
+        private final int[] remaining;
+        private final List<List<Integer>> dependents;
+        private final Map<Node<?>, Object> results = Collections.synchronizedMap(new IdentityHashMap<Node<?>, Object>());
+        private final Deque<Integer> ready = new ArrayDeque<Integer>();
+        private final Map<Integer, Execution<?>> running = new HashMap<Integer, Execution<?>>();
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private int active;
+        private int finished;
+        private ExecutionException failure;
+
+        Run(List<Node<?>> graph, List<TaskTiming> timings, int limit) {
+            this.graph = graph;
+            this.timings = timings;
+            this.limit = limit;
+            this.remaining = new int[graph.size()];
+            this.dependents = new ArrayList<List<Integer>>(graph.size());
+
+            Map<Node<?>, Integer> index = new IdentityHashMap<Node<?>, Integer>();
+            for (int i = 0; i < graph.size(); i++) {
+                Node<?> node = graph.get(i);
+                index.put(node, i);
+                dependents.add(new ArrayList<Integer>());
+                for (Node<?> input : node.inputs) {
+                    dependents.get(index.get(input)).add(i);
+                    remaining[i]++;
+                }
+                if (remaining[i] == 0) {
+                    ready.add(i);
+                }
+            }
+        }
+
+        Results call() throws ExecutionException {
+            if (!graph.isEmpty()) {
+                List<Integer> next;
+                synchronized (this) {
+                    next = dispatch();
+                }
+                start(next);
+
+                try {
+                    done.await();
+                } catch (InterruptedException e) {
+                    synchronized (this) {
+                        fail(new ExecutionException(e, "Execution of task graph was interrupted"));
+                    }
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            synchronized (this) {
+                if (failure != null) {
+                    throw failure;
+                }
+                return new Results(new IdentityHashMap<Node<?>, Object>(results));
+            }
+        }
+
+        // must be called while holding the lock, returns nodes that can be started
+        private List<Integer> dispatch() {
+            List<Integer> next = new ArrayList<Integer>();
+            while (failure == null && active < limit && !ready.isEmpty()) {
+                next.add(ready.poll());
+                active++;
+            }
+            return next;
+        }
+
+        private void start(List<Integer> next) {
+            for (final Integer i : next) {
+                final Node<?> node = graph.get(i);
+                final TaskTiming timing = timings.get(i);
+
+                Execution<Object> execution;
+                try {
+                    execution = executionService.execute(new Callable<Object>() {
+                        @Override
+                        public Object call() throws Exception {
+                            timing.started();
+                            try {
+                                return node.run(results);
+                            } finally {
+                                timing.finished();
+                            }
+                        }
+                    });
+                } catch (ExecutionException e) {
+                    synchronized (this) {
+                        active--;
+                        fail(e);
+                    }
+                    return;
+                }
+
+                synchronized (this) {
+                    if (failure != null) {
+                        execution.terminate();
+                    } else {
+                        running.put(i, execution);
+                    }
+                }
+
+                Executions.onComplete(execution, new CompletionListener<Object>() {
+                    @Override
+                    public void completed(Execution<Object> execution) {
+                        Run.this.completed(i, execution);
+                    }
+                }, executionService);
+            }
+        }
+
+        private void completed(Integer i, Execution<Object> execution) {
+            Object result = null;
+            ExecutionException error = null;
+            try {
+                result = execution.await();
+            } catch (ExecutionException e) {
+                error = e;
+            }
+
+            List<Integer> next;
+            synchronized (this) {
+                active--;
+                running.remove(i);
+                if (error != null) {
+                    fail(error);
+                    return;
+                }
+
+                results.put(graph.get(i), result);
+                for (Integer dependent : dependents.get(i)) {
+                    if (--remaining[dependent] == 0) {
+                        ready.add(dependent);
+                    }
+                }
+                if (++finished == graph.size()) {
+                    done.countDown();
+                }
+                next = dispatch();
+            }
+            start(next);
+        }
+
+        // must be called while holding the lock
+        private void fail(ExecutionException e) {
+            if (failure != null) {
+                return;
+            }
+            failure = e;
+            for (Execution<?> execution : running.values()) {
+                execution.terminate();
+            }
+            running.clear();
+            done.countDown();
+        }
+    }
+
+    /**
+     * Represents output of a task in the graph
+     *
+     * @param <OUT>
+     *     Output type of the task
+     */
+    public abstract static class Node<OUT> {
+
+        private final TaskGraph graph;
+        private final String name;
+        private final List<Node<?>> inputs;
+
+        Node(TaskGraph graph, String name, List<Node<?>> inputs) {
+            this.graph = graph;
+            this.name = name;
+            this.inputs = inputs;
+        }
+
+        /**
+         * Returns name of the task
+         */
+        public String taskName() {
+            return name;
+        }
+
+        abstract OUT run(Map<Node<?>, Object> results) throws ExecutionException;
+
+        @SuppressWarnings("unchecked")
+        OUT resultIn(Map<Node<?>, Object> results) {
+            return (OUT) results.get(this);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * Outputs of all nodes of an executed graph
+     */
+    public static class Results {
+
+        private final Map<Node<?>, Object> results;
+
+        Results(Map<Node<?>, Object> results) {
+            this.results = results;
+        }
+
+        /**
+         * Returns output of a task
+         *
+         * @param node
+         *     node representing the task
+         *
+         * @throws IllegalArgumentException
+         *     if node is not part of the executed graph
+         */
+        public <OUT> OUT get(Node<OUT> node) throws IllegalArgumentException {
+            if (!results.containsKey(node)) {
+                throw new IllegalArgumentException("Task " + node + " was not part of the executed graph");
+            }
+            return node.resultIn(results);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records when a task started and how long it took, relatively to the start of the execution the task is part of.
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+public class TaskTiming {
+
+    private final String taskName;
+    private final long origin;
+    private final List<TaskTiming> dependencies = new ArrayList<TaskTiming>();
+
+    private volatile long started = -1;
+    private volatile long finished = -1;
+
+    TaskTiming(String taskName, long origin) {
+        this.taskName = taskName;
+        this.origin = origin;
+    }
+
+    /**
+     * Returns name of the task
+     */
+    public String taskName() {
+        return taskName;
+    }
+
+    /**
+     * Checks whether the task has finished, successfully or not
+     */
+    public boolean isFinished() {
+        return finished != -1;
+    }
+
+    /**
+     * Returns time elapsed since the start of the execution until the task started, or {@code -1} if it has not started
+     *
+     * @param unit
+     *     time unit
+     */
+    public long startedAfter(TimeUnit unit) {
+        long started = this.started;
+        return started == -1 ? -1 : unit.convert(started - origin, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns time elapsed since the start of the execution until the task finished, or {@code -1} if it has not finished
+     *
+     * @param unit
+     *     time unit
+     */
+    public long finishedAfter(TimeUnit unit) {
+        long finished = this.finished;
+        return finished == -1 ? -1 : unit.convert(finished - origin, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns how long the task was running, or {@code -1} if it has not finished
+     *
+     * @param unit
+     *     time unit
+     */
+    public long duration(TimeUnit unit) {
+        long started = this.started;
+        long finished = this.finished;
+        return finished == -1 ? -1 : unit.convert(finished - started, TimeUnit.NANOSECONDS);
+    }
+
+    void dependsOn(TaskTiming timing) {
+        dependencies.add(timing);
+    }
+
+    List<TaskTiming> dependencies() {
+        return dependencies;
+    }
+
+    void started() {
+        this.started = System.nanoTime();
+    }
+
+    void finished() {
+        this.finished = System.nanoTime();
+    }
+
+    long durationNanos() {
+        long finished = this.finished;
+        return finished == -1 ? 0 : finished - started;
+    }
+
+    @Override
+    public String toString() {
+        if (!isFinished()) {
+            return taskName + (started == -1 ? " (not started)" : " (running)");
+        }
+        return taskName + " started after " + startedAfter(TimeUnit.MILLISECONDS) + " ms, took "
+            + duration(TimeUnit.MILLISECONDS) + " ms";
+    }
+}
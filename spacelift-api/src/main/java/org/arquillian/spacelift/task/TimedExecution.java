@@ -0,0 +1,163 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.arquillian.spacelift.execution.CompletionListener;
+import org.arquillian.spacelift.execution.CountDownWatch;
+import org.arquillian.spacelift.execution.Execution;
+import org.arquillian.spacelift.execution.ExecutionCondition;
+import org.arquillian.spacelift.execution.ExecutionException;
+import org.arquillian.spacelift.execution.Executions;
+import org.arquillian.spacelift.execution.ObservableExecution;
+import org.arquillian.spacelift.execution.TimeoutExecutionException;
+
+/**
+ * Execution of multiple tasks that records timing of each task.
+ *
+ * @param <RESULT>
+ *     Type of result to be returned from this execution
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+public class TimedExecution<RESULT> implements ObservableExecution<RESULT> {
+
+    private final Execution<RESULT> execution;
+    private final List<TaskTiming> timings;
+
+    TimedExecution(Execution<RESULT> execution, List<TaskTiming> timings) {
+        this.execution = execution;
+        this.timings = timings;
+    }
+
+    /**
+     * Returns timings of all tasks in the order they were scheduled
+     */
+    public List<TaskTiming> timings() {
+        synchronized (timings) {
+            return new ArrayList<TaskTiming>(timings);
+        }
+    }
+
+    /**
+     * Returns the longest sum of durations of finished tasks along a path of tasks depending on each other's result.
+     * This is the shortest time the execution could take. Compared to time elapsed until the last task finished, it
+     * shows how much time was spent by scheduling or waiting for available threads.
+     *
+     * @param unit
+     *     time unit
+     */
+    public long criticalPath(TimeUnit unit) {
+        // timings are ordered so that dependencies always precede tasks depending on them
+        Map<TaskTiming, Long> paths = new HashMap<TaskTiming, Long>();
+        long longest = 0;
+        for (TaskTiming timing : timings()) {
+            long path = 0;
+            for (TaskTiming dependency : timing.dependencies()) {
+                Long dependencyPath = paths.get(dependency);
+                if (dependencyPath != null && dependencyPath > path) {
+                    path = dependencyPath;
+                }
+            }
+            path += timing.durationNanos();
+            paths.put(timing, path);
+            longest = Math.max(longest, path);
+        }
+        return unit.convert(longest, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public Execution<RESULT> markAsFinished() {
+        execution.markAsFinished();
+        return this;
+    }
+
+    @Override
+    public Execution<RESULT> registerShutdownHook() {
+        execution.registerShutdownHook();
+        return this;
+    }
+
+    @Override
+    public boolean isMarkedAsFinished() {
+        return execution.isMarkedAsFinished();
+    }
+
+    @Override
+    public boolean isFinished() {
+        return execution.isFinished();
+    }
+
+    @Override
+    public boolean hasFailed() throws IllegalStateException {
+        return execution.hasFailed();
+    }
+
+    @Override
+    public Execution<RESULT> terminate() throws ExecutionException {
+        execution.terminate();
+        return this;
+    }
+
+    @Override
+    public RESULT await() throws ExecutionException {
+        return execution.await();
+    }
+
+    @Override
+    public RESULT awaitAtMost(long timeout, TimeUnit unit) throws ExecutionException, TimeoutExecutionException {
+        return execution.awaitAtMost(timeout, unit);
+    }
+
+    @Override
+    public RESULT awaitAtMost(CountDownWatch timeout) throws ExecutionException, TimeoutExecutionException {
+        return execution.awaitAtMost(timeout);
+    }
+
+    @Override
+    public ObservableExecution<RESULT> onComplete(final CompletionListener<RESULT> listener) {
+        Executions.onComplete(execution, new CompletionListener<RESULT>() {
+            @Override
+            public void completed(Execution<RESULT> completed) {
+                listener.completed(TimedExecution.this);
+            }
+        });
+        return this;
+    }
+
+    @Override
+    public Execution<RESULT> reexecuteEvery(long step, TimeUnit unit) {
+        execution.reexecuteEvery(step, unit);
+        return this;
+    }
+
+    @Override
+    public RESULT until(long timeout, TimeUnit unit, ExecutionCondition<RESULT> condition) throws ExecutionException,
+        TimeoutExecutionException {
+        return execution.until(timeout, unit, condition);
+    }
+
+    @Override
+    public RESULT until(CountDownWatch timeout, ExecutionCondition<RESULT> condition) throws ExecutionException,
+        TimeoutExecutionException {
+        return execution.until(timeout, condition);
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.process;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ProcessInteractionMatcherTest {
+
+    @Test
+    public void matchAllActionsInSinglePass() {
+        ProcessInteractionMatcher matcher = ProcessInteractionMatcher.of(new ProcessInteractionBuilder()
+            .when("Password:.*").replyWith("secret")
+            .when("Password:.*").printToOut()
+            .when(".*FATAL.*").terminate()
+            .when(".*FATAL.*").printToErr()
+            .build());
+
+        matcher.match("Password: ");
+        assertThat(matcher.reply(), equalTo("secret"));
+        assertThat(matcher.printsToOut(), is(true));
+        assertThat(matcher.terminates(), is(false));
+        assertThat(matcher.printsToErr(), is(false));
+
+        matcher.match("[main] FATAL error");
+        assertThat(matcher.reply(), nullValue());
+        assertThat(matcher.printsToOut(), is(false));
+        assertThat(matcher.terminates(), is(true));
+        assertThat(matcher.printsToErr(), is(true));
+    }
+
+    @Test
+    public void firstReplyWins() {
+        ProcessInteractionMatcher matcher = ProcessInteractionMatcher.of(new ProcessInteractionBuilder()
+            .when("continue\\?").replyWith("no")
+            .when(".*\\?").replyWith("yes")
+            .when("continue\\?").replyWith("maybe")
+            .build());
+
+        assertThat(matcher.match("continue?").reply(), equalTo("no"));
+        assertThat(matcher.match("overwrite?").reply(), equalTo("yes"));
+        assertThat(matcher.match("overwrite").reply(), nullValue());
+    }
+
+    @Test
+    public void literalPrefixAndSuffixDoNotChangeResult() {
+        assertMatches("hello", "hello", true);
+        assertMatches("hello", "hello world", false);
+        assertMatches("^hello$", "hello", true);
+        assertMatches("hel+o", "heo", false);
+        assertMatches("hel+o", "helllo", true);
+        assertMatches("hel?lo", "helo", true);
+        assertMatches("hel*o", "heo", true);
+        assertMatches("hel{2}o", "hello", true);
+        assertMatches("hello|world", "world", true);
+        assertMatches("(hello) world", "hello world", true);
+        assertMatches("[hH]ello", "Hello", true);
+        assertMatches("a\\.b", "a.b", true);
+        assertMatches("a\\.b", "axb", false);
+        assertMatches("a\\db", "a1b", true);
+        assertMatches(".*Spacelift", "hello Spacelift", true);
+        assertMatches(".*Spacelift", "hello Spacelift!", false);
+        assertMatches("(?i)hello", "HELLO", true);
+        assertMatches("", "", true);
+        assertMatches("", "x", false);
+    }
+
+    @Test
+    public void matchPrefixesOfGrowingLine() {
+        ProcessInteractionMatcher matcher = ProcessInteractionMatcher.of(new ProcessInteractionBuilder()
+            .when("Server started").terminate()
+            .when("Port \\d+:").replyWith("8080")
+            .when("Server.*").printToOut()
+            .build());
+
+        String line = "Server started in 5s";
+        assertThat(matcher.matchPrefix(line, 0, 6), is(-1));
+        assertThat(matcher.matchPrefix(line, 6, line.length()), is("Server started".length()));
+        assertThat(matcher.terminates(), is(true));
+        assertThat(matcher.printsToOut(), is(false));
+        assertThat(matcher.matchPrefix(line, "Server started".length(), line.length()), is(-1));
+
+        line = "Port 42: (default 80)";
+        assertThat(matcher.matchPrefix(line, 0, line.length()), is("Port 42:".length()));
+        assertThat(matcher.reply(), equalTo("8080"));
+        assertThat(matcher.terminates(), is(false));
+        assertThat(matcher.matchPrefix("Portal", 0, 6), is(-1));
+    }
+
+    @Test
+    public void caseInsensitiveFlagIsRespected() {
+        ProcessInteraction interaction = new SimpleInteraction(Pattern.compile("hello", Pattern.CASE_INSENSITIVE));
+        assertThat(ProcessInteractionMatcher.of(interaction).match("HeLLo").printsToOut(), is(true));
+    }
+
+    private static void assertMatches(String regex, String line, boolean expected) {
+        ProcessInteractionMatcher matcher = ProcessInteractionMatcher.of(new ProcessInteractionBuilder()
+            .when(regex).printToOut()
+            .build());
+
+        assertThat(regex + " on " + line, matcher.match(line).printsToOut(), is(expected));
+        assertThat(Pattern.compile(regex).matcher(line).matches(), is(expected));
+    }
+
+    private static class SimpleInteraction implements ProcessInteraction {
+
+        private final List<Pattern> allowedOutput;
+
+        SimpleInteraction(Pattern allowedOutput) {
+            this.allowedOutput = new ArrayList<Pattern>(Collections.singletonList(allowedOutput));
+        }
+
+        @Override
+        public String textTypedIn() {
+            return null;
+        }
+
+        @Override
+        public Map<Pattern, String> replyMap() {
+            return new LinkedHashMap<Pattern, String>();
+        }
+
+        @Override
+        public List<Pattern> allowedOutput() {
+            return allowedOutput;
+        }
+
+        @Override
+        public List<Pattern> errorOutput() {
+            return new ArrayList<Pattern>();
+        }
+
+        @Override
+        public List<Pattern> terminatingOutput() {
+            return new ArrayList<Pattern>();
+        }
+
+        @Override
+        public OutputTransformer transformer() {
+            return null;
+        }
+    }
+}
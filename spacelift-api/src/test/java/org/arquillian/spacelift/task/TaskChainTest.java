@@ -13,6 +13,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.junit.Assert.assertThat;
 
@@ -81,6 +82,21 @@ public class TaskChainTest {
         assertThat(result, notNullValue());
     }
 
+    @Test
+    public void pipelineTools() {
+
+        TimedExecution<String> execution = Spacelift.task(CreateWriterTask.class)
+            .then(DataSampler.class)
+            .generateRandomData(123)
+            .then(MyStringReader.class)
+            .executePipelined();
+
+        assertThat(execution.await(), notNullValue());
+        assertThat(execution.timings().size(), is(3));
+        assertThat(execution.timings().get(0).taskName(), is("CreateWriterTask"));
+        assertThat(execution.timings().get(2).taskName(), is("MyStringReader"));
+    }
+
     public static class CreateWriterTask extends Task<Object, StringWriter> {
 
         @Override
@@ -0,0 +1,96 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.execution.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.arquillian.spacelift.execution.CompletionListener;
+import org.arquillian.spacelift.execution.Execution;
+
+/**
+ * Utility class that keeps {@link CompletionListener}s registered for an execution and notifies them exactly once.
+ *
+ * @param <RESULT>
+ *     Type of the execution result
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+public class CompletionListeners<RESULT> {
+
+    private static final Logger log = Logger.getLogger(CompletionListeners.class.getName());
+
+    private final List<CompletionListener<RESULT>> listeners = new ArrayList<CompletionListener<RESULT>>();
+    private boolean completed;
+
+    /**
+     * Registers a listener. If the execution was already completed, listener is notified immediately.
+     *
+     * @param execution
+     *     execution passed to the listener
+     * @param listener
+     *     the listener
+     */
+    public void add(Execution<RESULT> execution, CompletionListener<RESULT> listener) {
+        synchronized (listeners) {
+            if (!completed) {
+                listeners.add(listener);
+                return;
+            }
+        }
+        notify(execution, listener);
+    }
+
+    /**
+     * Marks the execution as completed and notifies registered listeners. Subsequent calls have no effect.
+     *
+     * @param execution
+     *     execution passed to the listeners
+     */
+    public void complete(Execution<RESULT> execution) {
+        List<CompletionListener<RESULT>> toNotify;
+        synchronized (listeners) {
+            if (completed) {
+                return;
+            }
+            completed = true;
+            toNotify = new ArrayList<CompletionListener<RESULT>>(listeners);
+            listeners.clear();
+        }
+        for (CompletionListener<RESULT> listener : toNotify) {
+            notify(execution, listener);
+        }
+    }
+
+    /**
+     * Checks whether the execution was completed
+     */
+    public boolean isCompleted() {
+        synchronized (listeners) {
+            return completed;
+        }
+    }
+
+    private void notify(Execution<RESULT> execution, CompletionListener<RESULT> listener) {
+        try {
+            listener.completed(execution);
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Completion listener failed", e);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.execution.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.arquillian.spacelift.Spacelift;
+import org.arquillian.spacelift.execution.CompletableExecution;
+import org.arquillian.spacelift.execution.CompletionListener;
+import org.arquillian.spacelift.execution.Execution;
+import org.arquillian.spacelift.execution.ExecutionFunction;
+import org.arquillian.spacelift.execution.ExecutionService;
+import org.arquillian.spacelift.execution.Executions;
+
+/**
+ * Execution backed by a promise that is completed by the task, allowing non-blocking composition of executions.
+ * <p>
+ * Derived executions can be reexecuted as well, reexecution runs the original task followed by all transformations.
+ *
+ * @param <RESULT>
+ *     Deferred result of the execution
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+public class DeferredExecution<RESULT> extends FutureBasedExecution<RESULT> implements CompletableExecution<RESULT> {
+
+    private final ExecutionService service;
+    private final Callable<RESULT> task;
+    private final NotifyingFutureTask<RESULT> promise;
+
+    DeferredExecution(ExecutionService service, Callable<RESULT> task, NotifyingFutureTask<RESULT> promise) {
+        super(service, task, promise);
+        this.service = service;
+        this.task = task;
+        this.promise = promise;
+    }
+
+    /**
+     * Creates an execution that completes once all {@code executions} complete. Its result is the list of their
+     * results, in the same order. It fails as soon as any of the executions fails.
+     *
+     * @param executions
+     *     executions to be awaited
+     *
+     * @return execution of all executions
+     */
+    public static <T> DeferredExecution<List<T>> allOf(final List<? extends Execution<? extends T>> executions) {
+
+        final NotifyingFutureTask<List<T>> promise = NotifyingFutureTask.promise();
+        final DeferredExecution<List<T>> all = new DeferredExecution<List<T>>(Spacelift.service(),
+            new Callable<List<T>>() {
+                @Override
+                public List<T> call() throws Exception {
+                    List<T> results = new ArrayList<T>(executions.size());
+                    for (Execution<? extends T> execution : executions) {
+                        results.add(execution.await());
+                    }
+                    return results;
+                }
+            }, promise);
+
+        if (executions.isEmpty()) {
+            promise.complete(Collections.<T> emptyList());
+            return all;
+        }
+
+        final Object[] results = new Object[executions.size()];
+        final AtomicInteger remaining = new AtomicInteger(executions.size());
+        for (int i = 0; i < executions.size(); i++) {
+            final int index = i;
+            listen(executions.get(i), new Outcome<T>() {
+                @Override
+                void succeeded(T result) {
+                    results[index] = result;
+                    if (remaining.decrementAndGet() == 0) {
+                        @SuppressWarnings("unchecked")
+                        List<T> list = (List<T>) Arrays.asList(results);
+                        promise.complete(new ArrayList<T>(list));
+                    }
+                }
+
+                @Override
+                void failed(Throwable cause) {
+                    promise.fail(cause);
+                }
+            });
+        }
+        return all;
+    }
+
+    /**
+     * Creates an execution that completes as soon as any of {@code executions} completes, with the same result or
+     * failure.
+     *
+     * @param executions
+     *     executions to be awaited
+     *
+     * @return execution of the first completed execution
+     */
+    public static <T> DeferredExecution<T> anyOf(final List<? extends Execution<? extends T>> executions) {
+
+        if (executions.isEmpty()) {
+            throw new IllegalArgumentException("At least one execution must be provided");
+        }
+
+        final NotifyingFutureTask<T> promise = NotifyingFutureTask.promise();
+        for (Execution<? extends T> execution : executions) {
+            listen(execution, new Outcome<T>() {
+                @Override
+                void succeeded(T result) {
+                    promise.complete(result);
+                }
+
+                @Override
+                void failed(Throwable cause) {
+                    promise.fail(cause);
+                }
+            });
+        }
+
+        return new DeferredExecution<T>(Spacelift.service(), new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return promise.get();
+            }
+        }, promise);
+    }
+
+    /**
+     * Returns a composable view of {@code execution}. Terminating the view does not terminate the original execution.
+     *
+     * @param execution
+     *     the execution
+     *
+     * @return composable execution
+     */
+    public static <T> CompletableExecution<T> from(final Execution<T> execution) {
+        if (execution instanceof CompletableExecution) {
+            return (CompletableExecution<T>) execution;
+        }
+
+        final NotifyingFutureTask<T> promise = NotifyingFutureTask.promise();
+        listen(execution, new Outcome<T>() {
+            @Override
+            void succeeded(T result) {
+                promise.complete(result);
+            }
+
+            @Override
+            void failed(Throwable cause) {
+                promise.fail(cause);
+            }
+        });
+
+        return new DeferredExecution<T>(Spacelift.service(), new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return execution.await();
+            }
+        }, promise);
+    }
+
+    @Override
+    public <OUT> CompletableExecution<OUT> thenApply(final ExecutionFunction<? super RESULT, ? extends OUT> function) {
+
+        final NotifyingFutureTask<OUT> next = NotifyingFutureTask.promise();
+        listen(this, new Outcome<RESULT>() {
+            @Override
+            void succeeded(RESULT result) {
+                try {
+                    next.complete(function.apply(result));
+                } catch (Exception e) {
+                    next.fail(e);
+                }
+            }
+
+            @Override
+            void failed(Throwable cause) {
+                next.fail(cause);
+            }
+        });
+
+        return new DeferredExecution<OUT>(service, new Callable<OUT>() {
+            @Override
+            public OUT call() throws Exception {
+                return function.apply(task.call());
+            }
+        }, next);
+    }
+
+    @Override
+    public <OUT> CompletableExecution<OUT> thenCompose(
+        final ExecutionFunction<? super RESULT, ? extends Execution<OUT>> function) {
+
+        final NotifyingFutureTask<OUT> next = NotifyingFutureTask.promise();
+        listen(this, new Outcome<RESULT>() {
+            @Override
+            void succeeded(RESULT result) {
+                Execution<OUT> execution;
+                try {
+                    execution = function.apply(result);
+                } catch (Exception e) {
+                    next.fail(e);
+                    return;
+                }
+                listen(execution, new Outcome<OUT>() {
+                    @Override
+                    void succeeded(OUT result) {
+                        next.complete(result);
+                    }
+
+                    @Override
+                    void failed(Throwable cause) {
+                        next.fail(cause);
+                    }
+                });
+            }
+
+            @Override
+            void failed(Throwable cause) {
+                next.fail(cause);
+            }
+        });
+
+        return new DeferredExecution<OUT>(service, new Callable<OUT>() {
+            @Override
+            public OUT call() throws Exception {
+                return function.apply(task.call()).await();
+            }
+        }, next);
+    }
+
+    @Override
+    public CompletableExecution<RESULT> onComplete(CompletionListener<RESULT> listener) {
+        super.onComplete(listener);
+        return this;
+    }
+
+    // passes outcome of a completed execution without blocking
+    private static <T> void listen(Execution<? extends T> execution, final Outcome<T> outcome) {
+        if (execution instanceof DeferredExecution) {
+            final NotifyingFutureTask<? extends T> future = ((DeferredExecution<? extends T>) execution).promise;
+            future.whenDone(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        outcome.succeeded(future.get());
+                    } catch (CancellationException e) {
+                        outcome.failed(e);
+                    } catch (java.util.concurrent.ExecutionException e) {
+                        outcome.failed(e.getCause());
+                    } catch (InterruptedException e) {
+                        // future is done, get() does not block
+                        outcome.failed(e);
+                    }
+                }
+            });
+            return;
+        }
+
+        listenTo(execution, outcome);
+    }
+
+    private static <T, E extends T> void listenTo(Execution<E> execution, final Outcome<T> outcome) {
+        Executions.onComplete(execution, new CompletionListener<E>() {
+            @Override
+            public void completed(Execution<E> execution) {
+                E result;
+                try {
+                    result = execution.await();
+                } catch (RuntimeException e) {
+                    outcome.failed(e);
+                    return;
+                }
+                outcome.succeeded(result);
+            }
+        });
+    }
+
+    /**
+     * Receiver of execution outcome
+     */
+    private abstract static class Outcome<T> {
+
+        abstract void succeeded(T result);
+
+        abstract void failed(Throwable cause);
+    }
+}
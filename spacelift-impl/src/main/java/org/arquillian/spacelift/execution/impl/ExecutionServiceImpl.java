@@ -19,9 +19,7 @@ package org.arquillian.spacelift.execution.impl;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import org.arquillian.spacelift.execution.Execution;
@@ -30,6 +28,7 @@ import org.arquillian.spacelift.execution.TimeoutExecutionException;
 
 /**
  * Default execution service implementation. It uses cached threaded pool to execute or schedule callables to be run.
+ * Returned executions implement {@link org.arquillian.spacelift.execution.CompletableExecution}.
  *
  * @author <a href="mailto:kpiwko@redhat.com">Karel Piwko</a>
  */
@@ -46,15 +45,18 @@ public class ExecutionServiceImpl implements ExecutionService {
 
     @Override
     public <T> Execution<T> execute(Callable<T> task) throws org.arquillian.spacelift.execution.ExecutionException {
-        Future<T> future = service.submit(task);
-        return new FutureBasedExecution<T>(this, task, future);
+        NotifyingFutureTask<T> future = new NotifyingFutureTask<T>(task);
+        service.execute(future);
+        return new DeferredExecution<T>(this, task, future);
     }
 
     @Override
     public <T> Execution<T> schedule(Callable<T> task, long delay, TimeUnit unit) throws TimeoutExecutionException,
         org.arquillian.spacelift.execution.ExecutionException {
 
-        ScheduledFuture<T> future = scheduledService.schedule(task, delay, unit);
-        return new FutureBasedExecution<T>(this, task, future);
+        // cancelling the task prevents it from running even though it stays scheduled
+        NotifyingFutureTask<T> future = new NotifyingFutureTask<T>(task);
+        scheduledService.schedule(future, delay, unit);
+        return new DeferredExecution<T>(this, task, future);
     }
 }
@@ -20,11 +20,14 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.arquillian.spacelift.execution.CompletionListener;
 import org.arquillian.spacelift.execution.CountDownWatch;
 import org.arquillian.spacelift.execution.Execution;
 import org.arquillian.spacelift.execution.ExecutionCondition;
 import org.arquillian.spacelift.execution.ExecutionException;
 import org.arquillian.spacelift.execution.ExecutionService;
+import org.arquillian.spacelift.execution.ObservableExecution;
 import org.arquillian.spacelift.execution.TimeoutExecutionException;
 
 /**
@@ -35,7 +38,7 @@ import org.arquillian.spacelift.execution.TimeoutExecutionException;
  *
  * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
  */
-class FutureBasedExecution<RESULT> implements Execution<RESULT> {
+class FutureBasedExecution<RESULT> implements ObservableExecution<RESULT> {
 
     public static final long DEFAULT_POLL_INTERVAL = 500;
     public static final TimeUnit DEFAULT_POLL_TIME_UNIT = TimeUnit.MILLISECONDS;
@@ -43,6 +46,8 @@ class FutureBasedExecution<RESULT> implements Execution<RESULT> {
     private final Callable<RESULT> executionTask;
     private final Future<RESULT> executionFuture;
     private final ExecutionService service;
+    private final CompletionListeners<RESULT> listeners;
+    private final AtomicBoolean waiting;
 
     private long pollInterval;
     private TimeUnit pollUnit;
@@ -55,6 +60,17 @@ class FutureBasedExecution<RESULT> implements Execution<RESULT> {
         this.executionFuture = future;
         this.pollInterval = DEFAULT_POLL_INTERVAL;
         this.pollUnit = DEFAULT_POLL_TIME_UNIT;
+        this.listeners = new CompletionListeners<RESULT>();
+        this.waiting = new AtomicBoolean();
+
+        if (future instanceof NotifyingFutureTask) {
+            ((NotifyingFutureTask<RESULT>) future).whenDone(new Runnable() {
+                @Override
+                public void run() {
+                    listeners.complete(FutureBasedExecution.this);
+                }
+            });
+        }
     }
 
     private static ExecutionException unwrapException(Throwable cause, String messageFormat, Object... parameters) {
@@ -144,6 +160,28 @@ class FutureBasedExecution<RESULT> implements Execution<RESULT> {
         }
     }
 
+    @Override
+    public ObservableExecution<RESULT> onComplete(CompletionListener<RESULT> listener) {
+        listeners.add(this, listener);
+
+        // future that does not notify about its completion has to be awaited, a single waiter notifies all listeners
+        if (!(executionFuture instanceof NotifyingFutureTask) && !listeners.isCompleted()
+            && waiting.compareAndSet(false, true)) {
+            service.execute(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    try {
+                        executionFuture.get();
+                    } finally {
+                        listeners.complete(FutureBasedExecution.this);
+                    }
+                    return null;
+                }
+            });
+        }
+        return this;
+    }
+
     @Override
     public Execution<RESULT> reexecuteEvery(long step, TimeUnit unit) {
         this.pollInterval = step;
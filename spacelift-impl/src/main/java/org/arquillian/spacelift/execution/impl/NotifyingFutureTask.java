@@ -0,0 +1,149 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.execution.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link FutureTask} that runs callbacks as soon as it is done, including cancellation. It can also serve as a promise
+ * whose result is set externally.
+ * <p>
+ * Callbacks often complete other tasks, whose callbacks are then run by the same thread. Such nesting is limited, deeper
+ * callbacks are deferred until the outermost callback of the thread returns, so long chains of dependent tasks do not
+ * overflow the stack.
+ *
+ * @param <T>
+ *     Type of the result
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+class NotifyingFutureTask<T> extends FutureTask<T> {
+
+    private static final Logger log = Logger.getLogger(NotifyingFutureTask.class.getName());
+
+    static final int MAX_NESTED_CALLBACKS = 32;
+
+    private static final ThreadLocal<Trampoline> TRAMPOLINE = new ThreadLocal<Trampoline>() {
+        @Override
+        protected Trampoline initialValue() {
+            return new Trampoline();
+        }
+    };
+
+    private final List<Runnable> callbacks = new ArrayList<Runnable>();
+    private boolean notified;
+
+    NotifyingFutureTask(Callable<T> callable) {
+        super(callable);
+    }
+
+    /**
+     * Creates a task that is never run, its result has to be set by {@link #complete(Object)} or {@link #fail(Throwable)}
+     */
+    static <T> NotifyingFutureTask<T> promise() {
+        return new NotifyingFutureTask<T>(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                throw new IllegalStateException("Result of a promise must be set externally");
+            }
+        });
+    }
+
+    /**
+     * Completes the task with {@code result}, unless it is already done
+     */
+    void complete(T result) {
+        set(result);
+    }
+
+    /**
+     * Completes the task with {@code failure}, unless it is already done
+     */
+    void fail(Throwable failure) {
+        setException(failure);
+    }
+
+    /**
+     * Runs {@code callback} once the task is done. If the task is already done, callback is run immediately.
+     */
+    void whenDone(Runnable callback) {
+        synchronized (callbacks) {
+            if (!notified) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+        run(callback);
+    }
+
+    @Override
+    protected void done() {
+        List<Runnable> toRun;
+        synchronized (callbacks) {
+            notified = true;
+            toRun = new ArrayList<Runnable>(callbacks);
+            callbacks.clear();
+        }
+        for (Runnable callback : toRun) {
+            run(callback);
+        }
+    }
+
+    private static void run(Runnable callback) {
+        Trampoline trampoline = TRAMPOLINE.get();
+        if (trampoline.depth >= MAX_NESTED_CALLBACKS) {
+            trampoline.deferred.add(callback);
+            return;
+        }
+
+        boolean outermost = trampoline.depth == 0;
+        trampoline.depth++;
+        try {
+            invoke(callback);
+            if (outermost) {
+                // deferred callbacks start nesting from the top again
+                Runnable deferred;
+                while ((deferred = trampoline.deferred.poll()) != null) {
+                    invoke(deferred);
+                }
+            }
+        } finally {
+            trampoline.depth--;
+        }
+    }
+
+    private static void invoke(Runnable callback) {
+        try {
+            callback.run();
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Completion callback failed", e);
+        }
+    }
+
+    // callbacks being run by a thread
+    private static class Trampoline {
+
+        int depth;
+        final LinkedList<Runnable> deferred = new LinkedList<Runnable>();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.archive;
+
+import java.util.List;
+import java.util.regex.Pattern;
+import org.arquillian.spacelift.task.text.ReplacementTuple;
+
+/**
+ * Renames entries of an archive by a sequence of regular expression replacements, compiled once for the whole archive.
+ * Replacement removing the first directory, as set by {@link UncompressTool#cutdirs()}, is applied without a regular
+ * expression.
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+class EntryNameRemapping {
+
+    private final Step[] steps;
+
+    private EntryNameRemapping(Step[] steps) {
+        this.steps = steps;
+    }
+
+    /**
+     * Compiles replacements, they are applied in the given order
+     */
+    static EntryNameRemapping compile(List<ReplacementTuple<?>> replacements) {
+        Step[] steps = new Step[replacements.size()];
+        for (int i = 0; i < steps.length; i++) {
+            ReplacementTuple<?> replacement = replacements.get(i);
+            if (UncompressTool.CUT_DIR_PATTERN.equals(replacement.getRegex())
+                && UncompressTool.CUT_DIR_REPLACEMENT.equals(replacement.getReplacement())) {
+                steps[i] = new CutDir();
+            } else {
+                steps[i] = new Replacement(Pattern.compile(replacement.getRegex()), replacement.getReplacement());
+            }
+        }
+        return new EntryNameRemapping(steps);
+    }
+
+    /**
+     * Returns remapped name of the entry, with all filesystem delimiters mapped to forward slash
+     */
+    String remap(String entryName) {
+        if (entryName == null) {
+            return entryName;
+        }
+
+        String name = entryName.replace('\\', '/');
+        for (Step step : steps) {
+            name = step.apply(name);
+        }
+        return name;
+    }
+
+    private interface Step {
+
+        String apply(String name);
+    }
+
+    private static class Replacement implements Step {
+
+        private final Pattern pattern;
+        private final String replacement;
+
+        Replacement(Pattern pattern, String replacement) {
+            this.pattern = pattern;
+            this.replacement = replacement;
+        }
+
+        @Override
+        public String apply(String name) {
+            return pattern.matcher(name).replaceAll(replacement);
+        }
+    }
+
+    /**
+     * Same as replacing {@link UncompressTool#CUT_DIR_PATTERN} by {@link UncompressTool#CUT_DIR_REPLACEMENT}, that is
+     * removing an optional leading slash and the first non-empty directory
+     */
+    private static class CutDir implements Step {
+
+        @Override
+        public String apply(String name) {
+            int from = name.startsWith("/") ? 1 : 0;
+            int slash = name.indexOf('/', from);
+            return slash > from ? name.substring(slash + 1) : name;
+        }
+    }
+}
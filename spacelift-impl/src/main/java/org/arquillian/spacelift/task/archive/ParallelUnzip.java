@@ -0,0 +1,224 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.archive;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.arquillian.spacelift.execution.Execution;
+import org.arquillian.spacelift.execution.ExecutionException;
+import org.arquillian.spacelift.execution.ExecutionService;
+
+/**
+ * Extracts a zip archive by multiple threads, or by the calling thread if only one is allowed. Entries are located by the central directory, so each of them can be
+ * inflated independently and entries that are filtered out are not read at all. Directories are created up front,
+ * files are then extracted by a bounded number of workers, largest ones first. Symbolic links are created last.
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+class ParallelUnzip {
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private final UnzipTool tool;
+    private final ExecutionService service;
+    private final int threads;
+
+    private volatile boolean failed;
+
+    ParallelUnzip(UnzipTool tool, ExecutionService service, int threads) {
+        this.tool = tool;
+        this.service = service;
+        this.threads = threads;
+    }
+
+    /**
+     * Extracts all entries of the archive
+     *
+     * @throws IOException
+     *     if archive cannot be read or any of the entries cannot be extracted
+     */
+    void extract(File archive) throws IOException {
+        ZipFile zip = new ZipFile(archive);
+        try {
+            Set<File> directories = new LinkedHashSet<File>();
+            // an entry that appears more than once overwrites previous ones, as if they were extracted in order
+            Map<File, ZipArchiveEntry> files = new LinkedHashMap<File, ZipArchiveEntry>();
+            Map<File, ZipArchiveEntry> links = new LinkedHashMap<File, ZipArchiveEntry>();
+
+            for (Enumeration<ZipArchiveEntry> entries = zip.getEntriesInPhysicalOrder(); entries.hasMoreElements(); ) {
+                ZipArchiveEntry entry = entries.nextElement();
+                if (!tool.accepts(entry)) {
+                    // content of the entry is never read
+                    continue;
+                }
+                File file = tool.target(entry);
+                if (entry.isDirectory()) {
+                    directories.add(file);
+                } else {
+                    directories.add(file.getParentFile());
+                    files.remove(file);
+                    links.remove(file);
+                    if (tool.isSymbolicLink(entry)) {
+                        links.put(file, entry);
+                    } else {
+                        files.put(file, entry);
+                    }
+                }
+            }
+
+            // workers do not race to create the same parent directories
+            for (File directory : directories) {
+                if (directory != null) {
+                    directory.mkdirs();
+                }
+            }
+
+            List<Map.Entry<File, ZipArchiveEntry>> queued = new ArrayList<Map.Entry<File, ZipArchiveEntry>>(
+                files.entrySet());
+            Collections.sort(queued, new Comparator<Map.Entry<File, ZipArchiveEntry>>() {
+                @Override
+                public int compare(Map.Entry<File, ZipArchiveEntry> o1, Map.Entry<File, ZipArchiveEntry> o2) {
+                    long s1 = o1.getValue().getCompressedSize();
+                    long s2 = o2.getValue().getCompressedSize();
+                    return s1 > s2 ? -1 : (s1 == s2 ? 0 : 1);
+                }
+            });
+
+            extract(zip, new ConcurrentLinkedQueue<Map.Entry<File, ZipArchiveEntry>>(queued));
+
+            for (Map.Entry<File, ZipArchiveEntry> link : links.entrySet()) {
+                InputStream is = zip.getInputStream(link.getValue());
+                try {
+                    tool.createSymbolicLink(link.getKey(), tool.symbolicLinkTarget(link.getValue(), is));
+                } finally {
+                    is.close();
+                }
+            }
+        } finally {
+            zip.close();
+        }
+    }
+
+    private void extract(ZipFile zip, Queue<Map.Entry<File, ZipArchiveEntry>> queue) throws IOException {
+        int workers = Math.min(threads, queue.size());
+        if (workers <= 1) {
+            // no worker is submitted for a single thread, entries are extracted by the calling one
+            new Worker(zip, queue).extractAll();
+            return;
+        }
+        List<Execution<Void>> executions = new ArrayList<Execution<Void>>(workers);
+        try {
+            for (int i = 0; i < workers; i++) {
+                executions.add(service.execute(new Worker(zip, queue)));
+            }
+        } finally {
+            // archive is closed once all submitted workers are done
+            ExecutionException failure = null;
+            for (Execution<Void> execution : executions) {
+                try {
+                    execution.await();
+                } catch (ExecutionException e) {
+                    failed = true;
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+            if (failure != null) {
+                throw ioException(failure);
+            }
+        }
+    }
+
+    private static IOException ioException(ExecutionException e) {
+        Throwable cause = e;
+        while (cause != null && !(cause instanceof IOException)) {
+            cause = cause.getCause();
+        }
+        if (cause != null) {
+            return (IOException) cause;
+        }
+        IOException io = new IOException(e.getMessage());
+        io.initCause(e);
+        return io;
+    }
+
+    private class Worker implements Callable<Void> {
+
+        private final ZipFile zip;
+        private final Queue<Map.Entry<File, ZipArchiveEntry>> queue;
+
+        Worker(ZipFile zip, Queue<Map.Entry<File, ZipArchiveEntry>> queue) {
+            this.zip = zip;
+            this.queue = queue;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            extractAll();
+            return null;
+        }
+
+        void extractAll() throws IOException {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            Map.Entry<File, ZipArchiveEntry> next;
+            while (!failed && (next = queue.poll()) != null) {
+                try {
+                    extract(next.getValue(), next.getKey(), buffer);
+                } catch (IOException e) {
+                    // let other workers stop early
+                    failed = true;
+                    throw e;
+                }
+            }
+        }
+
+        private void extract(ZipArchiveEntry entry, File file, byte[] buffer) throws IOException {
+            InputStream is = zip.getInputStream(entry);
+            try {
+                OutputStream os = UncompressTool.openOutputStream(file);
+                try {
+                    int count;
+                    while ((count = is.read(buffer)) != -1) {
+                        os.write(buffer, 0, count);
+                    }
+                } finally {
+                    os.close();
+                }
+            } finally {
+                is.close();
+            }
+            tool.applyPermissions(entry, file);
+        }
+    }
+}
@@ -75,12 +75,43 @@ public class PermissionsUtil {
         return filePermission;
     }
 
+    /**
+     * Applies permissions to the file. If JVM and file system support POSIX permissions, owner, group and others
+     * permissions are set exactly and at once. Otherwise, group and others permissions are approximated.
+     */
     public static void applyPermission(File file, FilePermission permissions) {
 
+        if (PosixFiles.setMode(file, toMode(permissions))) {
+            return;
+        }
+
         file.setExecutable(permissions.isOwnerCanExecute(),
             !permissions.isGroupCanExecute() && !permissions.isOthersCanExecute());
         file.setWritable(permissions.isOwnerCanWrite(),
             !permissions.isGroupCanWrite() && !permissions.isOthersCanWrite());
         file.setReadable(permissions.isOwnerCanRead(), !permissions.isGroupCanRead() && !permissions.isOthersCanRead());
     }
+
+    /**
+     * Applies permission bits of the mode, such as {@code 0755}, to the file
+     */
+    static void applyMode(File file, int mode) {
+        if (!PosixFiles.setMode(file, mode & 0777)) {
+            applyPermission(file, toFilePermission(mode));
+        }
+    }
+
+    private static int toMode(FilePermission permissions) {
+        int mode = 0;
+        mode |= permissions.isOwnerCanRead() ? OWNER_READ_FLAG : 0;
+        mode |= permissions.isOwnerCanWrite() ? OWNER_WRITE_FLAG : 0;
+        mode |= permissions.isOwnerCanExecute() ? OWNER_EXECUTE_FLAG : 0;
+        mode |= permissions.isGroupCanRead() ? GROUP_READ_FLAG : 0;
+        mode |= permissions.isGroupCanWrite() ? GROUP_WRITE_FLAG : 0;
+        mode |= permissions.isGroupCanExecute() ? GROUP_EXECUTE_FLAG : 0;
+        mode |= permissions.isOthersCanRead() ? OTHERS_READ_FLAG : 0;
+        mode |= permissions.isOthersCanWrite() ? OTHERS_WRITE_FLAG : 0;
+        mode |= permissions.isOthersCanExecute() ? OTHERS_EXECUTE_FLAG : 0;
+        return mode;
+    }
 }
@@ -0,0 +1,307 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.archive;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.arquillian.spacelift.execution.Execution;
+import org.arquillian.spacelift.execution.ExecutionException;
+import org.arquillian.spacelift.execution.ExecutionService;
+
+/**
+ * Extracts an archive stream by a pipeline. Calling thread decompresses the stream and reads entries into a bounded
+ * pool of buffers, while writer threads write the entries to disk. Reading thus never waits for the disk unless all
+ * buffers are full, and writing of small files overlaps. Buffers are allocated as needed, up to the bound, and reused
+ * once their content is written.
+ * <p>
+ * Directories are created by the reading thread, before any entry inside them is written. Entries extracted to the
+ * same file are written in the order they appear in the archive. Links are created by the reading thread as well, once
+ * the entries they refer to or replace are written.
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+class PipelinedExtraction {
+
+    static final int CHUNK_SIZE = 65536;
+
+    // at most 16 MB of content waits to be written
+    static final int MAX_CHUNKS = 256;
+
+    private static final Chunk END = new Chunk(new byte[0], 0);
+    private static final Chunk ABORT = new Chunk(new byte[0], 0);
+    private static final Job NO_MORE_JOBS = new Job(null, null, null);
+
+    private final UncompressTool tool;
+    private final ExecutionService service;
+    private final int threads;
+
+    // buffers that were written and can be reused
+    private final BlockingQueue<byte[]> buffers = new LinkedBlockingQueue<byte[]>();
+    private final BlockingQueue<Job> jobs = new LinkedBlockingQueue<Job>();
+
+    private volatile IOException failure;
+
+    // accessed by the reading thread only
+    private int allocated;
+
+    PipelinedExtraction(UncompressTool tool, ExecutionService service, int threads) {
+        this.tool = tool;
+        this.service = service;
+        this.threads = threads;
+    }
+
+    /**
+     * Extracts all entries of the archive
+     *
+     * @throws IOException
+     *     if archive cannot be read or any of the entries cannot be written
+     */
+    void extract(ArchiveInputStream archive) throws IOException {
+        List<Execution<Void>> writers = new ArrayList<Execution<Void>>(threads);
+        Job current = null;
+        try {
+            for (int i = 0; i < threads; i++) {
+                writers.add(service.execute(new Writer()));
+            }
+
+            Map<File, Job> last = new HashMap<File, Job>();
+            ArchiveEntry entry;
+            while (failure == null && (entry = archive.getNextEntry()) != null) {
+                if (!tool.accepts(entry)) {
+                    continue;
+                }
+                File file = tool.target(entry);
+                if (entry.isDirectory()) {
+                    file.mkdirs();
+                    continue;
+                }
+                if (!file.getParentFile().exists()) {
+                    file.getParentFile().mkdirs();
+                }
+
+                String hardLink = tool.hardLinkTarget(entry);
+                if (hardLink != null) {
+                    awaitWritten(last.remove(file));
+                    awaitWritten(last.get(tool.target(hardLink)));
+                    tool.createHardLink(file, hardLink);
+                    continue;
+                }
+                if (tool.isSymbolicLink(entry)) {
+                    awaitWritten(last.remove(file));
+                    tool.createSymbolicLink(file, tool.symbolicLinkTarget(entry, archive));
+                    continue;
+                }
+
+                current = new Job(file, entry, last.get(file));
+                last.put(file, current);
+                jobs.add(current);
+                read(archive, current);
+                current = null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Extraction was interrupted");
+        } finally {
+            if (current != null) {
+                current.chunks.add(ABORT);
+            }
+            for (int i = 0; i < writers.size(); i++) {
+                jobs.add(NO_MORE_JOBS);
+            }
+            await(writers);
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void read(ArchiveInputStream archive, Job job) throws IOException, InterruptedException {
+        while (failure == null) {
+            byte[] buffer = acquire();
+            int length = 0;
+            int read = 0;
+            while (length < buffer.length && (read = archive.read(buffer, length, buffer.length - length)) != -1) {
+                length += read;
+            }
+            if (length > 0) {
+                job.chunks.add(new Chunk(buffer, length));
+            } else {
+                release(buffer);
+            }
+            if (read == -1) {
+                job.chunks.add(END);
+                return;
+            }
+        }
+        job.chunks.add(ABORT);
+    }
+
+    /**
+     * Takes a buffer from the pool, allocates a new one if the pool is empty and bound was not reached yet, otherwise
+     * waits until a buffer is written
+     */
+    private byte[] acquire() throws InterruptedException {
+        byte[] buffer = buffers.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        if (allocated < MAX_CHUNKS) {
+            allocated++;
+            return new byte[CHUNK_SIZE];
+        }
+        return buffers.take();
+    }
+
+    private void release(byte[] buffer) {
+        buffers.add(buffer);
+    }
+
+    private static void awaitWritten(Job job) throws InterruptedException {
+        if (job != null) {
+            job.done.await();
+        }
+    }
+
+    private void await(List<Execution<Void>> writers) {
+        for (Execution<Void> writer : writers) {
+            try {
+                writer.await();
+            } catch (ExecutionException e) {
+                fail(ioException(e));
+            }
+        }
+    }
+
+    private synchronized void fail(IOException e) {
+        if (failure == null) {
+            failure = e;
+        }
+    }
+
+    private static IOException ioException(ExecutionException e) {
+        Throwable cause = e;
+        while (cause != null && !(cause instanceof IOException)) {
+            cause = cause.getCause();
+        }
+        if (cause != null) {
+            return (IOException) cause;
+        }
+        IOException io = new IOException(e.getMessage());
+        io.initCause(e);
+        return io;
+    }
+
+    private static class Chunk {
+
+        final byte[] buffer;
+        final int length;
+
+        Chunk(byte[] buffer, int length) {
+            this.buffer = buffer;
+            this.length = length;
+        }
+    }
+
+    private static class Job {
+
+        final File file;
+        final ArchiveEntry entry;
+        // job extracting to the same file earlier, it has to finish first
+        final Job previous;
+        final BlockingQueue<Chunk> chunks = new LinkedBlockingQueue<Chunk>();
+        final CountDownLatch done = new CountDownLatch(1);
+        // accessed by the writer thread only
+        boolean ended;
+
+        Job(File file, ArchiveEntry entry, Job previous) {
+            this.file = file;
+            this.entry = entry;
+            this.previous = previous;
+        }
+    }
+
+    private class Writer implements Callable<Void> {
+
+        @Override
+        public Void call() throws Exception {
+            Job job;
+            while ((job = jobs.take()) != NO_MORE_JOBS) {
+                try {
+                    if (job.previous != null) {
+                        job.previous.done.await();
+                    }
+                    write(job);
+                } catch (IOException e) {
+                    fail(e);
+                    // buffers of the job are released, so reading thread does not wait for them
+                    if (!job.ended) {
+                        discard(job);
+                    }
+                } finally {
+                    job.done.countDown();
+                }
+            }
+            return null;
+        }
+
+        private void write(Job job) throws IOException, InterruptedException {
+            if (failure != null) {
+                discard(job);
+                return;
+            }
+            OutputStream os = UncompressTool.openOutputStream(job.file);
+            try {
+                Chunk chunk;
+                while ((chunk = job.chunks.take()) != END) {
+                    if (chunk == ABORT) {
+                        job.ended = true;
+                        return;
+                    }
+                    try {
+                        os.write(chunk.buffer, 0, chunk.length);
+                    } finally {
+                        release(chunk.buffer);
+                    }
+                }
+                job.ended = true;
+            } finally {
+                os.close();
+            }
+            tool.applyPermissions(job.entry, job.file);
+        }
+
+        private void discard(Job job) throws InterruptedException {
+            Chunk chunk;
+            while ((chunk = job.chunks.take()) != END && chunk != ABORT) {
+                release(chunk.buffer);
+            }
+            job.ended = true;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.archive;
+
+import java.io.File;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Access to POSIX permissions and links of {@code java.nio.file}, if JVM provides it. Spacelift runs on Java 6, so the
+ * API is called by reflection. All methods return {@code false} if operation is not supported by JVM or file system,
+ * callers are expected to fall back to {@link File} methods.
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+class PosixFiles {
+
+    private static final Logger log = Logger.getLogger(PosixFiles.class.getName());
+
+    // names of PosixFilePermission constants, from the most significant bit of the mode
+    private static final String[] PERMISSIONS = {
+        "OWNER_READ", "OWNER_WRITE", "OWNER_EXECUTE", "GROUP_READ", "GROUP_WRITE", "GROUP_EXECUTE", "OTHERS_READ",
+        "OTHERS_WRITE", "OTHERS_EXECUTE"};
+
+    private static final Method TO_PATH;
+    private static final Method SET_POSIX_FILE_PERMISSIONS;
+    private static final Method CREATE_SYMBOLIC_LINK;
+    private static final Method CREATE_LINK;
+    private static final Method IS_SYMBOLIC_LINK;
+    private static final Object[] PERMISSION_VALUES;
+    private static final Object NO_ATTRIBUTES;
+
+    static {
+        Method toPath = null;
+        Method setPermissions = null;
+        Method createSymbolicLink = null;
+        Method createLink = null;
+        Method isSymbolicLink = null;
+        Object[] permissionValues = null;
+        Object noAttributes = null;
+        try {
+            Class<?> path = Class.forName("java.nio.file.Path");
+            Class<?> files = Class.forName("java.nio.file.Files");
+            Class<?> attribute = Class.forName("java.nio.file.attribute.FileAttribute");
+            Class<?> permission = Class.forName("java.nio.file.attribute.PosixFilePermission");
+
+            permissionValues = new Object[PERMISSIONS.length];
+            for (int i = 0; i < PERMISSIONS.length; i++) {
+                permissionValues[i] = permission.getField(PERMISSIONS[i]).get(null);
+            }
+            noAttributes = Array.newInstance(attribute, 0);
+
+            setPermissions = files.getMethod("setPosixFilePermissions", path, Set.class);
+            createSymbolicLink = files.getMethod("createSymbolicLink", path, path, noAttributes.getClass());
+            createLink = files.getMethod("createLink", path, path);
+            isSymbolicLink = files.getMethod("isSymbolicLink", path);
+            toPath = File.class.getMethod("toPath");
+        } catch (Exception e) {
+            // running on Java 6
+            toPath = null;
+        }
+        TO_PATH = toPath;
+        SET_POSIX_FILE_PERMISSIONS = setPermissions;
+        CREATE_SYMBOLIC_LINK = createSymbolicLink;
+        CREATE_LINK = createLink;
+        IS_SYMBOLIC_LINK = isSymbolicLink;
+        PERMISSION_VALUES = permissionValues;
+        NO_ATTRIBUTES = noAttributes;
+    }
+
+    /**
+     * Sets owner, group and others permissions of the file at once
+     *
+     * @param mode
+     *     permission bits, such as {@code 0755}, other bits are ignored
+     */
+    static boolean setMode(File file, int mode) {
+        if (TO_PATH == null) {
+            return false;
+        }
+        Set<Object> permissions = new HashSet<Object>();
+        for (int i = 0; i < PERMISSION_VALUES.length; i++) {
+            if ((mode & (0400 >> i)) != 0) {
+                permissions.add(PERMISSION_VALUES[i]);
+            }
+        }
+        return invoke(SET_POSIX_FILE_PERMISSIONS, file, permissions);
+    }
+
+    /**
+     * Creates a symbolic link pointing to {@code target}, which is kept as is, that is relative targets stay relative
+     */
+    static boolean createSymbolicLink(File link, String target) {
+        if (TO_PATH == null) {
+            return false;
+        }
+        try {
+            return invoke(CREATE_SYMBOLIC_LINK, link, TO_PATH.invoke(new File(target)), NO_ATTRIBUTES);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Creates a hard link to an existing file
+     */
+    static boolean createLink(File link, File existing) {
+        if (TO_PATH == null) {
+            return false;
+        }
+        try {
+            return invoke(CREATE_LINK, link, TO_PATH.invoke(existing));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether the file is a symbolic link, links cannot be detected on Java 6
+     */
+    static boolean isSymbolicLink(File file) {
+        if (TO_PATH == null) {
+            return false;
+        }
+        try {
+            return (Boolean) IS_SYMBOLIC_LINK.invoke(null, TO_PATH.invoke(file));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static boolean invoke(Method method, File file, Object... args) {
+        try {
+            Object[] arguments = new Object[args.length + 1];
+            arguments[0] = TO_PATH.invoke(file);
+            System.arraycopy(args, 0, arguments, 1, args.length);
+            method.invoke(null, arguments);
+            return true;
+        } catch (InvocationTargetException e) {
+            // file system does not support the operation, or it failed
+            log.log(Level.FINE, "Unable to call {0} for {1}: {2}", new Object[] {method.getName(), file,
+                e.getCause()});
+            return false;
+        } catch (IllegalAccessException e) {
+            return false;
+        }
+    }
+}
@@ -20,12 +20,21 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.arquillian.spacelift.Spacelift;
+import org.arquillian.spacelift.execution.ExecutionService;
 import org.arquillian.spacelift.task.Task;
+import org.arquillian.spacelift.task.net.DownloadTool;
 import org.arquillian.spacelift.task.text.ReplacementTuple;
 
 /**
@@ -35,6 +44,8 @@ import org.arquillian.spacelift.task.text.ReplacementTuple;
  */
 public abstract class UncompressTool extends Task<File, File> {
 
+    private static final Logger log = Logger.getLogger(UncompressTool.class.getName());
+
     protected static final String CUT_DIR_PATTERN = "^/?([^/]+)/(.*)";
     protected static final String CUT_DIR_REPLACEMENT = "$2";
 
@@ -42,12 +53,51 @@ public abstract class UncompressTool extends Task<File, File> {
 
     private List<ReplacementTuple<?>> replacements = new ArrayList<ReplacementTuple<?>>();
 
+    private List<Pattern> includes = new ArrayList<Pattern>();
+
+    private List<Pattern> excludes = new ArrayList<Pattern>();
+
+    // replacements compiled when extraction starts
+    private EntryNameRemapping remapping;
+
+    // canonical destination and canonical paths of directories entries were extracted to
+    private File canonicalDest;
+    private final Map<File, File> canonicalDirectories = new HashMap<File, File>();
+
     private File dest;
 
+    private DownloadTool download;
+
     protected abstract ArchiveInputStream compressedInputStream(InputStream compressedFile);
 
     protected abstract int permissionsMode(ArchiveEntry archiveEntry);
 
+    /**
+     * Checks whether the entry is a symbolic link. Archive formats able to store links override this method.
+     */
+    protected boolean isSymbolicLink(ArchiveEntry archiveEntry) {
+        return false;
+    }
+
+    /**
+     * Returns target of a symbolic link entry, as it is stored in the archive, or {@code null} if archive format does
+     * not store links. Archive formats able to store links override this method together with
+     * {@link #isSymbolicLink(ArchiveEntry)}.
+     *
+     * @param content
+     *     data of the entry, positioned at their beginning
+     */
+    protected String symbolicLinkTarget(ArchiveEntry archiveEntry, InputStream content) throws IOException {
+        return null;
+    }
+
+    /**
+     * Returns name of the entry the hard link entry refers to, or {@code null} if entry is not a hard link
+     */
+    protected String hardLinkTarget(ArchiveEntry archiveEntry) {
+        return null;
+    }
+
     /**
      * @param pathToDestination
      *     destination where to uncompress a file
@@ -92,17 +142,109 @@ public abstract class UncompressTool extends Task<File, File> {
         return this;
     }
 
+    /**
+     * Extracts only entries matching the glob. If there are multiple includes, entries matching any of them are
+     * extracted. Entries are matched by their name in the archive, before any renaming, with forward slashes as
+     * delimiters and without a leading {@code ./} or {@code /}.
+     * <p>
+     * In the glob, {@code *} matches any characters except {@code /}, {@code **} matches any characters including
+     * {@code /} and {@code ?} matches a single character except {@code /}. For instance, <code>&#42;/bin/**</code>
+     * matches content of {@code bin} directory of a distribution.
+     * <p>
+     * Entries that are not extracted are skipped without being written, zip archive files are not even read.
+     *
+     * @param glob
+     *     glob matching names of entries to be extracted
+     */
+    public UncompressTool include(String glob) {
+        return include(glob(glob));
+    }
+
+    /**
+     * Extracts only entries whose names match the regular expression
+     *
+     * @see #include(String)
+     */
+    public UncompressTool include(Pattern pattern) {
+        includes.add(pattern);
+        return this;
+    }
+
+    /**
+     * Skips entries matching the glob, even if they match an include
+     *
+     * @see #include(String)
+     */
+    public UncompressTool exclude(String glob) {
+        return exclude(glob(glob));
+    }
+
+    /**
+     * Skips entries whose names match the regular expression, even if they match an include
+     *
+     * @see #include(String)
+     */
+    public UncompressTool exclude(Pattern pattern) {
+        excludes.add(pattern);
+        return this;
+    }
+
+    /**
+     * Extracts archive downloaded by {@code download} while it is being transferred, instead of an input file. Archive
+     * is not stored anywhere, unless the download uses a cache.
+     *
+     * @param download
+     *     configured download of the archive, it is not executed itself
+     */
+    public UncompressTool from(DownloadTool download) {
+        this.download = download;
+        return this;
+    }
+
     @Override
     protected File process(File input) throws Exception {
+        remapping = EntryNameRemapping.compile(replacements);
+        canonicalDest = dest.getCanonicalFile();
+        canonicalDirectories.clear();
+        if (download == null && extract(input)) {
+            return this.dest;
+        }
+
+        InputStream in = download != null ? download.openStream() : new FileInputStream(input);
+        try {
+            extract(in);
+            if (download != null) {
+                // archive might end before its stream does, remaining bytes still count for checksum and cache
+                byte[] data = new byte[BUFFER];
+                while (in.read(data) != -1) {
+                }
+            }
+        } finally {
+            in.close();
+        }
+
+        return this.dest;
+    }
+
+    private void extract(InputStream in) throws IOException {
         ArchiveEntry entry = null;
 
         /** Read entries using the getNextEntry method **/
 
-        ArchiveInputStream compressedInputStream = compressedInputStream(new FileInputStream(input));
+        ArchiveInputStream compressedInputStream = compressedInputStream(in);
+
+        if (writerThreads() > 1) {
+            new PipelinedExtraction(this, executionService(), writerThreads()).extract(compressedInputStream);
+            return;
+        }
 
         while ((entry = compressedInputStream.getNextEntry()) != null) {
 
-            File file = new File(this.dest, remapEntryName(entry.getName()));
+            if (!accepts(entry)) {
+                continue;
+            }
+
+            File file = target(entry);
 
             if (entry.isDirectory()) {
                 file.mkdirs();
@@ -112,39 +254,290 @@ public abstract class UncompressTool extends Task<File, File> {
                     file.getParentFile().mkdirs();
                 }
 
+                String hardLink = hardLinkTarget(entry);
+                if (hardLink != null) {
+                    createHardLink(file, hardLink);
+                    continue;
+                }
+                if (isSymbolicLink(entry)) {
+                    createSymbolicLink(file, symbolicLinkTarget(entry, compressedInputStream));
+                    continue;
+                }
+
                 int count;
                 byte data[] = new byte[BUFFER];
 
-                FileOutputStream fos = new FileOutputStream(file);
+                FileOutputStream fos = openOutputStream(file);
                 BufferedOutputStream dest = new BufferedOutputStream(fos, BUFFER);
                 while ((count = compressedInputStream.read(data, 0, BUFFER)) != -1) {
                     dest.write(data, 0, count);
                 }
                 dest.close();
 
-                int permissionsMode = permissionsMode(entry);
-                if (permissionsMode != 0) {
-                    FilePermission filePermission = PermissionsUtil.toFilePermission(permissionsMode);
-                    PermissionsUtil.applyPermission(file, filePermission);
-                }
+                applyPermissions(entry, file);
             }
         }
+    }
 
-        compressedInputStream.close();
+    /**
+     * Returns number of threads writing extracted entries. If it is 1, entries are written by the thread that reads the
+     * archive.
+     */
+    int writerThreads() {
+        return 1;
+    }
 
-        return this.dest;
+    /**
+     * Returns execution service used to extract entries in parallel
+     */
+    ExecutionService executionService() {
+        return getExecutionService() != null ? getExecutionService() : Spacelift.service();
     }
 
-    private String remapEntryName(String entryName) {
+    /**
+     * Extracts archive file by random access, if the format and configuration allow it
+     *
+     * @return {@code true} if the archive was extracted, {@code false} if it should be read as a stream
+     */
+    boolean extract(File archive) throws IOException {
+        return false;
+    }
 
-        if (entryName == null) {
-            return entryName;
+    /**
+     * Checks whether any include or exclude filters were set
+     */
+    boolean isFiltered() {
+        return !includes.isEmpty() || !excludes.isEmpty();
+    }
+
+    /**
+     * Checks whether entry passes include and exclude filters
+     */
+    boolean accepts(ArchiveEntry entry) {
+        if (!isFiltered()) {
+            return true;
+        }
+
+        String name = entry.getName().replace('\\', '/');
+        while (name.startsWith("./") || name.startsWith("/")) {
+            name = name.substring(name.startsWith("/") ? 1 : 2);
+        }
+        // directories are matched as files are, so dist/* matches dist/bin/ directory
+        if (name.endsWith("/")) {
+            name = name.substring(0, name.length() - 1);
+        }
+
+        boolean included = includes.isEmpty();
+        for (Pattern include : includes) {
+            if (include.matcher(name).matches()) {
+                included = true;
+                break;
+            }
+        }
+        if (!included) {
+            return false;
         }
+        for (Pattern exclude : excludes) {
+            if (exclude.matcher(name).matches()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns file the entry is extracted to
+     *
+     * @throws IOException
+     *     if the file is not inside of destination directory
+     */
+    File target(ArchiveEntry entry) throws IOException {
+        return target(entry.getName());
+    }
 
-        String finalName = entryName.replaceAll("\\\\", "/");
-        for (ReplacementTuple<?> remap : replacements) {
-            finalName = finalName.replaceAll(remap.getRegex(), remap.getReplacement());
+    /**
+     * Returns file the entry of given name is extracted to. File is verified to be inside of destination directory
+     * once symbolic links of its parent directories are resolved, so no entry is written outside of it, neither by a
+     * {@code ..} in its name nor through a symbolic link extracted before.
+     *
+     * @throws IOException
+     *     if the file is not inside of destination directory
+     */
+    synchronized File target(String entryName) throws IOException {
+        File file = new File(this.dest, remapping.remap(entryName));
+        if (file.getAbsoluteFile().equals(dest.getAbsoluteFile())) {
+            return file;
+        }
+
+        File canonical;
+        if (".".equals(file.getName()) || "..".equals(file.getName())) {
+            canonical = file.getCanonicalFile();
+        } else {
+            File directory = file.getParentFile();
+            File canonicalDirectory = canonicalDirectories.get(directory);
+            if (canonicalDirectory == null) {
+                canonicalDirectory = directory.getCanonicalFile();
+                canonicalDirectories.put(directory, canonicalDirectory);
+            }
+            canonical = new File(canonicalDirectory, file.getName());
+        }
+
+        if (!isInDestination(canonical)) {
+            throw new IOException("Entry " + entryName + " would be extracted outside of " + dest + " to "
+                + canonical);
+        }
+        return file;
+    }
+
+    /**
+     * Applies permissions stored in the archive to extracted file. Owner, group and others permissions are set by a
+     * single call if the file system supports POSIX permissions.
+     */
+    void applyPermissions(ArchiveEntry entry, File file) {
+        int permissionsMode = permissionsMode(entry);
+        if (permissionsMode != 0) {
+            PermissionsUtil.applyMode(file, permissionsMode);
+        }
+    }
+
+    /**
+     * Creates a symbolic link, replacing a file extracted before at the same path. Links with an absolute target or a
+     * target outside of destination directory are skipped. If links are not supported by JVM or file system, target is
+     * copied if it is a file that already exists.
+     */
+    void createSymbolicLink(File link, String target) throws IOException {
+        if (target == null) {
+            log.log(Level.WARNING, "Skipping symbolic link {0}, its target is not known", link);
+            return;
+        }
+        File resolved = new File(link.getParentFile(), target).getCanonicalFile();
+        if (new File(target).isAbsolute() || target.startsWith("/") || target.startsWith("\\")
+            || !isInDestination(resolved)) {
+            log.log(Level.WARNING, "Skipping symbolic link {0}, its target {1} is outside of {2}", new Object[] {link,
+                target, dest});
+            return;
+        }
+
+        removeFile(link);
+        if (PosixFiles.createSymbolicLink(link, target)) {
+            // directories might now resolve elsewhere
+            synchronized (this) {
+                canonicalDirectories.clear();
+            }
+            return;
+        }
+
+        if (resolved.isFile()) {
+            copy(resolved, link);
+        } else {
+            log.log(Level.WARNING, "Unable to create symbolic link {0} pointing to {1}, skipping it", new Object[] {link,
+                target});
+        }
+    }
+
+    /**
+     * Creates a hard link to a file extracted before from entry {@code entryName}. If links are not supported by JVM or
+     * file system, the file is copied.
+     *
+     * @throws IOException
+     *     if the linked file is outside of destination directory, or link cannot be created
+     */
+    void createHardLink(File link, String entryName) throws IOException {
+        File existing = target(entryName);
+        if (!isInDestination(existing.getCanonicalFile())) {
+            throw new IOException("Hard link " + link + " refers to " + existing.getCanonicalFile() + ", outside of "
+                + dest);
+        }
+        if (!existing.isFile()) {
+            log.log(Level.WARNING, "Unable to create hard link {0}, {1} was not extracted", new Object[] {link,
+                entryName});
+            return;
+        }
+        removeFile(link);
+        if (!PosixFiles.createLink(link, existing)) {
+            copy(existing, link);
+        }
+    }
+
+    /**
+     * Opens file for writing of extracted content. A symbolic link at its path is removed first, so the content is
+     * never written to the target of a link.
+     */
+    static FileOutputStream openOutputStream(File file) throws IOException {
+        if (PosixFiles.isSymbolicLink(file) && !file.delete()) {
+            throw new IOException("Unable to replace symbolic link " + file + " by a file");
+        }
+        return new FileOutputStream(file);
+    }
+
+    private boolean isInDestination(File canonical) {
+        String path = canonical.getPath();
+        String destination = canonicalDest.getPath();
+        return path.equals(destination) || path.startsWith(destination.endsWith(File.separator) ? destination
+            : destination + File.separator);
+    }
+
+    private static void removeFile(File file) throws IOException {
+        if ((file.isFile() || PosixFiles.isSymbolicLink(file)) && !file.delete()) {
+            throw new IOException("Unable to replace " + file + " by a link");
+        }
+    }
+
+    private static void copy(File from, File to) throws IOException {
+        InputStream in = new FileInputStream(from);
+        try {
+            FileOutputStream out = openOutputStream(to);
+            try {
+                byte[] data = new byte[BUFFER];
+                int count;
+                while ((count = in.read(data)) != -1) {
+                    out.write(data, 0, count);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+        to.setExecutable(from.canExecute());
+    }
+
+    /**
+     * Converts a glob to a regular expression, {@code /**} at the end also matches the directory itself
+     */
+    static Pattern glob(String glob) {
+        StringBuilder regex = new StringBuilder();
+        int i = 0;
+        while (i < glob.length()) {
+            if (glob.startsWith("**/", i)) {
+                regex.append("(?:.*/)?");
+                i += 3;
+            } else if (glob.startsWith("/**", i) && i + 3 == glob.length()) {
+                regex.append("(?:/.*)?");
+                i += 3;
+            } else if (glob.startsWith("**", i)) {
+                regex.append(".*");
+                i += 2;
+            } else if (glob.charAt(i) == '*') {
+                regex.append("[^/]*");
+                i++;
+            } else if (glob.charAt(i) == '?') {
+                regex.append("[^/]");
+                i++;
+            } else {
+                int end = i;
+                while (end < glob.length() && "*?".indexOf(glob.charAt(end)) == -1) {
+                    end++;
+                }
+                // a literal run might end by a slash that belongs to a wildcard
+                if (end < glob.length() && end > i && glob.charAt(end - 1) == '/' && glob.startsWith("**", end)
+                    && end + 2 == glob.length()) {
+                    end--;
+                }
+                regex.append(Pattern.quote(glob.substring(i, end)));
+                i = end;
+            }
         }
-        return finalName;
+        return Pattern.compile(regex.toString());
     }
 }
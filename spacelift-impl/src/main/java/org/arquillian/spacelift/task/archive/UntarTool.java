@@ -29,6 +29,10 @@ import org.arquillian.spacelift.execution.ExecutionException;
 
 /**
  * Untar Tool
+ * <p>
+ * Entries are written by the thread that decompresses the archive by default. If more threads are set, extraction is
+ * pipelined, the archive is decompressed into a bounded pool of buffers while entries are written to disk by the
+ * threads.
  *
  * @author <a href="asotobu@gmail.com">Alex Soto</a>
  */
@@ -36,6 +40,8 @@ public class UntarTool extends UncompressTool {
 
     private Compression compression = Compression.GZIP;
 
+    private int threads = 1;
+
     public UntarTool gzip(boolean isGzip) {
         this.compression = (isGzip) ? Compression.GZIP : Compression.NONE;
         return this;
@@ -46,6 +52,23 @@ public class UntarTool extends UncompressTool {
         return this;
     }
 
+    /**
+     * Sets number of threads writing extracted entries to disk, while the archive is decompressed by another thread.
+     * Defaults to 1, that is entries are written by the decompressing thread.
+     */
+    public UntarTool threads(int threads) throws IllegalArgumentException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1, was " + threads);
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    @Override
+    int writerThreads() {
+        return threads;
+    }
+
     @Override
     protected ArchiveInputStream compressedInputStream(InputStream compressedFile) {
 
@@ -64,6 +87,29 @@ public class UntarTool extends UncompressTool {
         }
     }
 
+    @Override
+    protected boolean isSymbolicLink(ArchiveEntry archiveEntry) {
+        return tarEntry(archiveEntry).isSymbolicLink();
+    }
+
+    @Override
+    protected String symbolicLinkTarget(ArchiveEntry archiveEntry, InputStream content) {
+        return tarEntry(archiveEntry).getLinkName();
+    }
+
+    @Override
+    protected String hardLinkTarget(ArchiveEntry archiveEntry) {
+        TarArchiveEntry tarArchiveEntry = tarEntry(archiveEntry);
+        return tarArchiveEntry.isLink() ? tarArchiveEntry.getLinkName() : null;
+    }
+
+    private static TarArchiveEntry tarEntry(ArchiveEntry archiveEntry) {
+        if (archiveEntry instanceof TarArchiveEntry) {
+            return (TarArchiveEntry) archiveEntry;
+        }
+        throw new ExecutionException("No TarEntry has been passed to a Tar method.");
+    }
+
     private enum Compression {
         GZIP {
             @Override
@@ -17,6 +17,9 @@
 package org.arquillian.spacelift.task.archive;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.ArchiveInputStream;
@@ -28,11 +31,42 @@ import org.arquillian.spacelift.execution.ExecutionException;
 
 /**
  * Unzip Tool
+ * <p>
+ * Unlike other uncompress tools, an archive file is not read as a stream. Entries are located by its central directory,
+ * which also holds Unix modes and symbolic link flags of archives created on Unix, so a zip file truncated before its
+ * central directory cannot be extracted. With a single thread, entries are inflated by the thread executing the tool,
+ * if more threads are set, they are inflated in parallel. Filtered out entries are not read at all. Archives extracted while they are being downloaded are read sequentially, so only permissions and links
+ * stored in extra fields of local headers are restored.
  *
  * @author <a href="asotobu@gmail.com">Alex Soto</a>
  */
 public class UnzipTool extends UncompressTool {
 
+    private int threads = 1;
+
+    /**
+     * Sets number of threads extracting entries of the archive in parallel. Archives extracted while they are being
+     * downloaded are read sequentially, entries are then written to disk by the threads. Defaults to 1.
+     */
+    public UnzipTool threads(int threads) throws IllegalArgumentException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1, was " + threads);
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    @Override
+    boolean extract(File archive) throws IOException {
+        new ParallelUnzip(this, executionService(), threads).extract(archive);
+        return true;
+    }
+
+    @Override
+    int writerThreads() {
+        return threads;
+    }
+
     @Override
     protected ArchiveInputStream compressedInputStream(InputStream compressedFile) {
         BufferedInputStream in = new BufferedInputStream(compressedFile);
@@ -41,20 +75,51 @@ public class UnzipTool extends UncompressTool {
 
     @Override
     protected int permissionsMode(ArchiveEntry archiveEntry) {
+        ZipArchiveEntry zipArchiveEntry = zipEntry(archiveEntry);
+        AsiExtraField asiExtraField = asiExtraField(zipArchiveEntry);
+        if (asiExtraField != null) {
+            return asiExtraField.getMode();
+        }
+        // archives created on Unix store the mode in the central directory, it is 0 otherwise
+        return zipArchiveEntry.getUnixMode();
+    }
+
+    @Override
+    protected boolean isSymbolicLink(ArchiveEntry archiveEntry) {
+        ZipArchiveEntry zipArchiveEntry = zipEntry(archiveEntry);
+        AsiExtraField asiExtraField = asiExtraField(zipArchiveEntry);
+        return zipArchiveEntry.isUnixSymlink() || (asiExtraField != null && asiExtraField.isLink());
+    }
+
+    @Override
+    protected String symbolicLinkTarget(ArchiveEntry archiveEntry, InputStream content) throws IOException {
+        AsiExtraField asiExtraField = asiExtraField(zipEntry(archiveEntry));
+        if (asiExtraField != null && asiExtraField.isLink()) {
+            return asiExtraField.getLinkedFile();
+        }
+        // Info-ZIP stores the target as content of the entry
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        byte[] data = new byte[256];
+        int count;
+        while ((count = content.read(data)) != -1) {
+            target.write(data, 0, count);
+        }
+        return target.toString("UTF-8");
+    }
+
+    private static ZipArchiveEntry zipEntry(ArchiveEntry archiveEntry) {
         if (archiveEntry instanceof ZipArchiveEntry) {
-            ZipArchiveEntry zipArchiveEntry = (ZipArchiveEntry) archiveEntry;
-
-            ZipExtraField[] extraFields = zipArchiveEntry.getExtraFields();
-            for (ZipExtraField zipExtraField : extraFields) {
-                if (zipExtraField instanceof AsiExtraField) {
-                    AsiExtraField asiExtraField = (AsiExtraField) zipExtraField;
-                    return asiExtraField.getMode();
-                }
-            }
-        } else {
-            throw new ExecutionException("No ZipEntry has been passed to a Unzip method.");
+            return (ZipArchiveEntry) archiveEntry;
         }
+        throw new ExecutionException("No ZipEntry has been passed to a Unzip method.");
+    }
 
-        return 0;
+    private static AsiExtraField asiExtraField(ZipArchiveEntry zipArchiveEntry) {
+        for (ZipExtraField zipExtraField : zipArchiveEntry.getExtraFields()) {
+            if (zipExtraField instanceof AsiExtraField) {
+                return (AsiExtraField) zipExtraField;
+            }
+        }
+        return null;
     }
 }
@@ -0,0 +1,388 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.net;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.arquillian.spacelift.Spacelift;
+import org.arquillian.spacelift.execution.CompletionListener;
+import org.arquillian.spacelift.execution.Execution;
+import org.arquillian.spacelift.execution.ExecutionException;
+import org.arquillian.spacelift.execution.ExecutionService;
+import org.arquillian.spacelift.execution.Executions;
+import org.arquillian.spacelift.task.Task;
+
+/**
+ * Tool which downloads multiple files concurrently. Number of concurrent downloads from the same host is limited, so
+ * a server is not flooded by requests and idle connections can be reused by next download from the same host.
+ * <p>
+ * A failed download does not stop the others, outcome of each download is available in {@link Results}.
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+public class BatchDownloadTool extends Task<Object, BatchDownloadTool.Results> {
+
+    private final List<DownloadTool> downloads = new ArrayList<DownloadTool>();
+
+    // JDK keeps up to 5 idle connections per host by default, see http.maxConnections
+    private int connectionsPerHost = 4;
+    private int concurrency = 16;
+
+    /**
+     * Adds a download of {@code url} to {@code filePath}
+     */
+    public BatchDownloadTool add(String url, String filePath) throws IllegalArgumentException {
+        try {
+            return add(new URL(url), new File(filePath));
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Adds a download of {@code url} to {@code file}
+     */
+    public BatchDownloadTool add(URL url, File file) {
+        return add(Spacelift.task(DownloadTool.class).from(url).to(file));
+    }
+
+    /**
+     * Adds a configured download. Source and destination of the download must be set.
+     * <p>
+     * Segmented download opens multiple connections, but it counts only once towards the limit per host.
+     */
+    public BatchDownloadTool add(DownloadTool download) throws IllegalArgumentException {
+        if (download.url() == null || download.output() == null) {
+            throw new IllegalArgumentException("Both source URL and destination file of a download must be set");
+        }
+        downloads.add(download);
+        return this;
+    }
+
+    /**
+     * Sets maximal number of concurrent downloads from the same host. Defaults to 4.
+     */
+    public BatchDownloadTool connectionsPerHost(int connectionsPerHost) throws IllegalArgumentException {
+        if (connectionsPerHost < 1) {
+            throw new IllegalArgumentException("Number of connections per host must be positive, was "
+                + connectionsPerHost);
+        }
+        this.connectionsPerHost = connectionsPerHost;
+        return this;
+    }
+
+    /**
+     * Sets maximal number of concurrent downloads in total. Defaults to 16.
+     */
+    public BatchDownloadTool concurrency(int concurrency) throws IllegalArgumentException {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be positive, was " + concurrency);
+        }
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    @Override
+    protected Results process(Object input) throws Exception {
+        ExecutionService service = getExecutionService() != null ? getExecutionService() : Spacelift.service();
+        return new Run(service, new ArrayList<DownloadTool>(downloads), connectionsPerHost, concurrency).call();
+    }
+
+    private static String host(URL url) {
+        return url.getProtocol() + "://" + url.getAuthority();
+    }
+
+    /**
+     * Single execution of the batch. Downloads are submitted to execution service once their host has a free
+     * connection, so no thread is blocked by a download waiting for its turn.
+     */
+    private static class Run {
+
+        private final ExecutionService service;
+        private final int connectionsPerHost;
+        private final int concurrency;
+
+        private final List<Download> all;
+        private final Deque<Download> pending;
+        private final Map<String, Integer> activePerHost = new HashMap<String, Integer>();
+        private final Set<Execution<?>> running = new HashSet<Execution<?>>();
+        private final CountDownLatch done;
+
+        private int active;
+        private boolean terminated;
+
+        Run(ExecutionService service, List<DownloadTool> downloads, int connectionsPerHost, int concurrency) {
+            this.service = service;
+            this.connectionsPerHost = connectionsPerHost;
+            this.concurrency = concurrency;
+            this.all = new ArrayList<Download>(downloads.size());
+            for (DownloadTool download : downloads) {
+                all.add(new Download(download));
+            }
+            this.pending = new ArrayDeque<Download>(all);
+            this.done = new CountDownLatch(all.size());
+        }
+
+        Results call() throws ExecutionException {
+            long start = System.nanoTime();
+
+            List<Download> next;
+            synchronized (this) {
+                next = dispatch();
+            }
+            start(next);
+
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                synchronized (this) {
+                    terminated = true;
+                    for (Execution<?> execution : running) {
+                        execution.terminate();
+                    }
+                }
+                Thread.currentThread().interrupt();
+                throw new ExecutionException(e, "Batch download was interrupted");
+            }
+
+            return new Results(all, System.nanoTime() - start);
+        }
+
+        // must be called while holding the lock, returns downloads that can be started
+        private List<Download> dispatch() {
+            List<Download> next = new ArrayList<Download>();
+            for (Iterator<Download> i = pending.iterator(); !terminated && active < concurrency && i.hasNext();) {
+                Download download = i.next();
+                Integer fromHost = activePerHost.get(download.host);
+                if (fromHost == null || fromHost < connectionsPerHost) {
+                    i.remove();
+                    activePerHost.put(download.host, fromHost == null ? 1 : fromHost + 1);
+                    active++;
+                    next.add(download);
+                }
+            }
+            return next;
+        }
+
+        private void start(List<Download> next) {
+            for (final Download download : next) {
+                Execution<File> execution;
+                try {
+                    execution = service.execute(new Callable<File>() {
+                        @Override
+                        public File call() throws Exception {
+                            download.started = System.nanoTime();
+                            try {
+                                return download.tool.process(null);
+                            } finally {
+                                download.finished = System.nanoTime();
+                            }
+                        }
+                    });
+                } catch (ExecutionException e) {
+                    download.failure = e;
+                    finished(download, null);
+                    continue;
+                }
+
+                synchronized (this) {
+                    running.add(execution);
+                }
+                Executions.onComplete(execution, new CompletionListener<File>() {
+                    @Override
+                    public void completed(Execution<File> execution) {
+                        finished(download, execution);
+                    }
+                }, service);
+            }
+        }
+
+        private void finished(Download download, Execution<File> execution) {
+            if (execution != null) {
+                try {
+                    execution.await();
+                } catch (ExecutionException e) {
+                    download.failure = e;
+                }
+            }
+
+            List<Download> next;
+            synchronized (this) {
+                running.remove(execution);
+                active--;
+                activePerHost.put(download.host, activePerHost.get(download.host) - 1);
+                next = dispatch();
+            }
+            done.countDown();
+            start(next);
+        }
+    }
+
+    /**
+     * Outcome of a single download of the batch
+     */
+    public static class Download {
+
+        private final DownloadTool tool;
+        private final String host;
+        private final DownloadMetrics metrics;
+
+        private volatile long started;
+        private volatile long finished;
+        private volatile ExecutionException failure;
+
+        Download(DownloadTool tool) {
+            this.tool = tool;
+            this.host = host(tool.url());
+            this.metrics = tool.prepareMetrics();
+        }
+
+        public URL url() {
+            return tool.url();
+        }
+
+        public File file() {
+            return tool.output();
+        }
+
+        public boolean isSuccessful() {
+            return failure == null && finished != 0;
+        }
+
+        /**
+         * Returns metrics of the download, available also while it is running
+         */
+        public DownloadMetrics metrics() {
+            return metrics;
+        }
+
+        /**
+         * Returns cause of the failure, or {@code null} if the download succeeded
+         */
+        public ExecutionException failure() {
+            return failure;
+        }
+
+        /**
+         * Returns number of downloaded bytes, {@code 0} if the download failed
+         */
+        public long bytes() {
+            return isSuccessful() ? file().length() : 0;
+        }
+
+        /**
+         * Returns how long the download took, {@code 0} if it has not been started
+         */
+        public long duration(TimeUnit unit) {
+            return started == 0 ? 0 : unit.convert(finished - started, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public String toString() {
+            return url() + " -> " + file() + (isSuccessful() ? "" : " failed: " + failure.getMessage());
+        }
+    }
+
+    /**
+     * Outcome of all downloads of the batch
+     */
+    public static class Results {
+
+        private final List<Download> downloads;
+        private final long durationNanos;
+
+        Results(List<Download> downloads, long durationNanos) {
+            this.downloads = Collections.unmodifiableList(downloads);
+            this.durationNanos = durationNanos;
+        }
+
+        /**
+         * Returns all downloads, in the order they were added
+         */
+        public List<Download> downloads() {
+            return downloads;
+        }
+
+        /**
+         * Returns download to {@code file}, or {@code null} if there was no such download
+         */
+        public Download get(File file) {
+            for (Download download : downloads) {
+                if (download.file().equals(file)) {
+                    return download;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns downloads that failed
+         */
+        public List<Download> failures() {
+            List<Download> failures = new ArrayList<Download>();
+            for (Download download : downloads) {
+                if (!download.isSuccessful()) {
+                    failures.add(download);
+                }
+            }
+            return failures;
+        }
+
+        public boolean isSuccessful() {
+            return failures().isEmpty();
+        }
+
+        /**
+         * Returns number of bytes downloaded by all downloads
+         */
+        public long bytes() {
+            long bytes = 0;
+            for (Download download : downloads) {
+                bytes += download.bytes();
+            }
+            return bytes;
+        }
+
+        /**
+         * Returns how long the whole batch took
+         */
+        public long duration(TimeUnit unit) {
+            return unit.convert(durationNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Returns aggregate throughput of the batch in bytes per second
+         */
+        public double throughput() {
+            return durationNanos == 0 ? 0 : bytes() * 1e9 / durationNanos;
+        }
+    }
+}
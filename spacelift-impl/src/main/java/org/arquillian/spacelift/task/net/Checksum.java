@@ -0,0 +1,176 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Expected checksum of downloaded content
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+class Checksum {
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private final String algorithm;
+    private final String expected;
+
+    /**
+     * Creates an expected checksum
+     *
+     * @param algorithm
+     *     name of {@link MessageDigest} algorithm
+     * @param expected
+     *     expected checksum as a hexadecimal string
+     *
+     * @throws IllegalArgumentException
+     *     if algorithm is not supported or checksum is not a hexadecimal string of the length the algorithm produces
+     */
+    Checksum(String algorithm, String expected) throws IllegalArgumentException {
+        if (expected == null) {
+            throw new IllegalArgumentException("Expected " + algorithm + " checksum must not be null");
+        }
+        int length = newDigest(algorithm).getDigestLength() * 2;
+        String hex = expected.trim().toLowerCase(Locale.ENGLISH);
+        if (hex.length() != length || !hex.matches("[0-9a-f]*")) {
+            throw new IllegalArgumentException("Expected " + algorithm + " checksum must be a hexadecimal string of "
+                + length + " characters, was " + expected);
+        }
+        this.algorithm = algorithm;
+        this.expected = hex;
+    }
+
+    /**
+     * Returns key identifying the content, e.g. {@code sha256:<hex>}
+     */
+    String key() {
+        return algorithm.replace("-", "").toLowerCase(Locale.ENGLISH) + ":" + expected;
+    }
+
+    /**
+     * Returns length of the checksum in bits, longer checksums are considered stronger
+     */
+    int strength() {
+        return expected.length() * 4;
+    }
+
+    @Override
+    public String toString() {
+        return algorithm + " " + expected;
+    }
+
+    /**
+     * Creates digests computing all expected checksums in a single pass
+     */
+    static Digests digests(List<Checksum> checksums) {
+        return new Digests(checksums);
+    }
+
+    private static MessageDigest newDigest(String algorithm) throws IllegalArgumentException {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Checksum algorithm " + algorithm + " is not supported by JVM", e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Checksums being computed from content as it is downloaded
+     */
+    static class Digests {
+
+        private final List<Checksum> checksums;
+        private final MessageDigest[] digests;
+
+        private Digests(List<Checksum> checksums) {
+            this.checksums = checksums;
+            this.digests = new MessageDigest[checksums.size()];
+            for (int i = 0; i < digests.length; i++) {
+                digests[i] = newDigest(checksums.get(i).algorithm);
+            }
+        }
+
+        /**
+         * Checks whether there is anything to compute
+         */
+        boolean isEmpty() {
+            return digests.length == 0;
+        }
+
+        /**
+         * Updates checksums with next bytes of the content
+         */
+        void update(byte[] bytes, int offset, int length) {
+            for (MessageDigest digest : digests) {
+                digest.update(bytes, offset, length);
+            }
+        }
+
+        /**
+         * Updates checksums with first {@code count} bytes of the file
+         */
+        void update(FileChannel channel, long count) throws IOException {
+            if (isEmpty()) {
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long position = 0;
+            while (position < count) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), count - position));
+                int read = channel.read(buffer, position);
+                if (read == -1) {
+                    throw new IOException("File ended after " + position + " of " + count + " bytes");
+                }
+                update(buffer.array(), 0, read);
+                position += read;
+            }
+        }
+
+        /**
+         * Returns description of checksums that do not match, or {@code null} if all of them match
+         */
+        String mismatch() {
+            StringBuilder sb = null;
+            for (int i = 0; i < digests.length; i++) {
+                Checksum checksum = checksums.get(i);
+                String actual = hex(digests[i].digest());
+                if (!actual.equals(checksum.expected)) {
+                    sb = sb == null ? new StringBuilder() : sb.append(", ");
+                    sb.append(checksum.algorithm).append(" was ").append(actual).append(" but expected ")
+                        .append(checksum.expected);
+                }
+            }
+            return sb == null ? null : sb.toString();
+        }
+    }
+}
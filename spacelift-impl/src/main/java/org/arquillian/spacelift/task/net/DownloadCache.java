@@ -0,0 +1,602 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.net;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.net.URLConnection;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.arquillian.spacelift.execution.Execution;
+import org.arquillian.spacelift.execution.ExecutionException;
+import org.arquillian.spacelift.execution.ExecutionService;
+import org.arquillian.spacelift.util.CharsetUtil;
+
+/**
+ * Cache of downloaded files. Each entry is a directory named by a hash of its key, containing downloaded
+ * {@code content} and {@code metadata} with validators of the content, so it can be revalidated by a conditional
+ * request.
+ * <p>
+ * Entries are provided to their users as copies. Hard links can be requested instead, if file system supports them;
+ * content of a linked entry is made read-only, as writing to any of its links would modify the cached content. Least
+ * recently used entries are evicted once total size of the cache exceeds its limit.
+ * <p>
+ * Cache can be shared by multiple threads and processes. Within a JVM, concurrent requests to fill the same entry share
+ * a single execution. Across processes, entry is filled only while holding an exclusive file lock on it and provided to
+ * its users while holding a shared one, so it is not evicted meanwhile. Lock files are kept when entries are evicted,
+ * otherwise two processes could lock different files of the same entry.
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+class DownloadCache {
+
+    private static final Logger log = Logger.getLogger(DownloadCache.class.getName());
+
+    private static final String CONTENT = "content";
+    private static final String METADATA = "metadata";
+    private static final String LOCK = "lock";
+
+    private static final long LOCK_RETRY_MILLIS = 10;
+
+    // entries being filled by this JVM, keyed by absolute path of the entry
+    private static final ConcurrentMap<String, Flight> IN_FLIGHT = new ConcurrentHashMap<String, Flight>();
+
+    // File.toPath() and Files.createLink(Path, Path), available since Java 7
+    private static final Method TO_PATH;
+    private static final Method CREATE_LINK;
+
+    static {
+        Method toPath = null;
+        Method createLink = null;
+        try {
+            Class<?> path = Class.forName("java.nio.file.Path");
+            toPath = File.class.getMethod("toPath");
+            createLink = Class.forName("java.nio.file.Files").getMethod("createLink", path, path);
+        } catch (Exception e) {
+            toPath = null;
+        }
+        TO_PATH = toPath;
+        CREATE_LINK = createLink;
+    }
+
+    private final File directory;
+    private final long limit;
+
+    /**
+     * Creates a cache
+     *
+     * @param directory
+     *     directory where entries are stored
+     * @param limit
+     *     maximal size of all entries in bytes
+     */
+    DownloadCache(File directory, long limit) {
+        this.directory = directory;
+        this.limit = limit;
+    }
+
+    /**
+     * Returns key of content downloaded from {@code url}. If expected checksum of the content is known, the key is
+     * derived from the checksum only, so the same content downloaded from different locations is stored only once.
+     *
+     * @param url
+     *     source of the content
+     * @param checksum
+     *     algorithm and expected checksum of the content, e.g. {@code sha256:<hex>}, might be {@code null}
+     */
+    static String key(String url, String checksum) {
+        return checksum != null ? checksum : "url:" + url;
+    }
+
+    /**
+     * Returns entry for the key. Entry might not have any content yet.
+     */
+    Entry entry(String key) {
+        return new Entry(new File(directory, hash(key)), key);
+    }
+
+    /**
+     * Fills the entry by {@code fill}, unless it is already being filled by another thread of this JVM. In such case,
+     * waits for the execution that is filling it.
+     *
+     * @param entry
+     *     the entry
+     * @param fill
+     *     fills the entry, called while holding the lock of the entry
+     * @param service
+     *     service to execute filling
+     *
+     * @throws ExecutionException
+     *     if entry could not be filled
+     */
+    void fill(final Entry entry, final Filler fill, ExecutionService service) throws ExecutionException {
+        final String key = entry.dir.getAbsolutePath();
+        final Flight flight = new Flight();
+        Flight inFlight = IN_FLIGHT.putIfAbsent(key, flight);
+        if (inFlight != null) {
+            inFlight.await();
+            return;
+        }
+
+        try {
+            flight.execution = service.execute(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    try {
+                        entry.create();
+                        EntryLock lock = entry.lock();
+                        try {
+                            fill.fill(entry, lock.waited);
+                        } finally {
+                            lock.release();
+                        }
+                        return null;
+                    } finally {
+                        IN_FLIGHT.remove(key, flight);
+                    }
+                }
+            });
+        } catch (ExecutionException e) {
+            IN_FLIGHT.remove(key, flight);
+            flight.failure = e;
+            throw e;
+        } finally {
+            flight.ready.countDown();
+        }
+        flight.await();
+    }
+
+    /**
+     * Removes least recently used entries until total size of the cache is below its limit. The entry that is being
+     * used is never removed.
+     */
+    void evict(Entry inUse) {
+        File[] dirs = directory.listFiles();
+        if (dirs == null) {
+            return;
+        }
+
+        List<Entry> entries = new ArrayList<Entry>();
+        long total = 0;
+        for (File dir : dirs) {
+            Entry entry = new Entry(dir, null);
+            if (dir.isDirectory() && entry.isPresent()) {
+                entries.add(entry);
+                total += entry.content().length();
+            }
+        }
+        if (total <= limit) {
+            return;
+        }
+
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry o1, Entry o2) {
+                long a1 = o1.lastAccess();
+                long a2 = o2.lastAccess();
+                return a1 < a2 ? -1 : (a1 == a2 ? 0 : 1);
+            }
+        });
+
+        for (Entry entry : entries) {
+            if (total <= limit) {
+                break;
+            }
+            if (entry.dir.equals(inUse.dir) || IN_FLIGHT.containsKey(entry.dir.getAbsolutePath())) {
+                continue;
+            }
+            long size = entry.content().length();
+            if (entry.removeUnlessLocked()) {
+                total -= size;
+                log.log(Level.FINE, "Evicted {0} from download cache", entry.dir);
+            }
+        }
+    }
+
+    /**
+     * Provides a copy of cached {@code content} at {@code target}, as a hard link if {@code link} is set and file system
+     * supports it
+     */
+    private static void provide(File content, File target, boolean link) throws IOException {
+        if (!delete(target)) {
+            throw new IOException("Unable to replace " + target);
+        }
+        File parent = target.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+
+        if (link && CREATE_LINK != null) {
+            try {
+                CREATE_LINK.invoke(null, TO_PATH.invoke(target), TO_PATH.invoke(content));
+                return;
+            } catch (Exception e) {
+                // different file systems or links are not supported
+                log.log(Level.FINE, "Unable to link {0} to {1}, copying instead", new Object[] {content, target});
+            }
+        }
+        copy(content, target);
+    }
+
+    /**
+     * Deletes a file, which might be a read-only link to cached content. Some file systems refuse to delete read-only
+     * files, so such file is made writable, but only if it cannot be deleted otherwise, as it would make the cached
+     * content writable as well.
+     *
+     * @return {@code true} if the file does not exist anymore
+     */
+    static boolean delete(File file) {
+        return !file.exists() || file.delete() || (file.setWritable(true) && file.delete());
+    }
+
+    private static void copy(File source, File target) throws IOException {
+        FileInputStream in = new FileInputStream(source);
+        try {
+            FileOutputStream out = new FileOutputStream(target);
+            try {
+                FileChannel from = in.getChannel();
+                FileChannel to = out.getChannel();
+                long size = from.size();
+                long position = 0;
+                while (position < size) {
+                    position += from.transferTo(position, size - position, to);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(CharsetUtil.getUtf8OrDefault()));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not supported by JVM", e);
+        }
+    }
+
+    /**
+     * A cached file with its metadata
+     */
+    static class Entry {
+
+        private final File dir;
+        private final String key;
+        private Properties metadata;
+
+        Entry(File dir, String key) {
+            this.dir = dir;
+            this.key = key;
+        }
+
+        /**
+         * Returns file where content is stored
+         */
+        File content() {
+            return new File(dir, CONTENT);
+        }
+
+        /**
+         * Checks whether content of the entry is available
+         */
+        boolean isPresent() {
+            return content().isFile() && new File(dir, METADATA).isFile();
+        }
+
+        String etag() {
+            return metadata().getProperty("etag");
+        }
+
+        String lastModified() {
+            return metadata().getProperty("last-modified");
+        }
+
+        /**
+         * Provides content of the entry at {@code target}, while holding shared lock of the entry, so it is not
+         * evicted or replaced meanwhile
+         *
+         * @param link
+         *     whether {@code target} should be a read-only hard link to the content instead of its copy
+         *
+         * @throws IOException
+         *     if content is not available anymore or it cannot be provided
+         */
+        void provide(File target, boolean link) throws IOException {
+            EntryLock lock = lockShared();
+            try {
+                if (!isPresent()) {
+                    throw new IOException("Download cache entry " + dir + " was evicted before it was provided");
+                }
+                if (link) {
+                    content().setReadOnly();
+                }
+                DownloadCache.provide(content(), target, link);
+            } finally {
+                lock.release();
+            }
+        }
+
+        /**
+         * Records that entry was used, so it is not evicted soon
+         */
+        void touch() {
+            new File(dir, METADATA).setLastModified(System.currentTimeMillis());
+        }
+
+        /**
+         * Stores validators of content that was just downloaded
+         */
+        void update(String url, URLConnection connection) throws IOException {
+            Properties properties = new Properties();
+            properties.setProperty("key", key);
+            properties.setProperty("url", url);
+            if (connection != null && connection.getHeaderField("ETag") != null) {
+                properties.setProperty("etag", connection.getHeaderField("ETag"));
+            }
+            if (connection != null && connection.getHeaderField("Last-Modified") != null) {
+                properties.setProperty("last-modified", connection.getHeaderField("Last-Modified"));
+            }
+
+            OutputStream os = new FileOutputStream(new File(dir, METADATA));
+            try {
+                properties.store(os, "Spacelift download cache entry");
+            } finally {
+                os.close();
+            }
+            this.metadata = properties;
+        }
+
+        /**
+         * Replaces content of the entry by {@code file} and stores its validators. The file has to be located in the
+         * directory of the entry, see {@link #newContent()}.
+         */
+        void replace(File file, String url, URLConnection connection) throws IOException {
+            EntryLock lock = lock();
+            try {
+                File content = content();
+                // linked content is read-only, some file systems refuse to replace it then
+                content.setWritable(true);
+                if (!file.renameTo(content) && !(content.delete() && file.renameTo(content))) {
+                    throw new IOException("Unable to rename " + file + " to " + content);
+                }
+                update(url, connection);
+            } finally {
+                lock.release();
+            }
+        }
+
+        /**
+         * Creates a file next to the content, where new content can be written without holding the lock of the entry
+         */
+        File newContent() throws IOException {
+            create();
+            return File.createTempFile(CONTENT, ".new", dir);
+        }
+
+        /**
+         * Ensures the directory of the entry exists
+         */
+        void create() throws IOException {
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Unable to create download cache entry " + dir);
+            }
+        }
+
+        long lastAccess() {
+            return new File(dir, METADATA).lastModified();
+        }
+
+        /**
+         * Acquires exclusive lock of the entry, waiting until other processes release it
+         */
+        EntryLock lock() throws IOException {
+            return lock(false);
+        }
+
+        /**
+         * Acquires shared lock of the entry, which prevents its eviction and replacement while content is being used
+         */
+        EntryLock lockShared() throws IOException {
+            return lock(true);
+        }
+
+        private EntryLock lock(boolean shared) throws IOException {
+            RandomAccessFile file = new RandomAccessFile(new File(dir, LOCK), "rw");
+            try {
+                boolean waited = false;
+                while (true) {
+                    try {
+                        FileLock lock = file.getChannel().tryLock(0L, Long.MAX_VALUE, shared);
+                        if (lock == null) {
+                            waited = true;
+                            lock = file.getChannel().lock(0L, Long.MAX_VALUE, shared);
+                        }
+                        return new EntryLock(file, lock, waited);
+                    } catch (OverlappingFileLockException e) {
+                        // lock is briefly held by another thread of this JVM
+                        waited = true;
+                        Thread.sleep(LOCK_RETRY_MILLIS);
+                    }
+                }
+            } catch (InterruptedException e) {
+                file.close();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for lock of " + dir);
+            } catch (IOException e) {
+                file.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Removes the entry if no other process is using it. Lock file is kept, so the entry can be locked again.
+         */
+        boolean removeUnlessLocked() {
+            RandomAccessFile file = null;
+            try {
+                file = new RandomAccessFile(new File(dir, LOCK), "rw");
+                FileLock lock = file.getChannel().tryLock();
+                if (lock == null) {
+                    return false;
+                }
+                try {
+                    return remove();
+                } finally {
+                    lock.release();
+                }
+            } catch (OverlappingFileLockException e) {
+                return false;
+            } catch (IOException e) {
+                return false;
+            } finally {
+                if (file != null) {
+                    try {
+                        file.close();
+                    } catch (IOException ignore) {
+                    }
+                }
+            }
+        }
+
+        private boolean remove() {
+            content().setWritable(true);
+            // metadata goes first, so entry stops being present even if content cannot be removed
+            boolean removed = new File(dir, METADATA).delete() && content().delete();
+            File[] rest = dir.listFiles();
+            if (rest != null) {
+                for (File file : rest) {
+                    if (!LOCK.equals(file.getName())) {
+                        file.delete();
+                    }
+                }
+            }
+            return removed;
+        }
+
+        private Properties metadata() {
+            if (metadata == null) {
+                metadata = new Properties();
+                InputStream is = null;
+                try {
+                    is = new FileInputStream(new File(dir, METADATA));
+                    metadata.load(is);
+                } catch (IOException e) {
+                    log.log(Level.FINE, "Unable to read metadata of download cache entry {0}", dir);
+                } finally {
+                    if (is != null) {
+                        try {
+                            is.close();
+                        } catch (IOException ignore) {
+                        }
+                    }
+                }
+            }
+            return metadata;
+        }
+    }
+
+    /**
+     * Fills an entry of the cache
+     */
+    interface Filler {
+
+        /**
+         * Fills the entry
+         *
+         * @param entry
+         *     the entry
+         * @param waited
+         *     whether lock of the entry was held by another process, which might have filled the entry meanwhile
+         */
+        void fill(Entry entry, boolean waited) throws Exception;
+    }
+
+    /**
+     * Exclusive or shared lock of an entry
+     */
+    static class EntryLock {
+
+        private final RandomAccessFile file;
+        private final FileLock lock;
+        private final boolean waited;
+
+        EntryLock(RandomAccessFile file, FileLock lock, boolean waited) {
+            this.file = file;
+            this.lock = lock;
+            this.waited = waited;
+        }
+
+        void release() throws IOException {
+            try {
+                lock.release();
+            } finally {
+                file.close();
+            }
+        }
+    }
+
+    /**
+     * Filling of an entry shared by all threads that need it
+     */
+    private static class Flight {
+
+        private final CountDownLatch ready = new CountDownLatch(1);
+        private volatile Execution<Void> execution;
+        private volatile ExecutionException failure;
+
+        void await() throws ExecutionException {
+            try {
+                ready.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ExecutionException(e, "Interrupted while waiting for download cache entry");
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            execution.await();
+        }
+    }
+}
@@ -0,0 +1,373 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.net;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Progress of a download stored next to the partially downloaded file. Content is split into ranges, for each range the
+ * number of bytes that were written and synced to disk is recorded, so the download can continue from there.
+ * <p>
+ * Checkpoint is persisted only if the server provided a validator, that is {@code ETag} or {@code Last-Modified} header,
+ * otherwise there is no way to find out whether the rest of the content still belongs to the same file.
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+class DownloadCheckpoint {
+
+    private static final Logger log = Logger.getLogger(DownloadCheckpoint.class.getName());
+
+    /**
+     * Data are synced and checkpoint is saved each time a range gets this number of bytes
+     */
+    static final long SYNC_INTERVAL = 1024 * 1024;
+
+    /**
+     * Transfer starts with a small buffer, which grows as long as the stream fills it
+     */
+    static final int MIN_BUFFER_SIZE = 8192;
+
+    static final int MAX_BUFFER_SIZE = 1024 * 1024;
+
+    private final File file;
+    private final String url;
+    private final String source;
+    private final String validator;
+    private final long length;
+    private final List<Range> ranges;
+
+    private DownloadCheckpoint(File file, String url, String source, String validator, long length,
+        List<Range> ranges) {
+        this.file = file;
+        this.url = url;
+        this.source = source;
+        this.validator = validator;
+        this.length = length;
+        this.ranges = ranges;
+    }
+
+    /**
+     * Creates a checkpoint of a new download
+     *
+     * @param file
+     *     file where checkpoint is stored
+     * @param url
+     *     requested url
+     * @param source
+     *     url the content is actually downloaded from, such as a mirror or a target of a redirect
+     * @param validator
+     *     {@code ETag} or {@code Last-Modified} value identifying version of the content at source, might be
+     *     {@code null}
+     * @param length
+     *     length of the content, {@code -1} if not known
+     * @param count
+     *     number of ranges, ignored if length is not known
+     */
+    static DownloadCheckpoint create(File file, String url, String source, String validator, long length, int count) {
+        List<Range> ranges = new ArrayList<Range>();
+        if (length < 0 || count < 2) {
+            ranges.add(new Range(0, length - 1, 0));
+        } else {
+            long rangeLength = length / count;
+            for (int i = 0; i < count; i++) {
+                long from = i * rangeLength;
+                long to = i == count - 1 ? length - 1 : from + rangeLength - 1;
+                ranges.add(new Range(from, to, 0));
+            }
+        }
+        DownloadCheckpoint checkpoint = new DownloadCheckpoint(file, url, source, validator, length, ranges);
+        checkpoint.save();
+        return checkpoint;
+    }
+
+    /**
+     * Loads checkpoint of a download of {@code url}. Returns {@code null} if there is no such checkpoint.
+     */
+    static DownloadCheckpoint load(File file, String url) {
+        if (!file.exists()) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        InputStream is = null;
+        try {
+            is = new FileInputStream(file);
+            properties.load(is);
+
+            if (!url.equals(properties.getProperty("url"))) {
+                return null;
+            }
+
+            List<Range> ranges = new ArrayList<Range>();
+            for (String range : properties.getProperty("ranges", "").split(",")) {
+                // from-to:synced, where to might be -1
+                int colon = range.indexOf(':');
+                int dash = range.indexOf('-', 1);
+                ranges.add(new Range(Long.parseLong(range.substring(0, dash)),
+                    Long.parseLong(range.substring(dash + 1, colon)),
+                    Long.parseLong(range.substring(colon + 1))));
+            }
+
+            return new DownloadCheckpoint(file, url, properties.getProperty("source", url),
+                properties.getProperty("validator"), Long.parseLong(properties.getProperty("length")), ranges);
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Unable to read download checkpoint {0}, download will start from the beginning",
+                file);
+            return null;
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Download checkpoint {0} is corrupted, download will start from the beginning",
+                file);
+            return null;
+        } finally {
+            if (is != null) {
+                try {
+                    is.close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+    }
+
+    String source() {
+        return source;
+    }
+
+    String validator() {
+        return validator;
+    }
+
+    /**
+     * Returns checkpoint with the same progress, which continues downloading from another source providing the same
+     * content
+     */
+    DownloadCheckpoint moveTo(String source, String validator) {
+        DownloadCheckpoint checkpoint = new DownloadCheckpoint(file, url, source, validator, length, ranges);
+        checkpoint.save();
+        return checkpoint;
+    }
+
+    long length() {
+        return length;
+    }
+
+    List<Range> ranges() {
+        return Collections.unmodifiableList(ranges);
+    }
+
+    /**
+     * Checks whether all ranges were downloaded
+     */
+    boolean isComplete() {
+        if (length < 0) {
+            return false;
+        }
+        for (Range range : ranges) {
+            if (range.remaining() > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether any data were already downloaded
+     */
+    boolean hasProgress() {
+        for (Range range : ranges) {
+            if (range.synced > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copies content from the stream to the position of the range in the file, until the range is complete or stream
+     * ends if length of the range is not known. Written data are periodically synced and recorded in the checkpoint.
+     * <p>
+     * Buffer is doubled each time a read fills it completely, that is when the stream delivers data faster than they are
+     * consumed, so fast local transfers use few large writes while slow connections do not allocate memory in vain.
+     *
+     * @param digests
+     *     checksums updated with transferred bytes, might be {@code null}
+     * @param metrics
+     *     metrics updated with transferred bytes
+     *
+     * @throws IOException
+     *     if data cannot be read or written, or stream ends before range is complete
+     */
+    void transfer(InputStream is, FileChannel channel, Range range, Checksum.Digests digests, DownloadMetrics metrics)
+        throws IOException {
+        byte[] buffer = new byte[MIN_BUFFER_SIZE];
+        long written = range.synced;
+        long unsynced = 0;
+
+        try {
+            while (range.to < 0 || range.from + written <= range.to) {
+                int toRead = range.to < 0 ? buffer.length : (int) Math.min(buffer.length, range.to + 1 - range.from
+                    - written);
+                int read = is.read(buffer, 0, toRead);
+                if (read == -1) {
+                    if (range.to < 0) {
+                        break;
+                    }
+                    throw new IOException("Connection was closed after " + written + " of "
+                        + (range.to + 1 - range.from) + " bytes");
+                }
+
+                if (digests != null) {
+                    digests.update(buffer, 0, read);
+                }
+
+                ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+                long position = range.from + written;
+                while (bytes.hasRemaining()) {
+                    // positional writes do not change position of the channel, so ranges can be written concurrently
+                    position += channel.write(bytes, position);
+                }
+                written += read;
+                unsynced += read;
+                metrics.transferred(read);
+
+                if (read == buffer.length && buffer.length < MAX_BUFFER_SIZE) {
+                    buffer = new byte[buffer.length * 2];
+                }
+
+                if (unsynced >= SYNC_INTERVAL) {
+                    sync(channel, range, written);
+                    unsynced = 0;
+                }
+            }
+        } catch (IOException e) {
+            // keep data that were already written
+            try {
+                sync(channel, range, written);
+            } catch (IOException ignore) {
+            }
+            throw e;
+        }
+        sync(channel, range, written);
+    }
+
+    /**
+     * Removes the checkpoint
+     */
+    void delete() {
+        if (file.exists() && !file.delete()) {
+            log.log(Level.WARNING, "Unable to delete download checkpoint {0}", file);
+        }
+    }
+
+    private void sync(FileChannel channel, Range range, long written) throws IOException {
+        if (written == range.synced) {
+            return;
+        }
+        // data need to be on disk only if the checkpoint referring to them is persisted
+        if (validator != null) {
+            channel.force(false);
+        }
+        range.synced = written;
+        save();
+    }
+
+    private synchronized void save() {
+        if (validator == null) {
+            return;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (Range range : ranges) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(range.from).append('-').append(range.to).append(':').append(range.synced);
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("url", url);
+        properties.setProperty("source", source);
+        properties.setProperty("validator", validator);
+        properties.setProperty("length", String.valueOf(length));
+        properties.setProperty("ranges", sb.toString());
+
+        // write a new file and replace the old one, so there is always a complete checkpoint
+        File tmp = new File(file.getPath() + ".tmp");
+        OutputStream os = null;
+        try {
+            os = new FileOutputStream(tmp);
+            properties.store(os, "Spacelift download checkpoint");
+            os.close();
+            os = null;
+            if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+                throw new IOException("Unable to rename " + tmp + " to " + file);
+            }
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Unable to save download checkpoint {0}: {1}", new Object[] {file, e.getMessage()});
+        } finally {
+            if (os != null) {
+                try {
+                    os.close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+    }
+
+    /**
+     * A range of bytes of the content
+     */
+    static class Range {
+
+        final long from;
+        // inclusive, -1 if length of content is not known
+        final long to;
+        volatile long synced;
+
+        Range(long from, long to, long synced) {
+            this.from = from;
+            this.to = to;
+            this.synced = synced;
+        }
+
+        /**
+         * Returns offset of first byte that was not synced yet
+         */
+        long position() {
+            return from + synced;
+        }
+
+        /**
+         * Returns number of bytes that are yet to be downloaded, or {@code -1} if not known
+         */
+        long remaining() {
+            return to < 0 ? -1 : to + 1 - from - synced;
+        }
+    }
+}
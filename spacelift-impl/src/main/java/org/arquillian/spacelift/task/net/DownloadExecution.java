@@ -0,0 +1,128 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.net;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.arquillian.spacelift.execution.CompletionListener;
+import org.arquillian.spacelift.execution.CountDownWatch;
+import org.arquillian.spacelift.execution.Execution;
+import org.arquillian.spacelift.execution.ExecutionCondition;
+import org.arquillian.spacelift.execution.ExecutionException;
+import org.arquillian.spacelift.execution.Executions;
+import org.arquillian.spacelift.execution.ObservableExecution;
+import org.arquillian.spacelift.execution.TimeoutExecutionException;
+
+/**
+ * Execution of a download that provides its metrics while it is running
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+public class DownloadExecution implements ObservableExecution<File> {
+
+    private final Execution<File> execution;
+    private final DownloadMetrics metrics;
+
+    DownloadExecution(Execution<File> execution, DownloadMetrics metrics) {
+        this.execution = execution;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns metrics of the download
+     */
+    public DownloadMetrics metrics() {
+        return metrics;
+    }
+
+    @Override
+    public Execution<File> markAsFinished() {
+        execution.markAsFinished();
+        return this;
+    }
+
+    @Override
+    public Execution<File> registerShutdownHook() {
+        execution.registerShutdownHook();
+        return this;
+    }
+
+    @Override
+    public boolean isMarkedAsFinished() {
+        return execution.isMarkedAsFinished();
+    }
+
+    @Override
+    public boolean isFinished() {
+        return execution.isFinished();
+    }
+
+    @Override
+    public boolean hasFailed() throws IllegalStateException {
+        return execution.hasFailed();
+    }
+
+    @Override
+    public Execution<File> terminate() throws ExecutionException {
+        execution.terminate();
+        return this;
+    }
+
+    @Override
+    public File await() throws ExecutionException {
+        return execution.await();
+    }
+
+    @Override
+    public File awaitAtMost(long timeout, TimeUnit unit) throws ExecutionException, TimeoutExecutionException {
+        return execution.awaitAtMost(timeout, unit);
+    }
+
+    @Override
+    public File awaitAtMost(CountDownWatch timeout) throws ExecutionException, TimeoutExecutionException {
+        return execution.awaitAtMost(timeout);
+    }
+
+    @Override
+    public ObservableExecution<File> onComplete(final CompletionListener<File> listener) {
+        Executions.onComplete(execution, new CompletionListener<File>() {
+            @Override
+            public void completed(Execution<File> completed) {
+                listener.completed(DownloadExecution.this);
+            }
+        });
+        return this;
+    }
+
+    @Override
+    public Execution<File> reexecuteEvery(long step, TimeUnit unit) {
+        execution.reexecuteEvery(step, unit);
+        return this;
+    }
+
+    @Override
+    public File until(long timeout, TimeUnit unit, ExecutionCondition<File> condition) throws ExecutionException,
+        TimeoutExecutionException {
+        return execution.until(timeout, unit, condition);
+    }
+
+    @Override
+    public File until(CountDownWatch timeout, ExecutionCondition<File> condition) throws ExecutionException,
+        TimeoutExecutionException {
+        return execution.until(timeout, condition);
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.net;
+
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Metrics of a single download. Counters are updated by threads transferring the content and can be read at any time.
+ * <p>
+ * Updating metrics costs an atomic addition and a clock read per transferred chunk of data. Current throughput is
+ * sampled and listener is notified at most once per progress interval.
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+public class DownloadMetrics {
+
+    private static final Logger log = Logger.getLogger(DownloadMetrics.class.getName());
+
+    private final URL url;
+    private final DownloadListener listener;
+    private final long intervalNanos;
+
+    private final long started = System.nanoTime();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicInteger redirects = new AtomicInteger();
+    private final AtomicLong nextSample;
+
+    private volatile long firstByte;
+    private volatile long finished;
+    private volatile long contentLength = -1;
+    private volatile double currentThroughput = -1;
+
+    // last sample of throughput, guarded by this
+    private long sampleTime = started;
+    private long sampleBytes;
+
+    DownloadMetrics(URL url, DownloadListener listener, long intervalNanos) {
+        this.url = url;
+        this.listener = listener;
+        this.intervalNanos = intervalNanos;
+        this.nextSample = new AtomicLong(started + intervalNanos);
+    }
+
+    /**
+     * Returns downloaded url
+     */
+    public URL url() {
+        return url;
+    }
+
+    /**
+     * Returns number of bytes transferred so far, including bytes transferred by failed attempts
+     */
+    public long bytes() {
+        return bytes.get();
+    }
+
+    /**
+     * Returns length of the content, or {@code -1} if it is not known yet
+     */
+    public long contentLength() {
+        return contentLength;
+    }
+
+    /**
+     * Returns number of redirects that were followed
+     */
+    public int redirects() {
+        return redirects.get();
+    }
+
+    /**
+     * Returns time elapsed from start of the download until the first response was received, or {@code -1} if there
+     * was no response yet
+     */
+    public long timeToFirstByte(TimeUnit unit) {
+        long firstByte = this.firstByte;
+        return firstByte == 0 ? -1 : unit.convert(firstByte - started, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns time elapsed from start of the download until now, or until it finished
+     */
+    public long duration(TimeUnit unit) {
+        long finished = this.finished;
+        return unit.convert((finished == 0 ? System.nanoTime() : finished) - started, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns average throughput of the download in bytes per second
+     */
+    public double averageThroughput() {
+        long finished = this.finished;
+        long elapsed = (finished == 0 ? System.nanoTime() : finished) - started;
+        return elapsed <= 0 ? 0 : bytes.get() * 1e9 / elapsed;
+    }
+
+    /**
+     * Returns throughput in bytes per second during the last progress interval, or average throughput if the download
+     * has not run for a whole interval yet
+     */
+    public double currentThroughput() {
+        double current = currentThroughput;
+        return current < 0 ? averageThroughput() : current;
+    }
+
+    public boolean isFinished() {
+        return finished != 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d bytes in %d ms, %.0f B/s", url, bytes(), duration(TimeUnit.MILLISECONDS),
+            averageThroughput());
+    }
+
+    /**
+     * Records that a response was received
+     */
+    void responded() {
+        if (firstByte == 0) {
+            firstByte = System.nanoTime();
+        }
+    }
+
+    void redirected() {
+        redirects.incrementAndGet();
+    }
+
+    void contentLength(long contentLength) {
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * Records {@code count} bytes of transferred content
+     */
+    void transferred(long count) {
+        long total = bytes.addAndGet(count);
+        long now = System.nanoTime();
+        long next = nextSample.get();
+        // only the thread that moves the next sample time samples, so concurrent segments do not contend
+        if (now >= next && nextSample.compareAndSet(next, now + intervalNanos)) {
+            synchronized (this) {
+                currentThroughput = (total - sampleBytes) * 1e9 / (now - sampleTime);
+                sampleTime = now;
+                sampleBytes = total;
+            }
+            notifyListener();
+        }
+    }
+
+    /**
+     * Records that the download finished, either successfully or not
+     */
+    void finished() {
+        if (finished == 0) {
+            finished = System.nanoTime();
+            notifyListener();
+        }
+    }
+
+    private void notifyListener() {
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.progress(this);
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Download listener failed", e);
+        }
+    }
+}
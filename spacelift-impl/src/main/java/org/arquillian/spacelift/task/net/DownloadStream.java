@@ -0,0 +1,213 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.net;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.text.MessageFormat;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Body of a response read by its consumer while it arrives. Checksums are verified once the stream ends, so the last
+ * read fails if content does not match. Content can be copied to a download cache entry as it is read, the entry is
+ * replaced only if the whole content was read.
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+class DownloadStream extends FilterInputStream {
+
+    private static final Logger log = Logger.getLogger(DownloadStream.class.getName());
+
+    private static final int SKIP_BUFFER_SIZE = 8192;
+
+    private final URL url;
+    private final URLConnection connection;
+    private final Checksum.Digests digests;
+    private final DownloadMetrics metrics;
+    private final DownloadCache cache;
+    private final DownloadCache.Entry entry;
+
+    private File teeFile;
+    private OutputStream tee;
+    private boolean finished;
+    private boolean closed;
+
+    /**
+     * Creates a stream of content provided by the connection
+     *
+     * @param url
+     *     requested url
+     * @param connection
+     *     connection that provides the content
+     * @param digests
+     *     checksums to be verified
+     * @param metrics
+     *     metrics updated with transferred bytes
+     * @param cache
+     *     cache where content is stored, might be {@code null}
+     * @param entry
+     *     entry of the cache replaced by content, might be {@code null}
+     *
+     * @throws IOException
+     *     if the stream cannot be opened
+     */
+    DownloadStream(URL url, URLConnection connection, Checksum.Digests digests, DownloadMetrics metrics,
+        DownloadCache cache, DownloadCache.Entry entry) throws IOException {
+        super(connection.getInputStream());
+        this.url = url;
+        this.connection = connection;
+        this.digests = digests;
+        this.metrics = metrics;
+        this.cache = cache;
+        this.entry = entry;
+
+        metrics.responded();
+        metrics.contentLength(SegmentedDownload.contentLength(connection));
+
+        if (entry != null) {
+            try {
+                this.teeFile = entry.newContent();
+                this.tee = new FileOutputStream(teeFile);
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Unable to store content downloaded from {0} in download cache: {1}",
+                    new Object[] {url, e.getMessage()});
+                abandonTee();
+            }
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int read;
+        while ((read = read(b, 0, 1)) == 0) {
+        }
+        return read == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = in.read(b, off, len);
+        if (read == -1) {
+            finish();
+            return -1;
+        }
+        digests.update(b, off, read);
+        metrics.transferred(read);
+        if (tee != null) {
+            try {
+                tee.write(b, off, read);
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Unable to store content downloaded from {0} in download cache: {1}",
+                    new Object[] {url, e.getMessage()});
+                abandonTee();
+            }
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // skipped bytes have to be read as well, they are part of the checksum
+        byte[] buffer = new byte[(int) Math.min(SKIP_BUFFER_SIZE, Math.max(n, 1))];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (read == -1) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("Download stream does not support reset");
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (!finished) {
+            // content was not read completely, so it cannot be cached
+            abandonTee();
+        }
+        metrics.finished();
+        in.close();
+    }
+
+    private void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        metrics.finished();
+
+        String mismatch = digests.mismatch();
+        if (mismatch != null) {
+            abandonTee();
+            throw new IOException(MessageFormat.format("Checksum of content downloaded from {0} does not match, {1}",
+                url, mismatch));
+        }
+
+        if (tee != null) {
+            try {
+                tee.close();
+                tee = null;
+                entry.replace(teeFile, url.toExternalForm(), connection);
+                cache.evict(entry);
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Unable to store content downloaded from {0} in download cache: {1}",
+                    new Object[] {url, e.getMessage()});
+                abandonTee();
+            }
+        }
+    }
+
+    private void abandonTee() {
+        if (tee != null) {
+            try {
+                tee.close();
+            } catch (IOException ignore) {
+            }
+            tee = null;
+        }
+        if (teeFile != null && teeFile.exists() && !teeFile.delete()) {
+            log.log(Level.FINE, "Unable to delete {0}", teeFile);
+        }
+        teeFile = null;
+    }
+}
@@ -17,35 +17,91 @@
 package org.arquillian.spacelift.task.net;
 
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.arquillian.spacelift.Spacelift;
 import org.arquillian.spacelift.execution.ExecutionException;
+import org.arquillian.spacelift.execution.ExecutionService;
 import org.arquillian.spacelift.task.Task;
 
 /**
  * Tool which handles downloading a file. If the {@link #followRedirects} is true,
  * it will try to follow the redirects until it reaches the file or detects a redirection loop.
+ * <p>
+ * Content is downloaded to a {@code .part} file next to the destination, with progress recorded in a
+ * {@code .part.checkpoint} file. If a download fails, next attempt continues from the last byte that was stored,
+ * provided the server supports range requests and identifies the content by {@code ETag} or {@code Last-Modified}.
+ * Content of {@code file:} urls is copied by {@link FileChannel#transferTo}, without passing through the heap.
+ * <p>
+ * If mirrors are set, they are probed in parallel and download starts with the one that is expected to be the
+ * fastest, based on its latency and throughput observed by previous downloads. If a transfer fails, it continues from
+ * the next mirror by a range request.
  *
  * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
  */
 public class DownloadTool extends Task<Object, File> {
 
+    private static final Logger log = Logger.getLogger(DownloadTool.class.getName());
+
+    private static final long MAX_RETRY_DELAY = 60000;
+
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private static final int RELEASE_BUFFER_SIZE = 512;
+
+    // local files are copied in chunks, so progress can be reported
+    private static final long COPY_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    // larger unread bodies are not worth reading just to reuse the connection
+    private static final long MAX_RELEASED_BODY = 65536;
+
+    private static final String CACHE_PATH = "downloads";
+
+    private static final long DEFAULT_CACHE_LIMIT = 4L * 1024 * 1024 * 1024;
+
     private URL url;
 
+    private List<URL> mirrors = new ArrayList<URL>();
+
     private File output;
 
     private int timeout = 5000;
     private Map<String, String> properties = new HashMap<String, String>();
     private boolean followRedirects = true;
+    private int segments = 1;
+    private int retries = 0;
+    private long retryDelay = 1000;
+    private boolean useCache = false;
+    private File cacheDirectory;
+    private long cacheLimit = DEFAULT_CACHE_LIMIT;
+    private boolean cacheLinks = false;
+    private List<Checksum> checksums = new ArrayList<Checksum>();
+    private DownloadListener listener;
+    private long progressInterval = TimeUnit.SECONDS.toNanos(1);
+
+    // metrics of the current or last download, prepared metrics are used by the next one
+    private volatile DownloadMetrics metrics;
+    private volatile boolean metricsPrepared;
 
     public DownloadTool from(String url) throws IllegalArgumentException {
         try {
@@ -60,6 +116,31 @@ public class DownloadTool extends Task<Object, File> {
         return this;
     }
 
+    /**
+     * Adds a mirror providing the same content as the source url. Mirrors are expected to serve identical bytes, a
+     * transfer that fails on one of them continues on another one from where it stopped.
+     *
+     * @throws IllegalArgumentException
+     *     if url is not valid
+     */
+    public DownloadTool mirror(String url) throws IllegalArgumentException {
+        try {
+            return mirror(new URL(url));
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /**
+     * Adds a mirror providing the same content as the source url
+     *
+     * @see #mirror(String)
+     */
+    public DownloadTool mirror(URL url) {
+        this.mirrors.add(url);
+        return this;
+    }
+
     public DownloadTool to(String filePath) {
         return to(new File(filePath));
     }
@@ -97,6 +178,215 @@ public class DownloadTool extends Task<Object, File> {
         return this;
     }
 
+    /**
+     * Sets number of connections used to download the file in parallel. If the server accepts range requests, content is
+     * split into {@code segments} ranges, each fetched by a separate connection. Otherwise, or if the file is too small
+     * to be split, it is downloaded by a single connection. Defaults to 1.
+     */
+    public DownloadTool segments(int segments) {
+        if (segments < 1) {
+            throw new IllegalArgumentException("Number of segments must be at least 1, was " + segments);
+        }
+        this.segments = segments;
+        return this;
+    }
+
+    /**
+     * Sets how many times a failed download is retried. Each retry continues from the last byte that was stored, if the
+     * server supports range requests. Defaults to 0.
+     */
+    public DownloadTool retries(int retries) {
+        if (retries < 0) {
+            throw new IllegalArgumentException("Number of retries must not be negative, was " + retries);
+        }
+        this.retries = retries;
+        return this;
+    }
+
+    /**
+     * Sets delay before the first retry of a failed download. The delay doubles with each following retry, up to a
+     * minute. Defaults to 1 second.
+     */
+    public DownloadTool retryDelay(long delay, TimeUnit unit) {
+        if (delay < 0) {
+            throw new IllegalArgumentException("Retry delay must not be negative, was " + delay);
+        }
+        this.retryDelay = unit.toMillis(delay);
+        return this;
+    }
+
+    /**
+     * Sets expected SHA-256 checksum of the content. Checksum is computed while the content is downloaded, if it does
+     * not match, download fails and partially downloaded content is removed.
+     *
+     * @param checksum
+     *     hexadecimal representation of the checksum
+     *
+     * @throws IllegalArgumentException
+     *     if checksum is not a valid SHA-256 checksum
+     */
+    public DownloadTool sha256(String checksum) throws IllegalArgumentException {
+        return checksum(new Checksum("SHA-256", checksum));
+    }
+
+    /**
+     * Sets expected SHA-1 checksum of the content
+     *
+     * @see #sha256(String)
+     */
+    public DownloadTool sha1(String checksum) throws IllegalArgumentException {
+        return checksum(new Checksum("SHA-1", checksum));
+    }
+
+    /**
+     * Sets expected MD5 checksum of the content
+     *
+     * @see #sha256(String)
+     */
+    public DownloadTool md5(String checksum) throws IllegalArgumentException {
+        return checksum(new Checksum("MD5", checksum));
+    }
+
+    /**
+     * Sets whether downloaded files are cached in {@code downloads} directory of Spacelift cache. Cached files are
+     * revalidated by a conditional request and provided as copies. If a checksum of the content is expected, files are
+     * cached by the checksum and verified by it whenever they are provided. Defaults to false.
+     *
+     * @see org.arquillian.spacelift.SpaceliftConfiguration#cache()
+     */
+    public DownloadTool cache(boolean useCache) {
+        this.useCache = useCache;
+        return this;
+    }
+
+    /**
+     * Caches downloaded files in {@code directory}
+     *
+     * @see #cache(boolean)
+     */
+    public DownloadTool cache(File directory) {
+        this.cacheDirectory = directory;
+        this.useCache = true;
+        return this;
+    }
+
+    /**
+     * Sets whether cached files are provided as hard links instead of copies, if file system supports them. Linked
+     * files are read-only, as they share content with the cache. Defaults to false.
+     *
+     * @see #cache(boolean)
+     */
+    public DownloadTool cacheLinks(boolean link) {
+        this.cacheLinks = link;
+        return this;
+    }
+
+    /**
+     * Sets maximal size of the cache in bytes. Once it is exceeded, least recently used files are removed from the
+     * cache. Defaults to 4 GB.
+     */
+    public DownloadTool cacheLimit(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Cache limit must not be negative, was " + bytes);
+        }
+        this.cacheLimit = bytes;
+        return this;
+    }
+
+    /**
+     * Sets listener notified about progress of the download
+     */
+    public DownloadTool listener(DownloadListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Sets how often listener is notified and current throughput is sampled. Defaults to one second.
+     */
+    public DownloadTool progressInterval(long interval, TimeUnit unit) throws IllegalArgumentException {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Progress interval must be positive, was " + interval);
+        }
+        this.progressInterval = unit.toNanos(interval);
+        return this;
+    }
+
+    /**
+     * Returns metrics of the download that is running, or of the last download if none is running. Returns
+     * {@code null} if nothing was downloaded yet.
+     */
+    public DownloadMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Asynchronously executes the download.
+     *
+     * @return Execution object that provides the downloaded file and metrics of the download
+     *
+     * @throws ExecutionException
+     */
+    @Override
+    public DownloadExecution execute() throws ExecutionException {
+        DownloadMetrics metrics = prepareMetrics();
+        return new DownloadExecution(super.execute(), metrics);
+    }
+
+    private DownloadTool checksum(Checksum checksum) {
+        // strongest checksum goes first, it identifies cached content
+        checksums.add(checksum);
+        Collections.sort(checksums, new Comparator<Checksum>() {
+            @Override
+            public int compare(Checksum o1, Checksum o2) {
+                return o2.strength() - o1.strength();
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Opens the content as a stream, so it can be processed while it is being transferred, without storing it in the
+     * destination file. If expected checksums were set, they are verified once the stream ends and the last read fails
+     * if they do not match.
+     * <p>
+     * If cache is enabled, content that is already cached is read from there. Otherwise, content is stored in the cache
+     * while it is being read, provided the stream is read until its end. Content is always transferred as a single
+     * stream, number of segments is ignored. Retries apply to opening of the stream only, closing it is responsibility
+     * of the caller.
+     *
+     * @throws ExecutionException
+     *     if the stream cannot be opened
+     */
+    public InputStream openStream() throws ExecutionException {
+        if (url == null) {
+            throw new IllegalStateException("Source URL was not set");
+        }
+        final Mirrors mirrors = mirrors();
+        prepareMetrics();
+        startMetrics();
+
+        try {
+            return withRetries(new Callable<InputStream>() {
+                @Override
+                public InputStream call() throws Exception {
+                    return mirrors.failover(metrics, new Mirrors.Attempt<InputStream>() {
+                        @Override
+                        public InputStream from(URL source) throws ExecutionException {
+                            return useCache ? cachedStream(source) : stream(source);
+                        }
+                    });
+                }
+            });
+        } catch (ExecutionException e) {
+            metrics.finished();
+            throw e;
+        } catch (Exception e) {
+            metrics.finished();
+            throw new ExecutionException(e, "Unable to download from {0}", url);
+        }
+    }
+
     @Override
     protected File process(Object input) throws Exception {
         if (url == null) {
@@ -106,16 +396,323 @@ public class DownloadTool extends Task<Object, File> {
             throw new IllegalStateException("Destination file was not set");
         }
 
-        tryDownload(url);
+        final Mirrors mirrors = mirrors();
+        final DownloadMetrics metrics = startMetrics();
+        try {
+            return withRetries(new Callable<File>() {
+                @Override
+                public File call() throws Exception {
+                    if (useCache) {
+                        cachedDownload(mirrors);
+                    } else {
+                        mirrors.failover(metrics, new Mirrors.Attempt<URLConnection>() {
+                            @Override
+                            public URLConnection from(URL source) throws ExecutionException {
+                                return tryDownload(source, output, null);
+                            }
+                        });
+                    }
+                    return output;
+                }
+            });
+        } finally {
+            metrics.finished();
+        }
+    }
+
+    /**
+     * Creates metrics for the next download, so they can be provided before it starts
+     */
+    DownloadMetrics prepareMetrics() {
+        this.metrics = new DownloadMetrics(url, listener, progressInterval);
+        this.metricsPrepared = true;
+        return metrics;
+    }
 
-        return output;
+    private DownloadMetrics startMetrics() {
+        if (!metricsPrepared) {
+            prepareMetrics();
+        }
+        metricsPrepared = false;
+        return metrics;
     }
 
-    private void tryDownload(URL url) {
-        tryDownload(url, new ArrayList<String>());
+    /**
+     * Returns the source url together with mirrors, probed if there are any
+     */
+    private Mirrors mirrors() {
+        if (mirrors.isEmpty()) {
+            return new Mirrors(this, Collections.singletonList(url), null);
+        }
+        List<URL> sources = new ArrayList<URL>(mirrors.size() + 1);
+        sources.add(url);
+        sources.addAll(mirrors);
+        return new Mirrors(this, sources, MirrorStats.in(cacheDirectory())).probe();
     }
 
-    private void tryDownload(URL url, List<String> redirectUrls) {
+    private <T> T withRetries(Callable<T> attempt) throws Exception {
+        long delay = retryDelay;
+        for (int i = 0; ; i++) {
+            try {
+                return attempt.call();
+            } catch (ExecutionException e) {
+                if (i >= retries) {
+                    throw e;
+                }
+                log.log(Level.WARNING, "Download from {0} failed, retrying in {1} ms: {2}",
+                    new Object[] {url, delay, e.getCause() != null ? e.getCause().getMessage() : e.getMessage()});
+                Thread.sleep(delay);
+                delay = Math.min(delay * 2, MAX_RETRY_DELAY);
+            }
+        }
+    }
+
+    private InputStream stream(URL source) {
+        try {
+            URLConnection connection = connect(source, new ArrayList<String>(), null, null, null);
+            return new DownloadStream(url, connection, Checksum.digests(checksums), metrics, null, null);
+        } catch (IOException e) {
+            throw new ExecutionException(e, "Unable to download from {0}", source);
+        }
+    }
+
+    /**
+     * Opens cached content, if it is present and valid. Otherwise, content is stored in the cache as it is read.
+     */
+    private InputStream cachedStream(URL source) {
+        DownloadCache cache = cache();
+        DownloadCache.Entry entry = cache.entry(cacheKey(url));
+        try {
+            // content is identified by checksum, so it only needs to be verified
+            InputStream cached = checksums.isEmpty() ? null : openCached(entry, true);
+            if (cached != null) {
+                metrics.finished();
+                return cached;
+            }
+
+            boolean revalidate = entry.isPresent() && checksums.isEmpty()
+                && (entry.etag() != null || entry.lastModified() != null);
+            URLConnection connection = connect(source, new ArrayList<String>(), null, null, revalidate ? entry : null);
+            if (isNotModified(connection)) {
+                release((HttpURLConnection) connection);
+                cached = openCached(entry, false);
+                if (cached != null) {
+                    metrics.finished();
+                    return cached;
+                }
+                // entry was evicted meanwhile
+                connection = connect(source, new ArrayList<String>(), null, null, null);
+            }
+            return new DownloadStream(url, connection, Checksum.digests(checksums), metrics, cache, entry);
+        } catch (IOException e) {
+            throw new ExecutionException(e, "Unable to download from {0}", source);
+        }
+    }
+
+    /**
+     * Opens cached content while holding shared lock of the entry, so it is not evicted or replaced before it is opened
+     *
+     * @param verify
+     *     whether content has to match expected checksums
+     *
+     * @return stream of the content, or {@code null} if content is not available or it does not match
+     */
+    private InputStream openCached(DownloadCache.Entry entry, boolean verify) throws IOException {
+        if (!entry.isPresent()) {
+            return null;
+        }
+        DownloadCache.EntryLock lock = entry.lockShared();
+        try {
+            if (!entry.isPresent() || (verify && !isIntact(entry))) {
+                return null;
+            }
+            entry.touch();
+            return new FileInputStream(entry.content());
+        } finally {
+            lock.release();
+        }
+    }
+
+    private DownloadCache cache() {
+        return new DownloadCache(cacheDirectory(), cacheLimit);
+    }
+
+    private File cacheDirectory() {
+        return cacheDirectory != null ? cacheDirectory : Spacelift.configuration().cachePath(CACHE_PATH);
+    }
+
+    private String cacheKey(URL url) {
+        return DownloadCache.key(url.toExternalForm(), checksums.isEmpty() ? null : checksums.get(0).key());
+    }
+
+    /**
+     * Downloads content via the cache. Content that is already cached is revalidated by a conditional request, if the
+     * server provided validators for it. Concurrent downloads of the same content share a single transfer.
+     */
+    private void cachedDownload(final Mirrors mirrors) {
+        DownloadCache cache = cache();
+        DownloadCache.Entry entry = cache.entry(cacheKey(url));
+
+        cache.fill(entry, new DownloadCache.Filler() {
+            @Override
+            public void fill(final DownloadCache.Entry entry, boolean waited) throws Exception {
+                // another process has just filled the entry, or content is identified by checksum and it is intact
+                if (entry.isPresent() && (checksums.isEmpty() ? waited : isIntact(entry))) {
+                    entry.touch();
+                    return;
+                }
+
+                // content that does not match its checksum is downloaded again
+                final boolean revalidate = entry.isPresent() && checksums.isEmpty()
+                    && (entry.etag() != null || entry.lastModified() != null);
+                URLConnection connection = mirrors.failover(metrics, new Mirrors.Attempt<URLConnection>() {
+                    @Override
+                    public URLConnection from(URL source) throws ExecutionException {
+                        return tryDownload(source, entry.content(), revalidate ? entry : null);
+                    }
+                });
+                if (connection != null && isNotModified(connection)) {
+                    entry.touch();
+                } else {
+                    entry.update(url.toExternalForm(), connection);
+                }
+            }
+        }, executionService());
+
+        try {
+            entry.provide(output, cacheLinks);
+        } catch (IOException e) {
+            throw new ExecutionException(e, "Unable to provide {0} from download cache as {1}", entry.content(),
+                output);
+        }
+        cache.evict(entry);
+    }
+
+    /**
+     * Verifies cached content by expected checksums, as it might have been modified since it was stored
+     */
+    private boolean isIntact(DownloadCache.Entry entry) throws IOException {
+        Checksum.Digests digests = Checksum.digests(checksums);
+        digestFile(entry.content(), digests);
+        String mismatch = digests.mismatch();
+        if (mismatch != null) {
+            log.log(Level.WARNING, "Cached content of {0} does not match, downloading it again: {1}",
+                new Object[] {url, mismatch});
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Downloads content into a partial file next to the target, together with a checkpoint of its progress. If there is
+     * a checkpoint from a previous attempt, download continues from there. Target is replaced by the partial file once
+     * the download is complete.
+     * <p>
+     * Checkpoint belongs to the source url, so a download started from one mirror can continue from another one.
+     *
+     * @param source
+     *     source url or one of the mirrors
+     *
+     * @return connection that provided the content, or {@code null} if content was already downloaded
+     */
+    private URLConnection tryDownload(URL source, File target, DownloadCache.Entry cached) {
+        File part = new File(target.getPath() + ".part");
+        File checkpointFile = new File(target.getPath() + ".part.checkpoint");
+
+        DownloadCheckpoint checkpoint = part.exists() ? DownloadCheckpoint.load(checkpointFile, url.toExternalForm())
+            : null;
+        boolean sameSource = checkpoint != null && checkpoint.source().equals(source.toExternalForm());
+
+        Checksum.Digests digests = Checksum.digests(checksums);
+        try {
+            URLConnection connection = null;
+            if (checkpoint == null || !checkpoint.isComplete()) {
+                // a single range can be requested right away, multiple ranges are requested after content is validated
+                DownloadCheckpoint.Range resumed = checkpoint != null && checkpoint.ranges().size() == 1
+                    && checkpoint.hasProgress() ? checkpoint.ranges().get(0) : null;
+
+                connection = connect(source, new ArrayList<String>(), resumed, sameSource ? checkpoint.validator() : null,
+                    cached);
+                if (isNotModified(connection)) {
+                    release((HttpURLConnection) connection);
+                    return connection;
+                }
+                if (resumed != null && !isResumed(connection, checkpoint, resumed, sameSource)) {
+                    if (connection instanceof HttpURLConnection
+                        && ((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_PARTIAL) {
+                        // a range of content that does not continue stored data, start from the beginning
+                        release((HttpURLConnection) connection);
+                        connection = connect(source, new ArrayList<String>(), null, null, cached);
+                    }
+                    resumed = null;
+                }
+                if (isPermanentFailure(connection)) {
+                    // content is gone or cannot be requested, stored data will never be continued
+                    int responseCode = ((HttpURLConnection) connection).getResponseCode();
+                    release((HttpURLConnection) connection);
+                    part.delete();
+                    checkpointFile.delete();
+                    throw new ExecutionException("Unable to download from {0}, server responded with {1}", source,
+                        responseCode);
+                }
+                checkpoint = download(source, connection, part, checkpointFile, checkpoint, resumed, digests);
+            } else {
+                digestFile(part, digests);
+            }
+
+            String mismatch = digests.mismatch();
+            if (mismatch != null) {
+                part.delete();
+                checkpoint.delete();
+                throw new ExecutionException("Checksum of content downloaded from {0} does not match, {1}", source,
+                    mismatch);
+            }
+
+            // target might be a read-only link to cached content
+            if (!DownloadCache.delete(target)) {
+                throw new IOException("Unable to replace " + target);
+            }
+            if (!part.renameTo(target)) {
+                throw new IOException("Unable to rename " + part + " to " + target);
+            }
+            checkpoint.delete();
+            return connection;
+        } catch (IOException e) {
+            throw new ExecutionException(e, "Unable to download from {0} to {1}", source, target);
+        }
+    }
+
+    /**
+     * Checks whether server refused the request in a way that does not change by repeating it, unlike server errors or
+     * throttling
+     */
+    private static boolean isPermanentFailure(URLConnection connection) throws IOException {
+        if (!(connection instanceof HttpURLConnection)) {
+            return false;
+        }
+        int responseCode = ((HttpURLConnection) connection).getResponseCode();
+        return responseCode >= HttpURLConnection.HTTP_BAD_REQUEST
+            && responseCode < HttpURLConnection.HTTP_INTERNAL_ERROR
+            && responseCode != HttpURLConnection.HTTP_CLIENT_TIMEOUT && responseCode != HTTP_TOO_MANY_REQUESTS;
+    }
+
+    private static boolean isNotModified(URLConnection connection) throws IOException {
+        return connection instanceof HttpURLConnection
+            && ((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED;
+    }
+
+    /**
+     * Connects to the url, following redirects
+     *
+     * @param resumed
+     *     range continuing from stored data, {@code null} if whole content is requested
+     * @param ifRange
+     *     validator of stored data, {@code null} if the range is requested unconditionally
+     * @param cached
+     *     cache entry to be revalidated, might be {@code null}
+     */
+    private URLConnection connect(URL url, List<String> redirectUrls, DownloadCheckpoint.Range resumed,
+        String ifRange, DownloadCache.Entry cached) throws IOException {
         String urlExternalForm = url.toExternalForm();
         if (redirectUrls.contains(urlExternalForm)) {
             throw new IllegalStateException("The site contains an infinite redirect loop! Duplicate url: " +
@@ -124,55 +721,281 @@ public class DownloadTool extends Task<Object, File> {
             redirectUrls.add(urlExternalForm);
         }
 
-        InputStream is = null;
-        FileOutputStream fos = null;
+        URLConnection connection = openConnection(url); // connect
 
+        if (connection instanceof HttpURLConnection) {
+            HttpURLConnection httpConnection = (HttpURLConnection) connection;
+            if (resumed != null) {
+                httpConnection.setRequestProperty("Range", "bytes=" + resumed.position() + "-");
+                if (ifRange != null) {
+                    httpConnection.setRequestProperty("If-Range", ifRange);
+                }
+            } else if (cached != null) {
+                if (cached.etag() != null) {
+                    httpConnection.setRequestProperty("If-None-Match", cached.etag());
+                }
+                if (cached.lastModified() != null) {
+                    httpConnection.setRequestProperty("If-Modified-Since", cached.lastModified());
+                }
+            }
+
+            int responseCode = httpConnection.getResponseCode();
+            metrics.responded();
+            if (resumed != null && responseCode == HTTP_RANGE_NOT_SATISFIABLE) {
+                // stored data do not match the content anymore, start from the beginning
+                release(httpConnection);
+                redirectUrls.remove(urlExternalForm);
+                return connect(url, redirectUrls, null, null, cached);
+            }
+            if (responseCode > 300 && responseCode < 400 && responseCode != HttpURLConnection.HTTP_NOT_MODIFIED
+                && followRedirects) {
+                String redirectLocation = connection.getHeaderField("Location");
+                if (redirectLocation == null || redirectLocation.equals("")) {
+                    throw new IllegalStateException("The site response code was a redirect one (" +
+                        responseCode + ") but no 'Location' header was sent.");
+                }
+                release(httpConnection);
+                metrics.redirected();
+                return connect(new URL(url, redirectLocation), redirectUrls, resumed, ifRange, cached);
+            }
+        }
+        return connection;
+    }
+
+    /**
+     * Downloads content provided by the connection
+     *
+     * @param resumed
+     *     range the connection returns, {@code null} if it returns whole content
+     */
+    private DownloadCheckpoint download(URL source, URLConnection connection, File part, File checkpointFile,
+        DownloadCheckpoint checkpoint, DownloadCheckpoint.Range resumed, Checksum.Digests digests) throws IOException {
+
+        RandomAccessFile file = new RandomAccessFile(part, "rw");
         try {
-            try {
-                URLConnection connection = url.openConnection(); // connect
-                connection.setReadTimeout(timeout);
+            FileChannel channel = file.getChannel();
+
+            if (connection instanceof HttpURLConnection) {
+                HttpURLConnection httpConnection = (HttpURLConnection) connection;
+                long length = SegmentedDownload.contentLength(connection);
+                String validator = validator(connection);
+
+                boolean sameSource = checkpoint != null && checkpoint.source().equals(source.toExternalForm());
 
-                for (Map.Entry<String, String> property : properties.entrySet()) {
-                    connection.setRequestProperty(property.getKey(), property.getValue());
+                // server returned requested part of the same content
+                if (resumed != null) {
+                    if (!sameSource) {
+                        // content continues from another mirror
+                        checkpoint = checkpoint.moveTo(source.toExternalForm(), validator);
+                    }
+                    metrics.contentLength(checkpoint.length());
+                    // data stored by previous attempt are read once, the rest is checked as it arrives
+                    digests.update(channel, resumed.position());
+                    transfer(connection, channel, checkpoint, resumed, digests);
+                    return checkpoint;
                 }
 
-                if (connection instanceof HttpURLConnection) {
-                    HttpURLConnection httpConnection = (HttpURLConnection) connection;
-                    int responseCode = httpConnection.getResponseCode();
-                    if (responseCode > 300 && responseCode < 400 && followRedirects) {
-                        String redirectLocation = connection.getHeaderField("Location");
-                        if (redirectLocation == null || redirectLocation.equals("")) {
-                            throw new IllegalStateException("The site response code was a redirect one (" +
-                                responseCode + ") but no 'Location' header was sent.");
-                        }
-                        tryDownload(new URL(redirectLocation));
-                        return;
+                metrics.contentLength(length);
+
+                // server returned the same content, so ranges that were not completed yet can be requested, mirrors
+                // are trusted to serve the same content if its length matches
+                if (checkpoint != null && checkpoint.ranges().size() > 1
+                    && (!sameSource || checkpoint.validator().equals(validator)) && checkpoint.length() == length
+                    && SegmentedDownload.canSplit(httpConnection, length, segments)) {
+                    if (!sameSource) {
+                        checkpoint = checkpoint.moveTo(source.toExternalForm(), validator);
                     }
+                    new SegmentedDownload(this, connection.getURL(), channel, checkpoint).download(httpConnection);
+                    // ranges arrive out of order, so checksum is computed once all of them are stored
+                    digests.update(channel, length);
+                    return checkpoint;
                 }
 
-                is = connection.getInputStream(); // get connection inputstream
-                fos = new FileOutputStream(output); // open outputstream to local file
+                if (SegmentedDownload.canSplit(httpConnection, length, segments)) {
+                    checkpoint = DownloadCheckpoint.create(checkpointFile, url.toExternalForm(), source.toExternalForm(),
+                        validator, length, SegmentedDownload.count(length, segments));
+                    file.setLength(length);
+                    new SegmentedDownload(this, connection.getURL(), channel, checkpoint).download(httpConnection);
+                    digests.update(channel, length);
+                    return checkpoint;
+                }
 
-                byte[] buffer = new byte[4096]; // declare 4KB buffer
-                int read;
+                checkpoint = DownloadCheckpoint.create(checkpointFile, url.toExternalForm(), source.toExternalForm(),
+                    validator, length, 1);
+            } else if (localFile(connection.getURL()) != null) {
+                // local files, such as mirrors on a shared filesystem, are copied by the kernel without passing through
+                // the heap
+                File local = localFile(connection.getURL());
+                checkpoint = DownloadCheckpoint.create(checkpointFile, url.toExternalForm(), source.toExternalForm(),
+                    null, local.length(), 1);
+                metrics.responded();
+                metrics.contentLength(local.length());
+                file.setLength(0);
+                copy(local, channel, metrics);
+                digests.update(channel, channel.size());
+                return checkpoint;
+            } else {
+                // there is no way to validate content or request a range, so no checkpoint is stored
+                checkpoint = DownloadCheckpoint.create(checkpointFile, url.toExternalForm(), source.toExternalForm(),
+                    null, -1, 1);
+                metrics.responded();
+            }
 
-                // while we have availble data, continue downloading and storing to local file
-                while ((read = is.read(buffer)) != -1) {
-                    fos.write(buffer, 0, read);
+            file.setLength(0);
+            transfer(connection, channel, checkpoint, checkpoint.ranges().get(0), digests);
+            return checkpoint;
+        } finally {
+            file.close();
+        }
+    }
+
+    private void transfer(URLConnection connection, FileChannel channel, DownloadCheckpoint checkpoint,
+        DownloadCheckpoint.Range range, Checksum.Digests digests) throws IOException {
+        InputStream is = connection.getInputStream();
+        try {
+            checkpoint.transfer(is, channel, range, digests, metrics);
+        } finally {
+            is.close();
+        }
+    }
+
+    private static void copy(File source, FileChannel target, DownloadMetrics metrics) throws IOException {
+        FileInputStream fis = new FileInputStream(source);
+        try {
+            FileChannel channel = fis.getChannel();
+            long size = channel.size();
+            long position = 0;
+            // a single call might transfer less than requested, e.g. Linux limits it to 2 GB
+            while (position < size) {
+                long transferred = channel.transferTo(position, Math.min(size - position, COPY_CHUNK_SIZE), target);
+                if (transferred <= 0) {
+                    throw new IOException("File " + source + " ended after " + position + " of " + size + " bytes");
                 }
-            } finally {
-                try {
-                    if (is != null) {
-                        is.close();
-                    }
-                } finally {
-                    if (fos != null) {
-                        fos.close();
+                position += transferred;
+                metrics.transferred(transferred);
+            }
+        } finally {
+            fis.close();
+        }
+    }
+
+    /**
+     * Returns file denoted by a {@code file:} url, or {@code null} if url does not point to a local regular file
+     */
+    private static File localFile(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            File file = new File(url.toURI());
+            return file.isFile() ? file : null;
+        } catch (URISyntaxException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            // url with an authority, such as a network share, is read as a stream
+            return null;
+        }
+    }
+
+    private static void digestFile(File file, Checksum.Digests digests) throws IOException {
+        if (digests.isEmpty()) {
+            return;
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            digests.update(raf.getChannel(), raf.length());
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Closes response that is not going to be read. Unlike disconnecting, this keeps the connection open, so it can be
+     * reused by another request to the same host.
+     */
+    static void release(HttpURLConnection connection) {
+        try {
+            InputStream is = connection.getResponseCode() >= HttpURLConnection.HTTP_BAD_REQUEST ? connection
+                .getErrorStream() : connection.getInputStream();
+            if (is != null) {
+                // body that was read completely returns the connection to keep-alive cache right away, otherwise
+                // it is returned asynchronously and next request to the host would open a new one
+                byte[] buffer = new byte[RELEASE_BUFFER_SIZE];
+                long drained = 0;
+                int read;
+                while ((read = is.read(buffer)) != -1) {
+                    drained += read;
+                    if (drained > MAX_RELEASED_BODY) {
+                        connection.disconnect();
+                        return;
                     }
                 }
+                is.close();
             }
         } catch (IOException e) {
-            throw new ExecutionException(e, "Unable to download from {0} to {1}", url, output);
+            connection.disconnect();
+        }
+    }
+
+    private static String validator(URLConnection connection) {
+        String etag = connection.getHeaderField("ETag");
+        // weak validators cannot be used for range requests
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return connection.getHeaderField("Last-Modified");
+    }
+
+    /**
+     * Checks whether connection returns the rest of the content after stored data. Range returned by another mirror is
+     * accepted only if the length of the content matches.
+     */
+    private static boolean isResumed(URLConnection connection, DownloadCheckpoint checkpoint,
+        DownloadCheckpoint.Range resumed, boolean sameSource) throws IOException {
+        if (!(connection instanceof HttpURLConnection)
+            || ((HttpURLConnection) connection).getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+            return false;
+        }
+        String contentRange = connection.getHeaderField("Content-Range");
+        return contentRange != null && contentRange.startsWith("bytes " + resumed.position() + "-")
+            && (sameSource || checkpoint.length() >= 0 && contentRange.endsWith("/" + checkpoint.length()));
+    }
+
+    /**
+     * Returns source url, {@code null} if it was not set
+     */
+    URL url() {
+        return url;
+    }
+
+    /**
+     * Returns destination file, {@code null} if it was not set
+     */
+    File output() {
+        return output;
+    }
+
+    /**
+     * Opens a connection with configured timeout and request properties
+     */
+    URLConnection openConnection(URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+        connection.setReadTimeout(timeout);
+        if (followRedirects && connection instanceof HttpURLConnection) {
+            // redirects are followed by the tool, JDK would close the connection instead of reusing it
+            ((HttpURLConnection) connection).setInstanceFollowRedirects(false);
+        }
+
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            connection.setRequestProperty(property.getKey(), property.getValue());
         }
+        return connection;
+    }
+
+    /**
+     * Returns execution service used to download segments in parallel
+     */
+    ExecutionService executionService() {
+        return getExecutionService() != null ? getExecutionService() : Spacelift.service();
     }
 }
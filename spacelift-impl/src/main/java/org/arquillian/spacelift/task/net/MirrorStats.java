@@ -0,0 +1,211 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.net;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Latency, throughput and failures observed for each mirror host, persisted in a properties file so later downloads
+ * can start with the fastest mirror right away. Values are smoothed by an exponentially weighted moving average.
+ * <p>
+ * Statistics are advisory only, if several processes share the file, the last one to save it wins.
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+class MirrorStats {
+
+    private static final Logger log = Logger.getLogger(MirrorStats.class.getName());
+
+    static final String FILE_NAME = "mirrors.properties";
+
+    // weight of a new sample in the average
+    private static final double WEIGHT = 0.3;
+
+    // transfers shorter than this say more about latency than about throughput
+    private static final long MIN_THROUGHPUT_SAMPLE = 64 * 1024;
+
+    private static final ConcurrentMap<File, MirrorStats> INSTANCES = new ConcurrentHashMap<File, MirrorStats>();
+
+    private final File file;
+    private final Properties properties = new Properties();
+
+    private MirrorStats(File file) {
+        this.file = file;
+        load();
+    }
+
+    /**
+     * Returns statistics stored in {@code directory}, shared by all downloads within the JVM
+     */
+    static MirrorStats in(File directory) {
+        File file = new File(directory, FILE_NAME).getAbsoluteFile();
+        MirrorStats stats = INSTANCES.get(file);
+        if (stats == null) {
+            MirrorStats created = new MirrorStats(file);
+            stats = INSTANCES.putIfAbsent(file, created);
+            if (stats == null) {
+                stats = created;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Returns host the url belongs to, statistics are kept per host
+     */
+    static String host(URL url) {
+        return url.getProtocol() + "://" + (url.getAuthority() != null ? url.getAuthority() : "");
+    }
+
+    /**
+     * Returns average latency of the host in nanoseconds, or {@code -1} if not known
+     */
+    synchronized long latency(URL url) {
+        return get(url, "latency", -1);
+    }
+
+    /**
+     * Returns average throughput of the host in bytes per second, or {@code -1} if not known
+     */
+    synchronized long throughput(URL url) {
+        return get(url, "throughput", -1);
+    }
+
+    /**
+     * Returns number of consecutive failures of the host
+     */
+    synchronized long failures(URL url) {
+        return get(url, "failures", 0);
+    }
+
+    /**
+     * Estimates how long it takes to download {@code length} bytes from the host, in nanoseconds. Hosts that failed
+     * recently are penalized.
+     */
+    synchronized long estimate(URL url, long length) {
+        long estimate = Math.max(0, latency(url));
+        long throughput = throughput(url);
+        if (length > 0 && throughput > 0) {
+            estimate += (long) (length * 1e9 / throughput);
+        }
+        return estimate * (1 + failures(url));
+    }
+
+    /**
+     * Records time it took the host to respond to a probe
+     */
+    synchronized void probed(URL url, long nanos) {
+        average(url, "latency", nanos);
+        save();
+    }
+
+    /**
+     * Records a successful transfer of {@code bytes} bytes that took {@code nanos} nanoseconds
+     */
+    synchronized void succeeded(URL url, long bytes, long nanos) {
+        if (bytes >= MIN_THROUGHPUT_SAMPLE && nanos > 0) {
+            average(url, "throughput", (long) (bytes * 1e9 / nanos));
+        }
+        properties.remove(host(url) + ".failures");
+        save();
+    }
+
+    /**
+     * Records a failed probe or transfer
+     */
+    synchronized void failed(URL url) {
+        properties.setProperty(host(url) + ".failures", String.valueOf(failures(url) + 1));
+        save();
+    }
+
+    private long get(URL url, String key, long defaultValue) {
+        String value = properties.getProperty(host(url) + "." + key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private void average(URL url, String key, long sample) {
+        long current = get(url, key, -1);
+        long value = current < 0 ? sample : (long) (WEIGHT * sample + (1 - WEIGHT) * current);
+        properties.setProperty(host(url) + "." + key, String.valueOf(value));
+    }
+
+    private void load() {
+        if (!file.isFile()) {
+            return;
+        }
+        InputStream is = null;
+        try {
+            is = new FileInputStream(file);
+            properties.load(is);
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Unable to read mirror statistics {0}: {1}", new Object[] {file, e.getMessage()});
+        } finally {
+            if (is != null) {
+                try {
+                    is.close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+    }
+
+    private void save() {
+        // write a new file and replace the old one, so readers never see a partial file
+        File tmp = new File(file.getPath() + ".tmp");
+        OutputStream os = null;
+        try {
+            File parent = file.getParentFile();
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Unable to create directory " + parent);
+            }
+            os = new FileOutputStream(tmp);
+            properties.store(os, "Spacelift mirror statistics");
+            os.close();
+            os = null;
+            if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+                throw new IOException("Unable to rename " + tmp + " to " + file);
+            }
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Unable to save mirror statistics {0}: {1}", new Object[] {file, e.getMessage()});
+        } finally {
+            if (os != null) {
+                try {
+                    os.close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.net;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.arquillian.spacelift.execution.Execution;
+import org.arquillian.spacelift.execution.ExecutionException;
+
+/**
+ * Urls providing the same content. Sources are probed concurrently by {@code HEAD} requests and ordered by their
+ * expected download time, computed from the probed latency and throughput observed by previous downloads. If a
+ * download from a source fails, it continues from the next one.
+ * <p>
+ * If there is a single source, it is neither probed nor are any statistics recorded.
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+class Mirrors {
+
+    private static final Logger log = Logger.getLogger(Mirrors.class.getName());
+
+    private final DownloadTool tool;
+    private final List<URL> sources;
+    private final MirrorStats stats;
+
+    // urls are compared by their external form, URL.equals would resolve host names
+    private final Set<String> unreachable = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile long length = -1;
+
+    /**
+     * Creates mirrors
+     *
+     * @param tool
+     *     tool that opens connections to the sources
+     * @param sources
+     *     urls providing the same content, the preferred one goes first
+     * @param stats
+     *     statistics of the mirror hosts, {@code null} if there is a single source
+     */
+    Mirrors(DownloadTool tool, List<URL> sources, MirrorStats stats) {
+        this.tool = tool;
+        this.sources = sources;
+        this.stats = stats;
+    }
+
+    /**
+     * Probes all HTTP sources in parallel and waits for their responses. Sources that do not respond or respond by an
+     * error are tried last.
+     */
+    Mirrors probe() {
+        if (stats == null) {
+            return this;
+        }
+
+        List<Execution<Void>> probes = new ArrayList<Execution<Void>>();
+        for (URL source : sources) {
+            if (source.getProtocol().startsWith("http")) {
+                probes.add(tool.executionService().execute(new Probe(source)));
+            }
+        }
+        for (Execution<Void> probe : probes) {
+            try {
+                probe.await();
+            } catch (ExecutionException e) {
+                log.log(Level.FINE, "Unable to probe mirror", e);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns sources ordered from the one expected to be the fastest
+     */
+    List<URL> ranked() {
+        if (stats == null) {
+            return sources;
+        }
+
+        // estimates are computed up front, statistics might change while sorting
+        final Map<String, Long> estimates = new HashMap<String, Long>();
+        for (URL source : sources) {
+            long estimate = unreachable.contains(source.toExternalForm()) ? Long.MAX_VALUE : stats.estimate(source,
+                length);
+            estimates.put(source.toExternalForm(), estimate);
+        }
+
+        List<URL> ranked = new ArrayList<URL>(sources);
+        // sort is stable, so sources with the same estimate keep their order
+        Collections.sort(ranked, new Comparator<URL>() {
+            @Override
+            public int compare(URL o1, URL o2) {
+                long e1 = estimates.get(o1.toExternalForm());
+                long e2 = estimates.get(o2.toExternalForm());
+                return e1 < e2 ? -1 : (e1 == e2 ? 0 : 1);
+            }
+        });
+        return ranked;
+    }
+
+    /**
+     * Runs the attempt with each source, starting with the fastest one, until it succeeds. Attempts that download
+     * content can continue from where the previous source failed.
+     *
+     * @param metrics
+     *     metrics of the download, used to measure throughput of the sources
+     *
+     * @throws ExecutionException
+     *     failure of the last source, if all of them failed
+     */
+    <T> T failover(DownloadMetrics metrics, Attempt<T> attempt) throws ExecutionException {
+        List<URL> ranked = ranked();
+        for (int i = 0; ; i++) {
+            URL source = ranked.get(i);
+            long bytes = metrics.bytes();
+            long start = System.nanoTime();
+            try {
+                T result = attempt.from(source);
+                if (stats != null) {
+                    stats.succeeded(source, metrics.bytes() - bytes, System.nanoTime() - start);
+                }
+                return result;
+            } catch (ExecutionException e) {
+                if (stats != null) {
+                    stats.failed(source);
+                }
+                if (i == ranked.size() - 1) {
+                    throw e;
+                }
+                log.log(Level.WARNING, "Download from mirror {0} failed, continuing from {1}: {2}", new Object[] {
+                    source, ranked.get(i + 1), e.getCause() != null ? e.getCause().getMessage() : e.getMessage()});
+            }
+        }
+    }
+
+    /**
+     * Download attempt using one of the sources
+     */
+    interface Attempt<T> {
+
+        T from(URL source) throws ExecutionException;
+    }
+
+    private class Probe implements Callable<Void> {
+
+        private final URL source;
+
+        Probe(URL source) {
+            this.source = source;
+        }
+
+        @Override
+        public Void call() {
+            long start = System.nanoTime();
+            try {
+                HttpURLConnection connection = (HttpURLConnection) tool.openConnection(source);
+                connection.setConnectTimeout(connection.getReadTimeout());
+                connection.setRequestMethod("HEAD");
+                int responseCode = connection.getResponseCode();
+                long latency = System.nanoTime() - start;
+                if (responseCode >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                    unreachable(new IOException("Response code was " + responseCode));
+                } else {
+                    stats.probed(source, latency);
+                    long length = SegmentedDownload.contentLength(connection);
+                    if (responseCode == HttpURLConnection.HTTP_OK && length >= 0) {
+                        Mirrors.this.length = length;
+                    }
+                }
+                DownloadTool.release(connection);
+            } catch (IOException e) {
+                unreachable(e);
+            }
+            return null;
+        }
+
+        private void unreachable(IOException e) {
+            unreachable.add(source.toExternalForm());
+            stats.failed(source);
+            log.log(Level.FINE, "Mirror {0} is not available: {1}", new Object[] {source, e.getMessage()});
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.arquillian.spacelift.execution.Execution;
+import org.arquillian.spacelift.execution.ExecutionException;
+
+/**
+ * Downloads content of a URL by multiple connections in parallel, each connection fetching a range of bytes. Ranges are
+ * written directly to their position in a preallocated file.
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+class SegmentedDownload {
+
+    private static final Logger log = Logger.getLogger(SegmentedDownload.class.getName());
+
+    /**
+     * Files smaller than this are not worth splitting
+     */
+    static final long MIN_SEGMENT_SIZE = 256 * 1024;
+
+    private final DownloadTool tool;
+    private final URL url;
+    private final FileChannel channel;
+    private final DownloadCheckpoint checkpoint;
+
+    SegmentedDownload(DownloadTool tool, URL url, FileChannel channel, DownloadCheckpoint checkpoint) {
+        this.tool = tool;
+        this.url = url;
+        this.channel = channel;
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Checks whether server accepts range requests and content is large enough to be split
+     */
+    static boolean canSplit(HttpURLConnection connection, long length, int segments) throws IOException {
+        return connection.getResponseCode() == HttpURLConnection.HTTP_OK
+            && "bytes".equalsIgnoreCase(connection.getHeaderField("Accept-Ranges"))
+            && connection.getHeaderField("Content-Encoding") == null
+            && length >= 2 * MIN_SEGMENT_SIZE && segments > 1;
+    }
+
+    /**
+     * Returns number of segments the content should be split to
+     */
+    static int count(long length, int segments) {
+        return (int) Math.min(segments, length / MIN_SEGMENT_SIZE);
+    }
+
+    /**
+     * Returns length of the content, or {@code -1} if it is not known
+     */
+    static long contentLength(URLConnection connection) {
+        String value = connection.getHeaderField("Content-Length");
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Downloads all ranges of the checkpoint that are not complete yet. If {@code connection} returns the content from
+     * its beginning, it is used to fetch the first range, other ranges are fetched in parallel by new connections.
+     *
+     * @param connection
+     *     connection returning whole content
+     *
+     * @throws IOException
+     *     if any of the ranges cannot be fetched
+     */
+    void download(HttpURLConnection connection) throws IOException {
+
+        List<DownloadCheckpoint.Range> ranges = checkpoint.ranges();
+        DownloadCheckpoint.Range first = ranges.get(0);
+
+        List<Segment> segments = new ArrayList<Segment>(ranges.size());
+        for (DownloadCheckpoint.Range range : ranges) {
+            if (range.remaining() > 0 && (range != first || first.synced > 0)) {
+                segments.add(new Segment(range));
+            }
+        }
+
+        CountDownLatch finished = new CountDownLatch(segments.size());
+        List<Execution<Void>> executions = new ArrayList<Execution<Void>>(segments.size());
+        boolean completed = false;
+        try {
+            for (Segment segment : segments) {
+                executions.add(tool.executionService().execute(segment.finishing(finished)));
+            }
+
+            if (first.synced == 0) {
+                // first range is read from the connection that returned whole content
+                InputStream is = connection.getInputStream();
+                try {
+                    checkpoint.transfer(is, channel, first, null, tool.metrics());
+                } finally {
+                    // do not read the rest of the content
+                    connection.disconnect();
+                }
+            } else {
+                connection.disconnect();
+            }
+
+            for (Execution<Void> execution : executions) {
+                execution.await();
+            }
+            completed = true;
+        } catch (ExecutionException e) {
+            throw ioException(e);
+        } finally {
+            if (!completed) {
+                // make sure no segment writes to the file once the download is over
+                for (Segment segment : segments) {
+                    segment.abort();
+                }
+                awaitUninterruptibly(finished, segments.size() - executions.size());
+            }
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch, int notSubmitted) {
+        // segments that were not submitted will never count down
+        for (int i = 0; i < notSubmitted; i++) {
+            latch.countDown();
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static IOException ioException(ExecutionException e) {
+        Throwable cause = e;
+        while (cause != null && !(cause instanceof IOException)) {
+            cause = cause.getCause();
+        }
+        if (cause != null) {
+            return (IOException) cause;
+        }
+        IOException io = new IOException(e.getMessage());
+        io.initCause(e);
+        return io;
+    }
+
+    private class Segment implements Callable<Void> {
+
+        private final DownloadCheckpoint.Range range;
+        private CountDownLatch finished;
+
+        private volatile boolean aborted;
+        private volatile HttpURLConnection connection;
+
+        Segment(DownloadCheckpoint.Range range) {
+            this.range = range;
+        }
+
+        Segment finishing(CountDownLatch finished) {
+            this.finished = finished;
+            return this;
+        }
+
+        void abort() {
+            aborted = true;
+            HttpURLConnection connection = this.connection;
+            if (connection != null) {
+                try {
+                    connection.disconnect();
+                } catch (RuntimeException e) {
+                    // disconnecting from another thread races with the transfer, segment will be awaited anyway
+                    log.log(Level.FINE, "Unable to abort download of range " + range.position() + "-" + range.to, e);
+                }
+            }
+        }
+
+        @Override
+        public Void call() throws Exception {
+            try {
+                HttpURLConnection connection = (HttpURLConnection) tool.openConnection(url);
+                connection.setRequestProperty("Range", "bytes=" + range.position() + "-" + range.to);
+                if (checkpoint.validator() != null) {
+                    connection.setRequestProperty("If-Range", checkpoint.validator());
+                }
+
+                this.connection = connection;
+                try {
+                    if (aborted) {
+                        throw new IOException("Download of range " + range.position() + "-" + range.to + " was aborted");
+                    }
+
+                    int responseCode = connection.getResponseCode();
+                    String contentRange = connection.getHeaderField("Content-Range");
+                    if (responseCode != HttpURLConnection.HTTP_PARTIAL || contentRange == null
+                        || !contentRange.startsWith("bytes " + range.position() + "-")) {
+                        throw new IOException("Server did not return range " + range.position() + "-" + range.to
+                            + " of " + url + ", response code was " + responseCode + ", content range was "
+                            + contentRange);
+                    }
+
+                    InputStream is = connection.getInputStream();
+                    try {
+                        checkpoint.transfer(is, channel, range, null, tool.metrics());
+                    } finally {
+                        is.close();
+                    }
+                } finally {
+                    connection.disconnect();
+                }
+                return null;
+            } finally {
+                finished.countDown();
+            }
+        }
+    }
+}
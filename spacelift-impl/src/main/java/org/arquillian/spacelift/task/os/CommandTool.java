@@ -17,6 +17,7 @@
 package org.arquillian.spacelift.task.os;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -25,15 +26,27 @@ import java.util.Map;
 import org.arquillian.spacelift.Spacelift;
 import org.arquillian.spacelift.execution.Execution;
 import org.arquillian.spacelift.execution.ExecutionException;
+import org.arquillian.spacelift.process.ByteOutputListener;
 import org.arquillian.spacelift.process.Command;
 import org.arquillian.spacelift.process.CommandBuilder;
+import org.arquillian.spacelift.process.OutputListener;
 import org.arquillian.spacelift.process.ProcessInteraction;
 import org.arquillian.spacelift.process.ProcessInteractionBuilder;
 import org.arquillian.spacelift.process.ProcessResult;
+import org.arquillian.spacelift.process.SeparatedProcessResult;
 import org.arquillian.spacelift.task.Task;
 
 /**
  * Tool that is able to execute an external, operating system dependent command.
+ * <p>
+ * Output of all commands is read by a few threads shared by all of them. Listeners registered by
+ * {@link #onLine(OutputListener)} and {@link #onBytes(ByteOutputListener)}, as well as replies and termination defined
+ * by the {@link ProcessInteraction}, are run by the thread executing the command, in the order the output was read. A
+ * slow listener or a reply the process does not read thus delays only its own command. While they are busy, a few
+ * hundred kilobytes of output are buffered, then the output is not read and the process blocks once it fills the pipe.
+ * <p>
+ * Output is consumed until the process exits and closes its output. If processes it spawned keep the output open, it is
+ * read for at most a second after the process exited.
  *
  * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
  */
@@ -45,12 +58,24 @@ public class CommandTool extends Task<Object, ProcessResult> {
      */
     public static final File CURRENT_USER_DIR = null;
 
+    /**
+     * Number of last output lines that are reported if command fails
+     */
+    private static final int FAILURE_OUTPUT_LINES = 50;
+
     protected CommandBuilder commandBuilder;
     protected ProcessInteraction interaction;
     protected List<Integer> allowedExitCodes;
     protected File workingDirectory;
     protected Map<String, String> environment;
     protected boolean isDaemon;
+    protected boolean redirectErrorStream;
+    protected int retainedLines;
+    protected long retainedBytes;
+    protected boolean spillOutput;
+    protected File spillFile;
+    protected List<OutputListener> lineListeners;
+    protected List<ByteOutputListener> byteListeners;
 
     protected ProcessReference processRef;
 
@@ -60,6 +85,9 @@ public class CommandTool extends Task<Object, ProcessResult> {
         this.workingDirectory = null;
         this.environment = new HashMap<String, String>();
         this.isDaemon = false;
+        this.redirectErrorStream = true;
+        this.lineListeners = new ArrayList<OutputListener>();
+        this.byteListeners = new ArrayList<ByteOutputListener>();
     }
 
     /**
@@ -282,6 +310,114 @@ public class CommandTool extends Task<Object, ProcessResult> {
         return this;
     }
 
+    /**
+     * Sets whether error output of the command is merged into its standard output. By default, error output is merged.
+     * <p>
+     * If not merged, error output is consumed in parallel with standard output and it is available via
+     * {@link SeparatedProcessResult#errorOutput()}. It is matched by the interaction as well, but it is neither passed
+     * to output listeners nor spilled to a file.
+     *
+     * @param redirectErrorStream
+     *     {@code true} to merge error output into standard output
+     */
+    public CommandTool redirectErrorStream(boolean redirectErrorStream) {
+        this.redirectErrorStream = redirectErrorStream;
+        return this;
+    }
+
+    /**
+     * Keeps only last {@code lines} lines of the output in memory. By default, complete output is kept.
+     *
+     * @param lines
+     *     number of lines, {@code 0} means no limit
+     *
+     * @throws IllegalArgumentException
+     *     If number of lines is negative
+     */
+    public CommandTool retainLastLines(int lines) throws IllegalArgumentException {
+        if (lines < 0) {
+            throw new IllegalArgumentException("Number of retained lines must not be negative");
+        }
+        this.retainedLines = lines;
+        return this;
+    }
+
+    /**
+     * Keeps only last lines of the output that fit into {@code bytes} in memory, counting one byte per character. The
+     * very last line is always kept. By default, complete output is kept.
+     *
+     * @param bytes
+     *     number of bytes, {@code 0} means no limit
+     *
+     * @throws IllegalArgumentException
+     *     If number of bytes is negative
+     */
+    public CommandTool retainLastBytes(long bytes) throws IllegalArgumentException {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Number of retained bytes must not be negative");
+        }
+        this.retainedBytes = bytes;
+        return this;
+    }
+
+    /**
+     * Writes complete output of the command to a new file in {@code process-output} directory of Spacelift workspace.
+     * {@link ProcessResult#output()} then reads the output back from the file when accessed, so the file is kept after
+     * the command finishes. Caller owns the cleanup, either by removing the directory once results are no longer needed
+     * or by spilling to a chosen file via {@link #spillOutput(File)}.
+     * <p>
+     * Unless limited by {@link #retainLastLines(int)} or {@link #retainLastBytes(long)}, only last 50 lines are kept in
+     * memory.
+     */
+    public CommandTool spillOutput() {
+        this.spillOutput = true;
+        this.spillFile = null;
+        return this;
+    }
+
+    /**
+     * Writes complete output of the command to {@code file}. {@link ProcessResult#output()} then reads the output back
+     * from the file when accessed.
+     * <p>
+     * Unless limited by {@link #retainLastLines(int)} or {@link #retainLastBytes(long)}, only last 50 lines are kept in
+     * memory.
+     *
+     * @param file
+     *     the file, it is overwritten if it exists
+     */
+    public CommandTool spillOutput(File file) {
+        Validate.notNull(file, "File to spill output to must not be null");
+        this.spillOutput = true;
+        this.spillFile = file;
+        return this;
+    }
+
+    /**
+     * Registers a listener that is notified about each line of the output as soon as it is read, independently of how
+     * much of the output is retained in {@link ProcessResult}.
+     *
+     * @param listener
+     *     the listener
+     */
+    public CommandTool onLine(OutputListener listener) {
+        Validate.notNull(listener, "Output listener must not be null");
+        this.lineListeners.add(listener);
+        return this;
+    }
+
+    /**
+     * Registers a listener that is notified about raw bytes of the output as soon as they are read, before they are
+     * decoded into lines.
+     *
+     * @param listener
+     *     the listener
+     */
+    public CommandTool onBytes(ByteOutputListener listener) {
+        Validate.notNull(listener, "Output listener must not be null");
+        this.byteListeners.add(listener);
+        return this;
+    }
+
     @Override
     public Execution<ProcessResult> execute() throws ExecutionException {
         // here we rewrap future based execution into process based execution to get better details about execution
@@ -306,7 +442,7 @@ public class CommandTool extends Task<Object, ProcessResult> {
         Process process = null;
 
         Execution<Process> spawnedProcess = Spacelift.task(SpawnProcessTask.class)
-            .redirectErrorStream(true)
+            .redirectErrorStream(redirectErrorStream)
             .shouldExitWith(allowedExitCodes)
             .command(command)
             .workingDirectory(workingDirectory)
@@ -320,12 +456,12 @@ public class CommandTool extends Task<Object, ProcessResult> {
         // set processReference
         processRef.setProcess(process);
 
-        // handle IO of spawned process
-        Execution<ProcessResult> processConsumer = Spacelift.task(spawnedProcess, ConsumeProcessOutputTask.class)
-            .programName(command.getProgramName()).interaction(interaction).execute();
-
-        // wait for process to finish IO
-        ProcessResult result = processConsumer.await();
+        // handle IO of spawned process, output is read by shared pumps while current thread passes it to listeners
+        ProcessResultImpl result = Spacelift.task(ConsumeProcessOutputTask.class)
+            .programName(command.getProgramName()).interaction(interaction).output(processOutput(command))
+            .errorOutput(redirectErrorStream ? null : new ProcessOutput(retainedLines, retainedBytes, null))
+            .lineListeners(lineListeners).byteListeners(byteListeners)
+            .process(spawnedProcess);
 
         if (spawnedProcess.hasFailed()) {
 
@@ -337,12 +473,17 @@ public class CommandTool extends Task<Object, ProcessResult> {
             }
 
             StringBuilder output = new StringBuilder();
-            List<String> outputList = result.output();
             // FIXME maybe we don't want this to be hardcoded
-            int from = outputList.size() > 50 ? outputList.size() - 50 : 0;
-            for (String s : outputList.subList(from, outputList.size())) {
+            for (String s : result.lastLines(FAILURE_OUTPUT_LINES)) {
                 output.append("\n").append(s);
             }
+            List<String> errorLines = result.lastErrorLines(FAILURE_OUTPUT_LINES);
+            if (!errorLines.isEmpty()) {
+                output.append("\nerror output:");
+                for (String s : errorLines) {
+                    output.append("\n").append(s);
+                }
+            }
 
             throw new ExecutionException("Invocation of \"{3} {0}\" failed with {1}, logged (last 50 lines): {2}",
                 new Object[] {
@@ -355,4 +496,31 @@ public class CommandTool extends Task<Object, ProcessResult> {
 
         return result;
     }
+
+    private ProcessOutput processOutput(Command command) throws ExecutionException {
+        if (!spillOutput) {
+            return new ProcessOutput(retainedLines, retainedBytes, null);
+        }
+
+        File file = spillFile;
+        if (file == null) {
+            File dir = Spacelift.configuration().workpath("process-output");
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new ExecutionException("Unable to create directory {0} to store process output",
+                    dir.getAbsolutePath());
+            }
+            String name = new File(command.getProgramName()).getName().replaceAll("[^\\w.-]", "_");
+            try {
+                file = File.createTempFile("spacelift-" + name + "-", ".log", dir);
+            } catch (IOException e) {
+                throw new ExecutionException(e, "Unable to create file in {0} to store process output",
+                    dir.getAbsolutePath());
+            }
+        }
+
+        if (retainedLines == 0 && retainedBytes == 0) {
+            return new ProcessOutput(FAILURE_OUTPUT_LINES, 0, file);
+        }
+        return new ProcessOutput(retainedLines, retainedBytes, file);
+    }
 }
@@ -17,22 +17,21 @@
 package org.arquillian.spacelift.task.os;
 
 import java.io.BufferedOutputStream;
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Pattern;
 import org.arquillian.spacelift.execution.Execution;
 import org.arquillian.spacelift.execution.ExecutionException;
+import org.arquillian.spacelift.process.ByteOutputListener;
+import org.arquillian.spacelift.process.OutputListener;
 import org.arquillian.spacelift.process.OutputTransformer;
 import org.arquillian.spacelift.process.ProcessInteraction;
-import org.arquillian.spacelift.process.ProcessResult;
+import org.arquillian.spacelift.process.ProcessInteractionMatcher;
 import org.arquillian.spacelift.process.Sentence;
 import org.arquillian.spacelift.task.Task;
 
@@ -41,12 +40,16 @@ import org.arquillian.spacelift.task.Task;
  *
  * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
  */
-class ConsumeProcessOutputTask extends Task<Execution<Process>, ProcessResult> {
+class ConsumeProcessOutputTask extends Task<Execution<Process>, ProcessResultImpl> {
 
     private static final Logger log = Logger.getLogger(ConsumeProcessOutputTask.class.getName());
 
     private ProcessInteraction interactionDefinition;
     private String programName;
+    private ProcessOutput output;
+    private ProcessOutput errorOutput;
+    private List<OutputListener> lineListeners = Collections.emptyList();
+    private List<ByteOutputListener> byteListeners = Collections.emptyList();
 
     public ConsumeProcessOutputTask programName(String programName) {
         this.programName = programName;
@@ -58,16 +61,39 @@ class ConsumeProcessOutputTask extends Task<Execution<Process>, ProcessResult> {
         return this;
     }
 
+    public ConsumeProcessOutputTask output(ProcessOutput output) {
+        this.output = output;
+        return this;
+    }
+
+    /**
+     * Consumes error output of the process separately and stores it to {@code errorOutput}. Error stream must not be
+     * redirected to the standard output.
+     */
+    public ConsumeProcessOutputTask errorOutput(ProcessOutput errorOutput) {
+        this.errorOutput = errorOutput;
+        return this;
+    }
+
+    public ConsumeProcessOutputTask lineListeners(List<OutputListener> listeners) {
+        this.lineListeners = new ArrayList<OutputListener>(listeners);
+        return this;
+    }
+
+    public ConsumeProcessOutputTask byteListeners(List<ByteOutputListener> listeners) {
+        this.byteListeners = new ArrayList<ByteOutputListener>(listeners);
+        return this;
+    }
+
     @Override
-    protected ProcessResult process(Execution<Process> runningProcess) throws Exception {
+    protected ProcessResultImpl process(Execution<Process> runningProcess) throws Exception {
 
         Process process = runningProcess.await();
 
-        final List<String> output = new ArrayList<String>();
-        final ProcessResult result = new ProcessResultImpl(process, programName, output);
+        final ProcessOutput output = this.output != null ? this.output : new ProcessOutput();
+        final ProcessResultImpl result = new ProcessResultImpl(process, programName, output, errorOutput);
         final ProcessInteractionApplicator interaction =
             new ProcessInteractionApplicator(interactionDefinition, programName);
-        final BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
         final OutputStream writer = new BufferedOutputStream(process.getOutputStream());
 
         // close process input stream if we don't need it
@@ -79,72 +105,43 @@ class ConsumeProcessOutputTask extends Task<Execution<Process>, ProcessResult> {
             }
         }
 
+        // streams are read by pumps shared with other processes, while current thread passes the output to listeners
+        // and interaction, so they cannot delay output of other processes
+        ProcessIoEngine.Session session = ProcessIoEngine.getInstance().session(process);
+
         try {
-            // read character by character
-            int i;
-            boolean reachedEOF = false;
+            // error output is consumed in parallel, so it cannot block standard output of the process
+            if (errorOutput != null) {
+                session.consume(process.getErrorStream(), new OutputPump(runningProcess, interaction, writer,
+                    errorOutput, Collections.<OutputListener> emptyList(), Collections.<ByteOutputListener> emptyList(),
+                    result.processName()));
+            }
 
             // write initial text if any
             if (interaction.typesInitialText() != null) {
-                writer.flush();
-                writer.write(interaction.typesInitialText().getBytes());
-                writer.flush();
-                output.add(interaction.typesInitialText());
-            }
-
-            Sentence sentence = new SentenceImpl();
-            // we have an extra check to figure out whether EOF was reached - using last expected response
-            while (!reachedEOF && (i = reader.read()) != -1) {
-                // add the character
-                sentence.append((char) i);
-
-                boolean shouldTerminate = interaction.shouldTerminate(sentence);
-                String answer = interaction.repliesTo(sentence);
-                // sentence was not empty, reply
-                if (answer != null) {
-                    sentence.append(answer);
-                    writer.flush();
-                    writer.write(answer.getBytes());
-                    writer.flush();
-                }
-                if (shouldTerminate) {
-                    runningProcess.markAsFinished();
-                    runningProcess.terminate();
-                }
-
-                reachedEOF = runningProcess.isMarkedAsFinished();
-
-                // save and print output
-                if (sentence.isFinished()) {
-                    sentence.trim();
-                    log.log(Level.FINEST, "({0}): {1}", new Object[] {result.processName(), sentence});
-
-                    output.add(sentence.toString());
-                    // propagate output/error to user
-                    if (interaction.shouldOutput(sentence)) {
-                        System.out.println(interaction.transform(sentence));
-                    }
-                    if (interaction.shouldOutputToErr(sentence)) {
-                        System.err.println(interaction.transform(sentence));
+                try {
+                    synchronized (writer) {
+                        writer.flush();
+                        writer.write(interaction.typesInitialText().getBytes());
+                        writer.flush();
                     }
-                    sentence.reset();
+                } catch (IOException ignore) {
                 }
+                output.add(interaction.typesInitialText());
             }
 
-            // handle last line
-            if (!sentence.isEmpty()) {
-                log.log(Level.FINEST, "{0} outputs: {1}", new Object[] {result.processName(), sentence});
-
-                output.add(sentence.toString());
-                // propagate output/error to user
-                if (interaction.shouldOutput(sentence)) {
-                    System.out.println(interaction.transform(sentence));
-                }
-                if (interaction.shouldOutputToErr(sentence)) {
-                    System.err.println(interaction.transform(sentence));
-                }
+            session.consume(process.getInputStream(), new OutputPump(runningProcess, interaction, writer, output,
+                lineListeners, byteListeners, result.processName()));
+            session.await();
+        } catch (InterruptedException e) {
+            throw new ExecutionException(e, "Execution of \"{0}\" was interrupted with: {1}", programName,
+                e.getMessage());
+        } finally {
+            session.cancel();
+            output.close();
+            if (errorOutput != null) {
+                errorOutput.close();
             }
-        } catch (IOException ignore) {
         }
 
         try {
@@ -196,6 +193,215 @@ class ConsumeProcessOutputTask extends Task<Execution<Process>, ProcessResult> {
         return result;
     }
 
+    /**
+     * Splits blocks of process output into lines and applies {@see ProcessInteraction} to them.
+     * <p>
+     * Reply and terminate patterns are matched against the line as if it ended after any of its characters, that is a
+     * pattern matching the beginning of a line is applied as soon as the beginning is read. Characters are matched once
+     * each block of output is split, including a line that is not terminated yet, such as a prompt waiting for an
+     * input. Reply is inserted right after the matching prefix and the rest of the line is matched after it, a reply
+     * finishing the line starts a new one, the same way as if output was read character by character.
+     *
+     * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+     */
+    private static class OutputPump implements ProcessIoEngine.Sink {
+
+        private final Execution<Process> runningProcess;
+        private final ProcessInteractionApplicator interaction;
+        private final OutputStream writer;
+        private final ProcessOutput output;
+        private final List<OutputListener> listeners;
+        private final List<ByteOutputListener> byteListeners;
+        private final String processName;
+        private final ProcessInteractionMatcher matcher;
+        private final SentenceImpl sentence;
+
+        // length of the longest prefix of current sentence that was already evaluated for reply and termination
+        private int evaluated;
+        // length of current sentence when it was matched for the last time
+        private int matched;
+        private boolean reachedEOF;
+
+        public OutputPump(Execution<Process> runningProcess, ProcessInteractionApplicator interaction,
+            OutputStream writer, ProcessOutput output, List<OutputListener> listeners,
+            List<ByteOutputListener> byteListeners, String processName) {
+            this.runningProcess = runningProcess;
+            this.interaction = interaction;
+            this.writer = writer;
+            this.output = output;
+            this.listeners = listeners;
+            this.byteListeners = byteListeners;
+            this.processName = processName;
+            this.matcher = interaction.matcher();
+            this.sentence = new SentenceImpl();
+            this.matched = -1;
+        }
+
+        @Override
+        public boolean reachedEOF() {
+            return reachedEOF;
+        }
+
+        @Override
+        public void bytes(byte[] data, int offset, int length) {
+            for (ByteOutputListener listener : byteListeners) {
+                try {
+                    listener.onBytes(data, offset, length);
+                } catch (RuntimeException e) {
+                    log.log(Level.WARNING, "Output listener of {0} failed: {1}", new Object[] {processName, e});
+                }
+            }
+        }
+
+        /**
+         * Processes a block of output.
+         *
+         * @param chars
+         *     output buffer
+         * @param offset
+         *     index of the first character in the buffer
+         * @param length
+         *     number of characters in the buffer
+         */
+        @Override
+        public void feed(char[] chars, int offset, int length) throws IOException {
+
+            int end = offset + length;
+            int lineStart = offset;
+
+            for (int i = offset; i < end; i++) {
+                char c = chars[i];
+                // adb command writes its output with ends of lines as "\\n"
+                // ignoring Windows conventions which recognize "\r\n" as the end of the line
+                if (c != '\r' && c != '\n') {
+                    continue;
+                }
+
+                sentence.append(chars, lineStart, i - lineStart);
+                lineStart = i + 1;
+
+                evaluate();
+                if (reachedEOF) {
+                    return;
+                }
+
+                sentence.append(c);
+                flush();
+            }
+
+            if (lineStart < end) {
+                sentence.append(chars, lineStart, end - lineStart);
+            }
+
+            evaluate();
+        }
+
+        /**
+         * Processes the last line of the output, if any
+         */
+        @Override
+        public void finish() {
+            if (!sentence.isEmpty()) {
+                if (log.isLoggable(Level.FINEST)) {
+                    log.log(Level.FINEST, "{0} outputs: {1}", new Object[] {processName, sentence});
+                }
+
+                add(sentence.toString());
+                print();
+            }
+        }
+
+        private void evaluate() throws IOException {
+
+            // match only prefixes that were not yet matched
+            int prefix;
+            while (!reachedEOF && evaluated < sentence.length()
+                && (prefix = matcher.matchPrefix(sentence, evaluated, sentence.length())) != -1) {
+
+                // characters read after the matching prefix follow the reply
+                String rest = sentence.subSequence(prefix, sentence.length()).toString();
+                sentence.truncate(prefix);
+
+                boolean shouldTerminate = matcher.terminates();
+                String answer = matcher.reply();
+                // sentence was not empty, reply
+                if (answer != null) {
+                    sentence.append(answer);
+                    // writer might be shared by standard and error output pumps
+                    synchronized (writer) {
+                        writer.flush();
+                        writer.write(answer.getBytes());
+                        writer.flush();
+                    }
+                }
+                if (shouldTerminate) {
+                    runningProcess.markAsFinished();
+                    runningProcess.terminate();
+                    reachedEOF = true;
+                }
+                evaluated = sentence.length();
+
+                // reply might have finished the line
+                if (sentence.isFinished()) {
+                    flush();
+                }
+                // output is not read after termination
+                if (!reachedEOF) {
+                    sentence.append(rest);
+                }
+            }
+            evaluated = sentence.length();
+            // matcher no longer holds the result of a complete match
+            matched = -1;
+
+            reachedEOF = runningProcess.isMarkedAsFinished();
+        }
+
+        private void flush() {
+            sentence.trim();
+            if (log.isLoggable(Level.FINEST)) {
+                log.log(Level.FINEST, "({0}): {1}", new Object[] {processName, sentence});
+            }
+
+            add(sentence.toString());
+            print();
+
+            sentence.reset();
+            evaluated = 0;
+            matched = -1;
+        }
+
+        private void add(String line) {
+            output.add(line);
+            for (OutputListener listener : listeners) {
+                try {
+                    listener.onLine(line);
+                } catch (RuntimeException e) {
+                    log.log(Level.WARNING, "Output listener of {0} failed: {1}", new Object[] {processName, e});
+                }
+            }
+        }
+
+        // propagate output/error to user
+        private void print() {
+            // reuse the result if sentence was not modified since it was matched
+            if (matched != sentence.length()) {
+                match();
+            }
+            if (matcher.printsToOut()) {
+                System.out.println(interaction.transform(sentence));
+            }
+            if (matcher.printsToErr()) {
+                System.err.println(interaction.transform(sentence));
+            }
+        }
+
+        private void match() {
+            matcher.match(sentence);
+            matched = sentence.length();
+        }
+    }
+
     /**
      * Applicator of ProcessInteraction to the currently running process
      *
@@ -225,46 +431,14 @@ class ConsumeProcessOutputTask extends Task<Execution<Process>, ProcessResult> {
             return interaction.textTypedIn();
         }
 
-        public String repliesTo(Sentence sentence) {
-            for (Map.Entry<Pattern, String> entry : interaction.replyMap().entrySet()) {
-                if (entry.getKey().matcher(sentence).matches()) {
-                    return entry.getValue();
-                }
-            }
-            return null;
-        }
-
-        public boolean shouldTerminate(Sentence sentence) {
-            for (Pattern p : interaction.terminatingOutput()) {
-                if (p.matcher(sentence).matches()) {
-                    return true;
-                }
-            }
-            return false;
-        }
-
-        public boolean shouldOutput(Sentence sentence) {
-            for (Pattern p : interaction.allowedOutput()) {
-                if (p.matcher(sentence).matches()) {
-                    return true;
-                }
-            }
-            return false;
+        public ProcessInteractionMatcher matcher() {
+            return ProcessInteractionMatcher.of(interaction);
         }
 
         public Sentence transform(Sentence original) {
             return transformer.transform(original);
         }
 
-        public boolean shouldOutputToErr(Sentence sentence) {
-            for (Pattern p : interaction.errorOutput()) {
-                if (p.matcher(sentence).matches()) {
-                    return true;
-                }
-            }
-            return false;
-        }
-
         public boolean requiresInputInteraction() {
             return !interaction.replyMap().isEmpty() || (interaction.textTypedIn() != null
                 && interaction.textTypedIn() != "");
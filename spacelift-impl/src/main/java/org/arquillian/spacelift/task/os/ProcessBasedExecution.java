@@ -23,11 +23,15 @@ import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.arquillian.spacelift.execution.CompletionListener;
 import org.arquillian.spacelift.execution.CountDownWatch;
 import org.arquillian.spacelift.execution.Execution;
 import org.arquillian.spacelift.execution.ExecutionCondition;
 import org.arquillian.spacelift.execution.ExecutionException;
+import org.arquillian.spacelift.execution.Executions;
+import org.arquillian.spacelift.execution.ObservableExecution;
 import org.arquillian.spacelift.execution.TimeoutExecutionException;
+import org.arquillian.spacelift.execution.impl.CompletionListeners;
 import org.arquillian.spacelift.execution.impl.ShutdownHooks;
 
 /**
@@ -35,25 +39,36 @@ import org.arquillian.spacelift.execution.impl.ShutdownHooks;
  *
  * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
  */
-public class ProcessBasedExecution<RESULT> implements Execution<RESULT> {
+public class ProcessBasedExecution<RESULT> implements ObservableExecution<RESULT> {
     private static final Logger log = Logger.getLogger(ProcessBasedExecution.class.getName());
 
     private final Execution<RESULT> processFutureExecution;
     private final ProcessReference processReference;
     private final String processName;
     private final List<Integer> allowedExitCodes;
+    private final CompletionListeners<RESULT> listeners;
 
     private boolean shouldBeFinished;
 
     /**
      * Creates a process execution, add a name to the process
      */
-    public ProcessBasedExecution(Execution<RESULT> processFutureExecution, ProcessReference processReference,
+    public ProcessBasedExecution(Execution<RESULT> processFutureExecution, final ProcessReference processReference,
         String processName, List<Integer> allowedExitCodes) {
         this.processFutureExecution = processFutureExecution;
         this.processReference = processReference;
         this.processName = processName;
         this.allowedExitCodes = new ArrayList<Integer>(allowedExitCodes);
+        this.listeners = new CompletionListeners<RESULT>();
+
+        // notify once the process has exited and its output was consumed, so listeners can get the result without
+        // blocking; this also covers a process that was not started at all
+        Executions.onComplete(processFutureExecution, new CompletionListener<RESULT>() {
+            @Override
+            public void completed(Execution<RESULT> execution) {
+                listeners.complete(ProcessBasedExecution.this);
+            }
+        });
     }
 
     @Override
@@ -64,15 +79,7 @@ public class ProcessBasedExecution<RESULT> implements Execution<RESULT> {
             return true;
         }
 
-        try {
-            if (!processReference.isInitialized()) {
-                return false;
-            }
-            processReference.getProcess().exitValue();
-            return true;
-        } catch (IllegalThreadStateException e) {
-            return false;
-        }
+        return processReference.hasExited();
     }
 
     @Override
@@ -153,6 +160,12 @@ public class ProcessBasedExecution<RESULT> implements Execution<RESULT> {
         return processFutureExecution.awaitAtMost(timeout, unit);
     }
 
+    @Override
+    public ObservableExecution<RESULT> onComplete(CompletionListener<RESULT> listener) {
+        listeners.add(this, listener);
+        return this;
+    }
+
     @Override
     public Execution<RESULT> reexecuteEvery(long step, TimeUnit unit) {
         processFutureExecution.reexecuteEvery(step, unit);
@@ -0,0 +1,598 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.os;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Consumes output streams of all processes spawned by Spacelift.
+ * <p>
+ * Streams are polled and only data that is already available is read, so a thread is never blocked by a stream. If JVM
+ * supports virtual threads, each stream is polled by its own virtual thread. Otherwise, a small fixed set of pump
+ * threads is shared by all processes. Blocking reads are avoided even for virtual threads, as a virtual thread blocked
+ * in a read of a process stream occupies its carrier thread.
+ * <p>
+ * Pumps only read. Output is passed to {@link Sink}s by the thread awaiting the {@link Session} of the process, so a
+ * slow sink delays only its own process. At most {@link #MAX_PENDING_BLOCKS} blocks of a stream wait to be passed to
+ * its sink, the stream is not read until the sink catches up.
+ * <p>
+ * Once the process exits, output that is not available without blocking is read by a separate drain thread for at most
+ * {@link #DRAIN_TIMEOUT_MILLIS} milliseconds. Stream might stay open for much longer if it is shared with processes
+ * spawned by the process, such output is not consumed.
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+final class ProcessIoEngine {
+
+    private static final Logger log = Logger.getLogger(ProcessIoEngine.class.getName());
+
+    private static final int BUFFER_SIZE = 8192;
+
+    static final int MAX_PENDING_BLOCKS = 32;
+
+    static final long DRAIN_TIMEOUT_MILLIS = 1000;
+
+    // maximal number of buffers read from a single stream before pump moves to the next one
+    private static final int READS_PER_POLL = 8;
+
+    // poller sleeps for a short time if streams were recently active, so it keeps pace with processes that write a lot
+    // of output, and backs off to the longer sleep if they stay idle
+    private static final long MIN_IDLE_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long MAX_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long ACTIVE_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    // JDK drains output of a process once it exits, so remaining output usually becomes available shortly after exit
+    private static final long EXIT_GRACE_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private static final ProcessIoEngine INSTANCE = new ProcessIoEngine(virtualThreadFactory(),
+        Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())));
+
+    private final ThreadFactory virtualThreads;
+    private final Pump[] pumps;
+    private final ExecutorService drains;
+
+    ProcessIoEngine(ThreadFactory virtualThreads, int pumpCount) {
+        this.virtualThreads = virtualThreads;
+        this.pumps = new Pump[virtualThreads != null ? 0 : pumpCount];
+        for (int i = 0; i < pumps.length; i++) {
+            pumps[i] = new Pump();
+            Thread thread = new Thread(pumps[i], "spacelift-io-" + (i + 1));
+            thread.setDaemon(true);
+            pumps[i].thread = thread;
+            thread.start();
+        }
+        this.drains = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "spacelift-io-drain-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Returns engine shared by all processes
+     */
+    static ProcessIoEngine getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns {@code true} if streams are read by virtual threads rather than by shared pump threads
+     */
+    boolean usesVirtualThreads() {
+        return virtualThreads != null;
+    }
+
+    /**
+     * Starts a session consuming streams of {@code process}
+     *
+     * @param process
+     *     the process
+     *
+     * @return session to add streams to
+     */
+    Session session(Process process) {
+        return new Session(process);
+    }
+
+    private void schedule(Consumption consumption) {
+        if (virtualThreads != null) {
+            virtualThreads.newThread(consumption).start();
+            return;
+        }
+
+        Pump pump = pumps[0];
+        for (Pump candidate : pumps) {
+            if (candidate.load.get() < pump.load.get()) {
+                pump = candidate;
+            }
+        }
+        pump.add(consumption);
+    }
+
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "spacelift-io-", 1L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (Exception e) {
+            // JVM without virtual threads
+            return null;
+        }
+    }
+
+    /**
+     * Consumer of decoded process output. Sink is called only by the thread awaiting its session.
+     */
+    interface Sink {
+
+        /**
+         * Receives a block of output as it was read, before it is decoded
+         *
+         * @param data
+         *     output buffer
+         * @param offset
+         *     index of the first byte in the buffer
+         * @param length
+         *     number of bytes in the buffer
+         */
+        void bytes(byte[] data, int offset, int length);
+
+        /**
+         * Processes a block of output.
+         *
+         * @param chars
+         *     output buffer
+         * @param offset
+         *     index of the first character in the buffer
+         * @param length
+         *     number of characters in the buffer
+         */
+        void feed(char[] chars, int offset, int length) throws IOException;
+
+        /**
+         * Returns {@code true} if no more output should be consumed
+         */
+        boolean reachedEOF();
+
+        /**
+         * Called once the output was consumed
+         */
+        void finish();
+    }
+
+    /**
+     * Consumption of all streams of a single process. Streams are read by the engine, while the output is passed to sinks
+     * by the thread calling {@link #await()}.
+     */
+    final class Session {
+
+        private final Process process;
+        private final BlockingQueue<Block> blocks = new LinkedBlockingQueue<Block>();
+        private final List<Consumption> consumptions = new ArrayList<Consumption>();
+
+        private Session(Process process) {
+            this.process = process;
+        }
+
+        /**
+         * Starts consuming {@code stream}. Decoded output is passed to {@code sink} until the end of the stream or until
+         * sink reports that it does not want more output.
+         *
+         * @param stream
+         *     output or error stream of the process
+         * @param sink
+         *     consumer of the output
+         */
+        void consume(InputStream stream, Sink sink) {
+            Consumption consumption = new Consumption(this, stream, sink);
+            consumptions.add(consumption);
+            schedule(consumption);
+        }
+
+        /**
+         * Passes output to sinks until all streams are consumed
+         *
+         * @throws RuntimeException
+         *     if any of the sinks failed
+         */
+        void await() throws InterruptedException {
+            while (true) {
+                long deadline = Long.MAX_VALUE;
+                boolean complete = true;
+                for (Consumption consumption : consumptions) {
+                    if (!consumption.complete) {
+                        complete = false;
+                        deadline = Math.min(deadline, consumption.abandonAt());
+                    }
+                }
+                if (complete) {
+                    break;
+                }
+
+                Block block;
+                if (deadline == Long.MAX_VALUE) {
+                    block = blocks.take();
+                } else {
+                    block = blocks.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                }
+
+                if (block != null) {
+                    block.consumption.deliver(block);
+                } else {
+                    for (Consumption consumption : consumptions) {
+                        consumption.abandonIfDrainExpired();
+                    }
+                }
+            }
+
+            for (Consumption consumption : consumptions) {
+                if (consumption.failure != null) {
+                    throw consumption.failure;
+                }
+            }
+        }
+
+        /**
+         * Stops consuming streams, output that was not yet read is ignored
+         */
+        void cancel() {
+            for (Consumption consumption : consumptions) {
+                consumption.stop();
+            }
+        }
+
+        private void post(Block block) {
+            blocks.add(block);
+        }
+    }
+
+    /**
+     * Output read from a stream, or a change of the state of the stream
+     */
+    private static final class Block {
+
+        static final int DATA = 0;
+        static final int END = 1;
+        static final int ERROR = 2;
+        static final int DRAINING = 3;
+
+        final Consumption consumption;
+        final int type;
+        final byte[] data;
+        final int length;
+
+        Block(Consumption consumption, int type, byte[] data, int length) {
+            this.consumption = consumption;
+            this.type = type;
+            this.data = data;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Consumption of a single stream. Stream is read by a single thread at a time, a pump, a virtual thread or a drain
+     * thread, while decoding and sink are called by the thread awaiting the session.
+     */
+    private final class Consumption implements Runnable {
+
+        private final Session session;
+        private final InputStream stream;
+        private final Sink sink;
+        private final AtomicInteger pending = new AtomicInteger();
+
+        // state of the reading thread
+        private long exitedAt = -1;
+        private volatile boolean stopped;
+        private volatile long drainDeadline;
+
+        // state of the delivering thread
+        private final ByteBuffer bytes;
+        private final CharBuffer chars;
+        private final CharsetDecoder decoder;
+        private boolean complete;
+        private RuntimeException failure;
+
+        Consumption(Session session, InputStream stream, Sink sink) {
+            this.session = session;
+            this.stream = stream;
+            this.sink = sink;
+            this.bytes = ByteBuffer.allocate(2 * BUFFER_SIZE);
+            this.chars = CharBuffer.allocate(BUFFER_SIZE);
+            this.decoder = Charset.defaultCharset().newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+        /**
+         * Polls the stream until it is consumed, sleeping in current thread while no output is available
+         */
+        @Override
+        public void run() {
+            Backoff backoff = new Backoff();
+            int read;
+            while ((read = poll()) != -1) {
+                backoff.progress(read > 0);
+            }
+        }
+
+        /**
+         * Reads output that is available without blocking.
+         *
+         * @return number of bytes read, {@code -1} if the stream is no longer polled
+         */
+        int poll() {
+            if (stopped) {
+                return -1;
+            }
+            try {
+                int available = stream.available();
+                if (available <= 0) {
+                    if (!hasExited()) {
+                        return 0;
+                    }
+                    long now = System.nanoTime();
+                    if (exitedAt == -1) {
+                        exitedAt = now;
+                    }
+                    if (now - exitedAt < EXIT_GRACE_NANOS) {
+                        return 0;
+                    }
+                    // end of the stream can be detected only by a read that might block
+                    drain();
+                    return -1;
+                }
+
+                int total = 0;
+                for (int i = 0; i < READS_PER_POLL && available > 0 && !stopped; i++) {
+                    if (pending.get() >= MAX_PENDING_BLOCKS) {
+                        break;
+                    }
+                    byte[] data = new byte[Math.min(available, BUFFER_SIZE)];
+                    int read = stream.read(data, 0, data.length);
+                    if (read == -1) {
+                        session.post(new Block(this, Block.END, null, 0));
+                        return -1;
+                    }
+                    post(data, read);
+                    total += read;
+                    available = stream.available();
+                }
+                return total;
+            } catch (IOException e) {
+                session.post(new Block(this, Block.ERROR, null, 0));
+                return -1;
+            }
+        }
+
+        private void drain() {
+            drainDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DRAIN_TIMEOUT_MILLIS);
+            // wake up the delivering thread, so it knows when to give up
+            session.post(new Block(this, Block.DRAINING, null, 0));
+            drains.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        byte[] data = new byte[BUFFER_SIZE];
+                        int read;
+                        while (!stopped && (read = stream.read(data, 0, data.length)) != -1) {
+                            post(data, read);
+                            data = new byte[BUFFER_SIZE];
+                        }
+                        session.post(new Block(Consumption.this, Block.END, null, 0));
+                    } catch (IOException e) {
+                        session.post(new Block(Consumption.this, Block.ERROR, null, 0));
+                    }
+                }
+            });
+        }
+
+        private void post(byte[] data, int length) {
+            pending.incrementAndGet();
+            session.post(new Block(this, Block.DATA, data, length));
+        }
+
+        private boolean hasExited() {
+            try {
+                session.process.exitValue();
+                return true;
+            } catch (IllegalThreadStateException e) {
+                return false;
+            }
+        }
+
+        void stop() {
+            stopped = true;
+            complete = true;
+        }
+
+        long abandonAt() {
+            long deadline = drainDeadline;
+            return deadline == 0 ? Long.MAX_VALUE : deadline;
+        }
+
+        void abandonIfDrainExpired() {
+            if (!complete && drainDeadline != 0 && System.nanoTime() - drainDeadline >= 0) {
+                log.log(Level.FINE, "Output stream of a process is still open {0} ms after it exited, it is probably "
+                    + "shared with a process it spawned, rest of the output is ignored", DRAIN_TIMEOUT_MILLIS);
+                finish(true);
+            }
+        }
+
+        /**
+         * Passes a block to the sink, called by the thread awaiting the session
+         */
+        void deliver(Block block) {
+            if (block.type == Block.DATA) {
+                pending.decrementAndGet();
+            }
+            if (complete) {
+                return;
+            }
+            try {
+                switch (block.type) {
+                    case Block.DATA:
+                        sink.bytes(block.data, 0, block.length);
+                        bytes.put(block.data, 0, block.length);
+                        decode(false);
+                        if (sink.reachedEOF()) {
+                            finish(true);
+                        }
+                        break;
+                    case Block.END:
+                        decode(true);
+                        finish(true);
+                        break;
+                    case Block.ERROR:
+                        finish(false);
+                        break;
+                    default:
+                        // draining, deadline is picked up by the session
+                }
+            } catch (IOException e) {
+                finish(false);
+            } catch (RuntimeException e) {
+                log.log(Level.FINE, "Consumption of process output failed", e);
+                failure = e;
+                stop();
+            }
+        }
+
+        private void decode(boolean endOfInput) throws IOException {
+            bytes.flip();
+            CoderResult result;
+            do {
+                result = decoder.decode(bytes, chars, endOfInput);
+                if (endOfInput && result.isUnderflow()) {
+                    decoder.flush(chars);
+                }
+                chars.flip();
+                if (chars.hasRemaining()) {
+                    sink.feed(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+                }
+                chars.clear();
+            } while (result.isOverflow() && !sink.reachedEOF());
+            bytes.compact();
+        }
+
+        private void finish(boolean notify) {
+            stop();
+            if (notify) {
+                try {
+                    sink.finish();
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Polls streams assigned to a single pump thread
+     */
+    private static final class Pump implements Runnable {
+
+        private final BlockingQueue<Consumption> incoming = new LinkedBlockingQueue<Consumption>();
+        private final List<Consumption> consumptions = new ArrayList<Consumption>();
+        private final AtomicInteger load = new AtomicInteger();
+        private Thread thread;
+
+        void add(Consumption consumption) {
+            load.incrementAndGet();
+            incoming.add(consumption);
+            LockSupport.unpark(thread);
+        }
+
+        @Override
+        public void run() {
+            Backoff backoff = new Backoff();
+            while (true) {
+                try {
+                    if (consumptions.isEmpty()) {
+                        consumptions.add(incoming.take());
+                    }
+                    boolean progress = incoming.drainTo(consumptions) > 0;
+
+                    for (Iterator<Consumption> i = consumptions.iterator(); i.hasNext();) {
+                        int read = i.next().poll();
+                        if (read == -1) {
+                            i.remove();
+                            load.decrementAndGet();
+                        }
+                        progress |= read != 0;
+                    }
+
+                    backoff.progress(progress);
+                } catch (InterruptedException e) {
+                    log.log(Level.WARNING, "Process output pump {0} was interrupted, output of {1} processes will not be "
+                        + "consumed", new Object[] {Thread.currentThread().getName(), consumptions.size()});
+                    return;
+                } catch (Throwable t) {
+                    // keep servicing other processes
+                    log.log(Level.WARNING, "Process output pump failed", t);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sleeps between polls that did not read anything
+     */
+    private static final class Backoff {
+
+        private long idle = MIN_IDLE_NANOS;
+        private long lastProgress = System.nanoTime();
+
+        void progress(boolean progress) {
+            if (progress) {
+                idle = MIN_IDLE_NANOS;
+                lastProgress = System.nanoTime();
+                return;
+            }
+
+            LockSupport.parkNanos(this, idle);
+            if (System.nanoTime() - lastProgress > ACTIVE_NANOS) {
+                idle = Math.min(idle * 2, MAX_IDLE_NANOS);
+            }
+        }
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.os;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.arquillian.spacelift.execution.ExecutionException;
+import org.arquillian.spacelift.util.CharsetUtil;
+
+/**
+ * Storage of lines written by a process.
+ * <p>
+ * By default, all lines are kept in memory. Storage can be bounded to keep only last lines, limited either by number of
+ * lines or by number of characters, counting one byte per character. Complete output can be spilled to a file, in such
+ * case {@link #lines()} reads it back lazily.
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+class ProcessOutput {
+
+    private static final Logger log = Logger.getLogger(ProcessOutput.class.getName());
+
+    private static final Charset CHARSET = CharsetUtil.getUtf8OrDefault();
+
+    private static final int SPILL_BUFFER_SIZE = 65536;
+
+    private final int maxLines;
+    private final long maxBytes;
+    private final File spillFile;
+
+    private final List<String> all;
+    private final Deque<String> tail;
+    private long tailBytes;
+
+    private Writer spill;
+
+    /**
+     * Creates a storage that keeps all lines in memory
+     */
+    public ProcessOutput() {
+        this(0, 0, null);
+    }
+
+    /**
+     * Creates a storage of process output
+     *
+     * @param maxLines
+     *     maximal number of lines kept in memory, {@code 0} or less means no limit
+     * @param maxBytes
+     *     maximal number of characters kept in memory, {@code 0} or less means no limit
+     * @param spillFile
+     *     file where complete output is written, might be {@code null}
+     *
+     * @throws ExecutionException
+     *     if spill file cannot be created
+     */
+    public ProcessOutput(int maxLines, long maxBytes, File spillFile) throws ExecutionException {
+        this.maxLines = maxLines;
+        this.maxBytes = maxBytes;
+        this.spillFile = spillFile;
+
+        if (maxLines > 0 || maxBytes > 0) {
+            this.all = null;
+            this.tail = new ArrayDeque<String>(maxLines > 0 ? maxLines : 16);
+        } else {
+            this.all = new ArrayList<String>();
+            this.tail = null;
+        }
+
+        if (spillFile != null) {
+            try {
+                this.spill = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(spillFile), CHARSET),
+                    SPILL_BUFFER_SIZE);
+            } catch (IOException e) {
+                throw new ExecutionException(e, "Unable to create file {0} to store process output",
+                    spillFile.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Adds a line of output
+     */
+    public void add(String line) {
+
+        if (spill != null) {
+            try {
+                spill.write(line);
+                spill.write('\n');
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Unable to write process output to {0}, further output will not be stored: {1}",
+                    new Object[] {spillFile.getAbsolutePath(), e.getMessage()});
+                close();
+            }
+        }
+
+        if (all != null) {
+            all.add(line);
+            return;
+        }
+
+        tail.addLast(line);
+        tailBytes += size(line);
+        while ((maxLines > 0 && tail.size() > maxLines) || (maxBytes > 0 && tailBytes > maxBytes && tail.size() > 1)) {
+            tailBytes -= size(tail.removeFirst());
+        }
+    }
+
+    /**
+     * Flushes and closes spill file, if any. Output added afterwards is kept only in memory.
+     */
+    public void close() {
+        if (spill != null) {
+            try {
+                spill.close();
+            } catch (IOException ignore) {
+            } finally {
+                spill = null;
+            }
+        }
+    }
+
+    /**
+     * Returns complete output if it was spilled to a file or kept in memory, last lines of the output otherwise
+     */
+    public List<String> lines() {
+        if (spillFile != null) {
+            return new SpilledLines(spillFile);
+        }
+        if (all != null) {
+            return all;
+        }
+        return new ArrayList<String>(tail);
+    }
+
+    /**
+     * Returns at most {@code count} last lines kept in memory
+     */
+    public List<String> lastLines(int count) {
+        List<String> lines = all != null ? all : new ArrayList<String>(tail);
+        int from = lines.size() > count ? lines.size() - count : 0;
+        return new ArrayList<String>(lines.subList(from, lines.size()));
+    }
+
+    private static long size(String line) {
+        // count line terminator as well
+        return line.length() + 1;
+    }
+
+    /**
+     * Lines stored in a file. Offsets of the lines are indexed on first random access, iteration streams the file.
+     */
+    private static class SpilledLines extends AbstractList<String> {
+
+        private final File file;
+        private long[] offsets;
+        private int size = -1;
+
+        SpilledLines(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public String get(int index) {
+            index();
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+
+            RandomAccessFile raf = null;
+            try {
+                raf = new RandomAccessFile(file, "r");
+                // do not include line terminator
+                byte[] bytes = new byte[(int) (offsets[index + 1] - offsets[index] - 1)];
+                raf.seek(offsets[index]);
+                raf.readFully(bytes);
+                return new String(bytes, CHARSET);
+            } catch (IOException e) {
+                throw new ExecutionException(e, "Unable to read process output from {0}", file.getAbsolutePath());
+            } finally {
+                if (raf != null) {
+                    try {
+                        raf.close();
+                    } catch (IOException ignore) {
+                    }
+                }
+            }
+        }
+
+        @Override
+        public int size() {
+            index();
+            return size;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            try {
+                final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+                    CHARSET), SPILL_BUFFER_SIZE);
+
+                return new Iterator<String>() {
+                    private String next = readLine();
+
+                    @Override
+                    public boolean hasNext() {
+                        return next != null;
+                    }
+
+                    @Override
+                    public String next() {
+                        if (next == null) {
+                            throw new NoSuchElementException();
+                        }
+                        String current = next;
+                        next = readLine();
+                        return current;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException("Process output cannot be modified");
+                    }
+
+                    private String readLine() {
+                        try {
+                            String line = reader.readLine();
+                            if (line == null) {
+                                reader.close();
+                            }
+                            return line;
+                        } catch (IOException e) {
+                            throw new ExecutionException(e, "Unable to read process output from {0}",
+                                file.getAbsolutePath());
+                        }
+                    }
+                };
+            } catch (IOException e) {
+                throw new ExecutionException(e, "Unable to read process output from {0}", file.getAbsolutePath());
+            }
+        }
+
+        // finds offsets of all lines, offsets[size] points after the end of the last line
+        private void index() {
+            if (offsets != null) {
+                return;
+            }
+
+            long[] found = new long[1024];
+            int count = 0;
+            long position = 0;
+            InputStream in = null;
+            try {
+                in = new FileInputStream(file);
+                byte[] buffer = new byte[SPILL_BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    for (int i = 0; i < read; i++) {
+                        if (buffer[i] == '\n') {
+                            if (count + 1 >= found.length) {
+                                found = Arrays.copyOf(found, found.length * 2);
+                            }
+                            found[++count] = position + i + 1;
+                        }
+                    }
+                    position += read;
+                }
+            } catch (IOException e) {
+                throw new ExecutionException(e, "Unable to read process output from {0}", file.getAbsolutePath());
+            } finally {
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException ignore) {
+                    }
+                }
+            }
+
+            this.offsets = found;
+            this.size = count;
+        }
+    }
+}
@@ -56,4 +56,19 @@ class ProcessReference {
         }
         this.process = process;
     }
+
+    /**
+     * Checks whether referenced process has exited, without waiting for it
+     */
+    public boolean hasExited() {
+        if (!isInitialized()) {
+            return false;
+        }
+        try {
+            process.exitValue();
+            return true;
+        } catch (IllegalThreadStateException e) {
+            return false;
+        }
+    }
 }
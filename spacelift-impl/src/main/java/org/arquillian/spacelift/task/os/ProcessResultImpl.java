@@ -16,24 +16,29 @@
  */
 package org.arquillian.spacelift.task.os;
 
+import java.util.Collections;
 import java.util.List;
 import org.arquillian.spacelift.process.ProcessResult;
+import org.arquillian.spacelift.process.SeparatedProcessResult;
 
 /**
  * Default implementation of {@link ProcessResult
  *
  * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
  */
-class ProcessResultImpl implements ProcessResult {
+class ProcessResultImpl implements SeparatedProcessResult {
 
     private final Process process;
     private final String processName;
-    private final List<String> output;
+    private final ProcessOutput output;
+    private final ProcessOutput errorOutput;
 
-    public ProcessResultImpl(final Process process, final String processName, final List<String> output) {
+    public ProcessResultImpl(final Process process, final String processName, final ProcessOutput output,
+        final ProcessOutput errorOutput) {
         this.processName = processName;
         this.process = process;
         this.output = output;
+        this.errorOutput = errorOutput;
     }
 
     @Override
@@ -43,7 +48,32 @@ class ProcessResultImpl implements ProcessResult {
 
     @Override
     public List<String> output() {
-        return output;
+        return output.lines();
+    }
+
+    @Override
+    public List<String> errorOutput() {
+        if (errorOutput == null) {
+            return Collections.emptyList();
+        }
+        return errorOutput.lines();
+    }
+
+    /**
+     * Returns at most {@code count} last lines of the output, without reading output that was spilled to a file
+     */
+    List<String> lastLines(int count) {
+        return output.lastLines(count);
+    }
+
+    /**
+     * Returns at most {@code count} last lines of the error output, if it was consumed separately
+     */
+    List<String> lastErrorLines(int count) {
+        if (errorOutput == null) {
+            return Collections.emptyList();
+        }
+        return errorOutput.lastLines(count);
     }
 
     @Override
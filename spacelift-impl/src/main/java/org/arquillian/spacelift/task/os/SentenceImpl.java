@@ -46,6 +46,23 @@ class SentenceImpl implements Sentence {
         return this;
     }
 
+    /**
+     * Appends a range of characters to sentence
+     *
+     * @param chars
+     *     characters
+     * @param offset
+     *     index of the first character to be appended
+     * @param length
+     *     number of characters to be appended
+     *
+     * @return updated sentence
+     */
+    public Sentence append(char[] chars, int offset, int length) {
+        sb.append(chars, offset, length);
+        return this;
+    }
+
     /**
      * Appends a character to sentence
      *
@@ -105,6 +122,16 @@ class SentenceImpl implements Sentence {
         return this;
     }
 
+    /**
+     * Keeps only first {@code length} characters of the sentence
+     *
+     * @return updated sentence
+     */
+    Sentence truncate(int length) {
+        sb.setLength(length);
+        return this;
+    }
+
     /**
      * Clears the sentence
      */
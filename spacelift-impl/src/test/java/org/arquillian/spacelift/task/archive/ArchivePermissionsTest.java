@@ -0,0 +1,302 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.archive;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.lang3.SystemUtils;
+import org.arquillian.spacelift.Spacelift;
+import org.arquillian.spacelift.execution.ExecutionException;
+import org.arquillian.spacelift.task.os.CommandTool;
+import org.arquillian.spacelift.task.net.TestHttpServer;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.is;
+
+public class ArchivePermissionsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void posixFileSystem() {
+        Assume.assumeThat(SystemUtils.IS_OS_UNIX, is(true));
+    }
+
+    @Test
+    public void tarModesIncludeGroupAndOthers() throws Exception {
+        File archive = createTarGz();
+
+        File extracted = Spacelift.task(archive, UntarTool.class)
+            .toDir(folder.newFolder("extracted"))
+            .execute().await();
+
+        Assert.assertThat(permissions(new File(extracted, "dir/run.sh")), is("rwxr-x---"));
+        Assert.assertThat(permissions(new File(extracted, "dir/file.txt")), is("rw----r--"));
+    }
+
+    @Test
+    public void tarLinks() throws Exception {
+        File archive = createTarGz();
+
+        File extracted = Spacelift.task(archive, UntarTool.class)
+            .toDir(folder.newFolder("extracted"))
+            .execute().await();
+
+        assertLinks(extracted);
+    }
+
+    @Test
+    public void pipelinedTarLinks() throws Exception {
+        File archive = createTarGz();
+
+        File extracted = Spacelift.task(archive, UntarTool.class)
+            .threads(3)
+            .toDir(folder.newFolder("extracted"))
+            .execute().await();
+
+        assertLinks(extracted);
+        Assert.assertThat(permissions(new File(extracted, "dir/run.sh")), is("rwxr-x---"));
+    }
+
+    @Test
+    public void zipModesAndSymbolicLinks() throws Exception {
+        File archive = folder.newFile("archive.zip");
+        ZipArchiveOutputStream zip = new ZipArchiveOutputStream(archive);
+        try {
+            putZipEntry(zip, "dir/run.sh", 0100750, "echo");
+            putZipEntry(zip, "dir/link.sh", 0120777, "run.sh");
+        } finally {
+            zip.close();
+        }
+
+        File extracted = Spacelift.task(archive, UnzipTool.class)
+            .toDir(folder.newFolder("extracted"))
+            .execute().await();
+
+        File link = new File(extracted, "dir/link.sh");
+        Assert.assertThat(PosixFiles.isSymbolicLink(link), is(true));
+        Assert.assertThat(list(link).endsWith(" -> run.sh"), is(true));
+        Assert.assertThat(permissions(new File(extracted, "dir/run.sh")), is("rwxr-x---"));
+    }
+
+    @Test
+    public void symbolicLinksOutsideDestinationAreNotFollowed() throws Exception {
+        File outside = folder.newFolder("outside");
+        File archive = folder.newFile("malicious.tgz");
+        TarArchiveOutputStream tar = new TarArchiveOutputStream(new GzipCompressorOutputStream(new FileOutputStream(
+            archive)));
+        try {
+            putTarLink(tar, "lib", TarConstants.LF_SYMLINK, outside.getAbsolutePath());
+            putTarEntry(tar, "lib/evil.sh", 0100755, "absolute");
+            putTarLink(tar, "dir/up", TarConstants.LF_SYMLINK, "../../outside");
+            putTarEntry(tar, "dir/up/evil.sh", 0100755, "relative");
+        } finally {
+            tar.close();
+        }
+
+        for (int threads : new int[] {1, 3}) {
+            File extracted = Spacelift.task(archive, UntarTool.class)
+                .threads(threads)
+                .toDir(folder.newFolder("extracted" + threads))
+                .execute().await();
+
+            Assert.assertThat(outside.list().length, is(0));
+            Assert.assertThat(PosixFiles.isSymbolicLink(new File(extracted, "lib")), is(false));
+            Assert.assertThat(PosixFiles.isSymbolicLink(new File(extracted, "dir/up")), is(false));
+            Assert.assertThat(new String(TestHttpServer.contentOf(new File(extracted, "lib/evil.sh")), "UTF-8"),
+                is("absolute"));
+        }
+    }
+
+    @Test
+    public void zipSymbolicLinkOutsideDestinationIsSkipped() throws Exception {
+        File archive = folder.newFile("malicious.zip");
+        ZipArchiveOutputStream zip = new ZipArchiveOutputStream(archive);
+        try {
+            putZipEntry(zip, "dir/passwd", 0120777, "../../../../../../etc/passwd");
+        } finally {
+            zip.close();
+        }
+
+        File extracted = Spacelift.task(archive, UnzipTool.class)
+            .toDir(folder.newFolder("extracted"))
+            .execute().await();
+
+        File link = new File(extracted, "dir/passwd");
+        Assert.assertThat(link.exists() || PosixFiles.isSymbolicLink(link), is(false));
+    }
+
+    @Test
+    public void entryOutsideDestinationFails() throws Exception {
+        File archive = folder.newFile("malicious.tgz");
+        TarArchiveOutputStream tar = new TarArchiveOutputStream(new GzipCompressorOutputStream(new FileOutputStream(
+            archive)));
+        try {
+            putTarEntry(tar, "../evil.sh", 0100755, "escaped");
+        } finally {
+            tar.close();
+        }
+
+        try {
+            Spacelift.task(archive, UntarTool.class)
+                .toDir(folder.newFolder("extracted"))
+                .execute().await();
+            Assert.fail("Extraction of an entry outside of destination should fail");
+        } catch (ExecutionException e) {
+            Assert.assertThat(new File(folder.getRoot(), "evil.sh").exists(), is(false));
+        }
+    }
+
+    @Test
+    public void hardLinkOutsideDestinationFails() throws Exception {
+        File outside = folder.newFile("secret.txt");
+        File archive = folder.newFile("malicious.tgz");
+        TarArchiveOutputStream tar = new TarArchiveOutputStream(new GzipCompressorOutputStream(new FileOutputStream(
+            archive)));
+        try {
+            putTarLink(tar, "secret.txt", TarConstants.LF_LINK, "../secret.txt");
+        } finally {
+            tar.close();
+        }
+
+        File extracted = folder.newFolder("extracted");
+        try {
+            Spacelift.task(archive, UntarTool.class)
+                .toDir(extracted)
+                .execute().await();
+            Assert.fail("Hard link to a file outside of destination should fail");
+        } catch (ExecutionException e) {
+            Assert.assertThat(new File(extracted, "secret.txt").exists(), is(false));
+            Assert.assertThat(outside.exists(), is(true));
+        }
+    }
+
+    @Test
+    public void existingSymbolicLinkOutsideDestinationIsNotWrittenThrough() throws Exception {
+        File outside = folder.newFolder("outside");
+        File extracted = folder.newFolder("extracted");
+        Assert.assertThat(PosixFiles.createSymbolicLink(new File(extracted, "lib"), outside.getAbsolutePath()),
+            is(true));
+
+        File archive = folder.newFile("archive.tgz");
+        TarArchiveOutputStream tar = new TarArchiveOutputStream(new GzipCompressorOutputStream(new FileOutputStream(
+            archive)));
+        try {
+            putTarEntry(tar, "lib/evil.sh", 0100755, "escaped");
+        } finally {
+            tar.close();
+        }
+
+        try {
+            Spacelift.task(archive, UntarTool.class)
+                .toDir(extracted)
+                .execute().await();
+            Assert.fail("Extraction through a symbolic link outside of destination should fail");
+        } catch (ExecutionException e) {
+            Assert.assertThat(outside.list().length, is(0));
+        }
+    }
+
+    private File createTarGz() throws IOException {
+        File archive = folder.newFile("archive.tgz");
+        TarArchiveOutputStream tar = new TarArchiveOutputStream(new GzipCompressorOutputStream(new FileOutputStream(
+            archive)));
+        try {
+            putTarEntry(tar, "dir/run.sh", 0100750, "echo");
+            putTarEntry(tar, "dir/file.txt", 0100604, "content");
+
+            putTarLink(tar, "dir/link.txt", TarConstants.LF_SYMLINK, "file.txt");
+            putTarLink(tar, "dir/hard.txt", TarConstants.LF_LINK, "dir/file.txt");
+        } finally {
+            tar.close();
+        }
+        return archive;
+    }
+
+    private static void putTarEntry(TarArchiveOutputStream tar, String name, int mode, String content)
+        throws IOException {
+        byte[] data = content.getBytes("UTF-8");
+        TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setMode(mode);
+        entry.setSize(data.length);
+        tar.putArchiveEntry(entry);
+        tar.write(data);
+        tar.closeArchiveEntry();
+    }
+
+    private static void putTarLink(TarArchiveOutputStream tar, String name, byte type, String linkName)
+        throws IOException {
+        TarArchiveEntry entry = new TarArchiveEntry(name, type);
+        entry.setLinkName(linkName);
+        tar.putArchiveEntry(entry);
+        tar.closeArchiveEntry();
+    }
+
+    private static void putZipEntry(ZipArchiveOutputStream zip, String name, int mode, String content)
+        throws IOException {
+        ZipArchiveEntry entry = new ZipArchiveEntry(name);
+        entry.setUnixMode(mode);
+        zip.putArchiveEntry(entry);
+        zip.write(content.getBytes("UTF-8"));
+        zip.closeArchiveEntry();
+    }
+
+    private static void assertLinks(File extracted) throws IOException {
+        File file = new File(extracted, "dir/file.txt");
+        File symbolicLink = new File(extracted, "dir/link.txt");
+        File hardLink = new File(extracted, "dir/hard.txt");
+
+        Assert.assertThat(PosixFiles.isSymbolicLink(symbolicLink), is(true));
+        Assert.assertThat(list(symbolicLink).endsWith(" -> file.txt"), is(true));
+        Assert.assertThat(PosixFiles.isSymbolicLink(hardLink), is(false));
+        Assert.assertThat(inode(hardLink), is(inode(file)));
+        Assert.assertThat(new String(TestHttpServer.contentOf(hardLink), "UTF-8"), is("content"));
+    }
+
+    private static String permissions(File file) {
+        // skips file type, as well as a flag of extended attributes
+        return list(file).substring(1, 10);
+    }
+
+    private static String inode(File file) {
+        return ls("-di", file).trim().split("\\s+")[0];
+    }
+
+    private static String list(File file) {
+        return ls("-ld", file);
+    }
+
+    private static String ls(String options, File file) {
+        return Spacelift.task(CommandTool.class)
+            .programName("ls")
+            .parameters(options, file.getAbsolutePath())
+            .execute().await().output().get(0);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.archive;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.arquillian.spacelift.task.text.ReplacementTuple;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+
+public class EntryNameRemappingTest {
+
+    private static final String[] NAMES = {
+        "dist/bin/run.sh", "/dist/bin/run.sh", "//dist/bin", "dist", "/dist", "dist/", "/", "", "dist\\bin\\run.bat",
+        "a/b\nc/d", "a\n/b/c", "dist//bin", ".\\dist/bin", "./dist/bin/"};
+
+    @Test
+    public void cutdirsMatchesRegularExpression() {
+        List<ReplacementTuple<?>> replacements = new ArrayList<ReplacementTuple<?>>();
+        replacements.add(tuple(UncompressTool.CUT_DIR_PATTERN, UncompressTool.CUT_DIR_REPLACEMENT));
+        assertSameAsReplaceAll(replacements);
+
+        replacements.add(tuple(UncompressTool.CUT_DIR_PATTERN, UncompressTool.CUT_DIR_REPLACEMENT));
+        assertSameAsReplaceAll(replacements);
+    }
+
+    @Test
+    public void remapsAreAppliedInOrder() {
+        List<ReplacementTuple<?>> replacements = new ArrayList<ReplacementTuple<?>>();
+        replacements.add(tuple("bin/", "sbin/"));
+        replacements.add(tuple(UncompressTool.CUT_DIR_PATTERN, UncompressTool.CUT_DIR_REPLACEMENT));
+        replacements.add(tuple("^s(.*)$", "$1-s"));
+        assertSameAsReplaceAll(replacements);
+
+        Assert.assertThat(EntryNameRemapping.compile(replacements).remap("dist/bin/run.sh"), is("bin/run.sh-s"));
+    }
+
+    @Test
+    public void nullNameIsKept() {
+        List<ReplacementTuple<?>> replacements = new ArrayList<ReplacementTuple<?>>();
+        Assert.assertThat(EntryNameRemapping.compile(replacements).remap(null), nullValue());
+    }
+
+    private static void assertSameAsReplaceAll(List<ReplacementTuple<?>> replacements) {
+        EntryNameRemapping remapping = EntryNameRemapping.compile(replacements);
+        for (String name : NAMES) {
+            // the way entries were renamed before replacements were compiled
+            String expected = name.replaceAll("\\\\", "/");
+            for (ReplacementTuple<?> replacement : replacements) {
+                expected = expected.replaceAll(replacement.getRegex(), replacement.getReplacement());
+            }
+            Assert.assertThat(name, remapping.remap(name), is(expected));
+        }
+    }
+
+    private static ReplacementTuple<?> tuple(String regex, String replacement) {
+        ReplacementTuple<Object> tuple = new ReplacementTuple<Object>(null, regex);
+        tuple.with(replacement);
+        return tuple;
+    }
+}
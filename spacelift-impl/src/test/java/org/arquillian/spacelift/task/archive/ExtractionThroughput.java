@@ -0,0 +1,154 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.archive;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Random;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.arquillian.spacelift.Spacelift;
+
+/**
+ * Compares sequential extraction of zip and tar.gz archives by {@link UnzipTool} and {@link UntarTool} with the
+ * parallel one. This is not run as a part of the test suite, run it as:
+ *
+ * <pre>
+ * java -cp ... org.arquillian.spacelift.task.archive.ExtractionThroughput [size in MB] [threads] [rounds]
+ * </pre>
+ *
+ * Size defaults to 300 MB split into 1 MB files, threads default to number of processors.
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+public class ExtractionThroughput {
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        File directory = File.createTempFile("spacelift-extraction", "");
+        directory.delete();
+        directory.mkdirs();
+
+        try {
+            File zip = new File(directory, "archive.zip");
+            createZip(zip, size, 1024 * 1024);
+            File tgz = new File(directory, "archive.tgz");
+            createTarGz(tgz, size, 1024 * 1024);
+            File target = new File(directory, "target");
+
+            for (int i = 0; i < rounds; i++) {
+                report("zip, sequential", size, extract(Spacelift.task(zip, UnzipTool.class), target));
+                report("zip, " + threads + " threads", size,
+                    extract(Spacelift.task(zip, UnzipTool.class).threads(threads), target));
+                report("tgz, sequential", size, extract(Spacelift.task(tgz, UntarTool.class), target));
+                report("tgz, " + threads + " threads", size,
+                    extract(Spacelift.task(tgz, UntarTool.class).threads(threads), target));
+            }
+        } finally {
+            delete(directory);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Creates a zip archive of {@code files} files of {@code fileSize} bytes each
+     *
+     * @see #write(ArchiveOutputStream, int, int)
+     */
+    public static void createZip(File archive, int files, int fileSize) throws IOException {
+        ZipArchiveOutputStream zip = new ZipArchiveOutputStream(archive);
+        try {
+            write(zip, files, fileSize);
+        } finally {
+            zip.close();
+        }
+    }
+
+    /**
+     * Creates a gzipped tar archive of {@code files} files of {@code fileSize} bytes each
+     *
+     * @see #write(ArchiveOutputStream, int, int)
+     */
+    public static void createTarGz(File archive, int files, int fileSize) throws IOException {
+        OutputStream os = new GzipCompressorOutputStream(new FileOutputStream(archive));
+        TarArchiveOutputStream tar = new TarArchiveOutputStream(os);
+        try {
+            tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            write(tar, files, fileSize);
+        } finally {
+            tar.close();
+        }
+    }
+
+    /**
+     * Writes files spread over several directories. Content resembles text, so it compresses about as well as sources
+     * or logs do.
+     */
+    static void write(ArchiveOutputStream archive, int files, int fileSize) throws IOException {
+        Random random = new Random(files);
+        byte[] content = new byte[fileSize];
+        for (int i = 0; i < files; i++) {
+            for (int j = 0; j < content.length; j++) {
+                content[j] = (byte) (j % 80 == 79 ? '\n' : 'a' + random.nextInt(16));
+            }
+            String name = "archive/dir" + (i % 7) + "/file" + i + ".txt";
+            ArchiveEntry entry;
+            if (archive instanceof TarArchiveOutputStream) {
+                TarArchiveEntry tarEntry = new TarArchiveEntry(name);
+                tarEntry.setSize(content.length);
+                entry = tarEntry;
+            } else {
+                entry = new ZipArchiveEntry(name);
+            }
+            archive.putArchiveEntry(entry);
+            archive.write(content);
+            archive.closeArchiveEntry();
+        }
+    }
+
+    private static long extract(UncompressTool tool, File target) {
+        delete(target);
+        long start = System.nanoTime();
+        tool.toDir(target).execute().await();
+        return System.nanoTime() - start;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static void report(String name, int size, long nanos) {
+        System.out.println(String.format(Locale.ENGLISH, "%-18s %8.1f MB/s", name, size * 1e9 / nanos));
+    }
+}
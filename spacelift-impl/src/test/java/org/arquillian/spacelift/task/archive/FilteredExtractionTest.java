@@ -0,0 +1,157 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.archive;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.regex.Pattern;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.arquillian.spacelift.Spacelift;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.is;
+
+public class FilteredExtractionTest {
+
+    private static final String[] ENTRIES = {
+        "dist/", "dist/README", "dist/bin/", "dist/bin/run.sh", "dist/modules/", "dist/modules/a/module.jar",
+        "dist/docs/", "dist/docs/guide.html"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void includeFromZip() throws Exception {
+        File extracted = Spacelift.task(zip(), UnzipTool.class)
+            .include("*/bin/**")
+            .include("*/modules/**")
+            .toDir(folder.newFolder("extracted"))
+            .execute().await();
+
+        assertExtracted(extracted, "dist/bin/run.sh", "dist/modules/a/module.jar");
+    }
+
+    @Test
+    public void includeFromZipInParallelWithCutdirs() throws Exception {
+        File extracted = Spacelift.task(zip(), UnzipTool.class)
+            .threads(2)
+            .include("dist/modules/**")
+            .cutdirs()
+            .toDir(folder.newFolder("extracted"))
+            .execute().await();
+
+        assertExtracted(extracted, "modules/a/module.jar");
+    }
+
+    @Test
+    public void singleStarDoesNotCrossDirectories() throws Exception {
+        File extracted = Spacelift.task(zip(), UnzipTool.class)
+            .include("dist/*")
+            .toDir(folder.newFolder("extracted"))
+            .execute().await();
+
+        assertExtracted(extracted, "dist/README");
+        Assert.assertThat(new File(extracted, "dist/bin").isDirectory(), is(true));
+    }
+
+    @Test
+    public void excludeFromTar() throws Exception {
+        File extracted = Spacelift.task(tgz(), UntarTool.class)
+            .exclude("**/docs/**")
+            .exclude(Pattern.compile(".*\\.sh"))
+            .toDir(folder.newFolder("extracted"))
+            .execute().await();
+
+        assertExtracted(extracted, "dist/README", "dist/modules/a/module.jar");
+    }
+
+    @Test
+    public void excludeOverridesIncludeInPipeline() throws Exception {
+        File extracted = Spacelift.task(tgz(), UntarTool.class)
+            .threads(2)
+            .include("dist/**")
+            .exclude("dist/modules/**")
+            .exclude("dist/docs/**")
+            .toDir(folder.newFolder("extracted"))
+            .execute().await();
+
+        assertExtracted(extracted, "dist/README", "dist/bin/run.sh");
+    }
+
+    private static void assertExtracted(File directory, String... expected) {
+        for (String name : expected) {
+            Assert.assertThat(name + " was extracted", new File(directory, name).isFile(), is(true));
+        }
+        Assert.assertThat(count(directory), is(expected.length));
+    }
+
+    private static int count(File directory) {
+        int files = 0;
+        for (File file : directory.listFiles()) {
+            files += file.isDirectory() ? count(file) : 1;
+        }
+        return files;
+    }
+
+    private File zip() throws IOException {
+        File archive = folder.newFile("dist.zip");
+        ZipArchiveOutputStream zip = new ZipArchiveOutputStream(archive);
+        try {
+            for (String name : ENTRIES) {
+                write(zip, new ZipArchiveEntry(name), name);
+            }
+        } finally {
+            zip.close();
+        }
+        return archive;
+    }
+
+    private File tgz() throws IOException {
+        File archive = folder.newFile("dist.tgz");
+        TarArchiveOutputStream tar = new TarArchiveOutputStream(new GzipCompressorOutputStream(new FileOutputStream(
+            archive)));
+        try {
+            for (String name : ENTRIES) {
+                // tar created in the directory of the content prefixes entries by ./
+                TarArchiveEntry entry = new TarArchiveEntry("./" + name);
+                entry.setSize(name.endsWith("/") ? 0 : name.length());
+                write(tar, entry, name);
+            }
+        } finally {
+            tar.close();
+        }
+        return archive;
+    }
+
+    private static void write(ArchiveOutputStream archive, ArchiveEntry entry, String name) throws IOException {
+        archive.putArchiveEntry(entry);
+        if (!name.endsWith("/")) {
+            archive.write(name.getBytes("UTF-8"));
+        }
+        archive.closeArchiveEntry();
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.archive;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import org.arquillian.spacelift.Spacelift;
+import org.arquillian.spacelift.execution.ExecutionException;
+import org.arquillian.spacelift.task.net.TestHttpServer;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.is;
+
+public class ParallelUnzipToolTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void parallelExtractionMatchesSequential() throws Exception {
+        File archive = folder.newFile("archive.zip");
+        ExtractionThroughput.createZip(archive, 40, 100 * 1024);
+
+        File sequential = Spacelift.task(archive, UnzipTool.class)
+            .toDir(folder.newFolder("sequential"))
+            .execute().await();
+        File parallel = Spacelift.task(archive, UnzipTool.class)
+            .threads(4)
+            .toDir(folder.newFolder("parallel"))
+            .execute().await();
+
+        assertSameTree(sequential, parallel);
+        Assert.assertThat(new File(parallel, "archive/dir3/file10.txt").isFile(), is(true));
+    }
+
+    @Test
+    public void parallelExtractionWithCutdirs() {
+        File extracted = Spacelift.task(new File("src/test/resources/nested.zip"), UnzipTool.class)
+            .threads(4)
+            .cutdirs()
+            .cutdirs()
+            .toDir(new File(folder.getRoot(), "nested"))
+            .execute().await();
+
+        Assert.assertThat(new File(extracted, "baz").exists(), is(true));
+        Assert.assertThat(new File(extracted, "foo").exists(), is(true));
+    }
+
+    @Test
+    public void parallelExtractionWithRemap() {
+        File extracted = Spacelift.task(new File("src/test/resources/nested.zip"), UnzipTool.class)
+            .threads(4)
+            .remap("zipfolder/").with("")
+            .toDir(new File(folder.getRoot(), "nested"))
+            .execute().await();
+
+        Assert.assertThat(new File(extracted, "bar").exists(), is(true));
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void corruptedArchiveFails() throws Exception {
+        File archive = folder.newFile("corrupted.zip");
+        FileOutputStream os = new FileOutputStream(archive);
+        try {
+            os.write(TestHttpServer.randomContent(4096));
+        } finally {
+            os.close();
+        }
+
+        Spacelift.task(archive, UnzipTool.class)
+            .threads(4)
+            .toDir(folder.newFolder("corrupted"))
+            .execute().await();
+    }
+
+    private static void assertSameTree(File expected, File actual) throws IOException {
+        Assert.assertThat(actual.isDirectory(), is(expected.isDirectory()));
+        if (expected.isDirectory()) {
+            String[] names = expected.list();
+            Arrays.sort(names);
+            String[] actualNames = actual.list();
+            Arrays.sort(actualNames);
+            Assert.assertThat(Arrays.asList(actualNames), is(Arrays.asList(names)));
+            for (String name : names) {
+                assertSameTree(new File(expected, name), new File(actual, name));
+            }
+        } else {
+            Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(actual), TestHttpServer.contentOf(expected)),
+                is(true));
+        }
+    }
+}
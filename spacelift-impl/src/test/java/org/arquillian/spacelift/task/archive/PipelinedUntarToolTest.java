@@ -0,0 +1,151 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.archive;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.arquillian.spacelift.Spacelift;
+import org.arquillian.spacelift.execution.ExecutionException;
+import org.arquillian.spacelift.task.net.TestHttpServer;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.is;
+
+public class PipelinedUntarToolTest {
+
+    // larger than all buffers of the pipeline together
+    private static final byte[] LARGE = TestHttpServer.randomContent(PipelinedExtraction.CHUNK_SIZE
+        * PipelinedExtraction.MAX_CHUNKS + 12345);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void pipelinedExtractionMatchesSequential() throws Exception {
+        File archive = folder.newFile("archive.tgz");
+        ExtractionThroughput.createTarGz(archive, 40, 100 * 1024);
+
+        File sequential = Spacelift.task(archive, UntarTool.class)
+            .toDir(folder.newFolder("sequential"))
+            .execute().await();
+        File pipelined = Spacelift.task(archive, UntarTool.class)
+            .threads(4)
+            .toDir(folder.newFolder("pipelined"))
+            .execute().await();
+
+        assertSameTree(sequential, pipelined);
+        Assert.assertThat(new File(pipelined, "archive/dir3/file10.txt").isFile(), is(true));
+    }
+
+    @Test
+    public void largeAndDuplicateEntries() throws Exception {
+        File archive = folder.newFile("archive.tgz");
+        OutputStream os = new GzipCompressorOutputStream(new FileOutputStream(archive));
+        writeTar(os, "dir/large.bin", LARGE, "dir/empty.txt", new byte[0], "dir/twice.txt", "first".getBytes(),
+            "dir/twice.txt", "second".getBytes());
+
+        File extracted = Spacelift.task(archive, UntarTool.class)
+            .threads(3)
+            .toDir(folder.newFolder("extracted"))
+            .execute().await();
+
+        Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(new File(extracted, "dir/large.bin")), LARGE),
+            is(true));
+        Assert.assertThat(new File(extracted, "dir/empty.txt").length(), is(0L));
+        Assert.assertThat(new String(TestHttpServer.contentOf(new File(extracted, "dir/twice.txt"))), is("second"));
+    }
+
+    @Test
+    public void pipelinedBzip2WithCutdirs() throws Exception {
+        File archive = folder.newFile("archive.tbz");
+        OutputStream os = new BZip2CompressorOutputStream(new FileOutputStream(archive));
+        writeTar(os, "root/a/one.txt", "one".getBytes(), "root/b/two.txt", "two".getBytes());
+
+        File extracted = Spacelift.task(archive, UntarTool.class)
+            .bzip2(true)
+            .threads(2)
+            .cutdirs()
+            .toDir(folder.newFolder("extracted"))
+            .execute().await();
+
+        Assert.assertThat(new String(TestHttpServer.contentOf(new File(extracted, "a/one.txt"))), is("one"));
+        Assert.assertThat(new String(TestHttpServer.contentOf(new File(extracted, "b/two.txt"))), is("two"));
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void truncatedArchiveFails() throws Exception {
+        File complete = folder.newFile("complete.tgz");
+        writeTar(new GzipCompressorOutputStream(new FileOutputStream(complete)), "large.bin", LARGE);
+        byte[] content = TestHttpServer.contentOf(complete);
+
+        File archive = folder.newFile("truncated.tgz");
+        OutputStream os = new FileOutputStream(archive);
+        try {
+            os.write(content, 0, content.length / 2);
+        } finally {
+            os.close();
+        }
+
+        Spacelift.task(archive, UntarTool.class)
+            .threads(2)
+            .toDir(folder.newFolder("truncated"))
+            .execute().await();
+    }
+
+    private static void writeTar(OutputStream os, Object... namesAndContents) throws IOException {
+        TarArchiveOutputStream tar = new TarArchiveOutputStream(os);
+        try {
+            for (int i = 0; i < namesAndContents.length; i += 2) {
+                byte[] content = (byte[]) namesAndContents[i + 1];
+                TarArchiveEntry entry = new TarArchiveEntry((String) namesAndContents[i]);
+                entry.setSize(content.length);
+                tar.putArchiveEntry(entry);
+                tar.write(content);
+                tar.closeArchiveEntry();
+            }
+        } finally {
+            tar.close();
+        }
+    }
+
+    private static void assertSameTree(File expected, File actual) throws IOException {
+        Assert.assertThat(actual.isDirectory(), is(expected.isDirectory()));
+        if (expected.isDirectory()) {
+            String[] names = expected.list();
+            Arrays.sort(names);
+            String[] actualNames = actual.list();
+            Arrays.sort(actualNames);
+            Assert.assertThat(Arrays.asList(actualNames), is(Arrays.asList(names)));
+            for (String name : names) {
+                assertSameTree(new File(expected, name), new File(actual, name));
+            }
+        } else {
+            Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(actual), TestHttpServer.contentOf(expected)),
+                is(true));
+        }
+    }
+}
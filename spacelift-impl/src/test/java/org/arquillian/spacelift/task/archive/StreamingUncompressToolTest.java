@@ -0,0 +1,143 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.archive;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import org.arquillian.spacelift.Spacelift;
+import org.arquillian.spacelift.execution.ExecutionException;
+import org.arquillian.spacelift.task.net.DownloadTool;
+import org.arquillian.spacelift.task.net.TestHttpServer;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.is;
+
+public class StreamingUncompressToolTest {
+
+    static TestHttpServer server;
+
+    static byte[] tgz;
+
+    static byte[] tbz;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        server = TestHttpServer.start();
+        tgz = TestHttpServer.contentOf(new File("src/test/resources/hello.tgz"));
+        tbz = TestHttpServer.contentOf(new File("src/test/resources/hello.tbz"));
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        server.stop();
+    }
+
+    @Test
+    public void extractTarGzWhileDownloading() throws Exception {
+        server.serve("/hello.tgz", tgz);
+
+        File extracted = Spacelift.task(UntarTool.class)
+            .from(Spacelift.task(DownloadTool.class).from(server.url("/hello.tgz")))
+            .toDir(folder.newFolder("hello"))
+            .execute().await();
+
+        Assert.assertThat(new File(extracted, "hello.txt").isFile(), is(true));
+        Assert.assertThat(folder.getRoot().list().length, is(1));
+    }
+
+    @Test
+    public void extractTarBzip2WhileDownloading() throws Exception {
+        server.serve("/hello.tbz", tbz);
+
+        File extracted = Spacelift.task(UntarTool.class)
+            .bzip2(true)
+            .from(Spacelift.task(DownloadTool.class).from(server.url("/hello.tbz")).sha256(sha256(tbz)))
+            .toDir(folder.newFolder("hello"))
+            .execute().await();
+
+        Assert.assertThat(new File(extracted, "hello.txt").isFile(), is(true));
+    }
+
+    @Test
+    public void streamedArchiveIsCached() throws Exception {
+        TestHttpServer.Resource resource = server.serve("/cached/hello.tgz", tgz).etag("\"v1\"");
+        File cache = folder.newFolder("cache");
+
+        for (int i = 0; i < 2; i++) {
+            File extracted = Spacelift.task(UntarTool.class)
+                .from(Spacelift.task(DownloadTool.class).from(server.url("/cached/hello.tgz")).cache(cache))
+                .toDir(folder.newFolder("hello" + i))
+                .execute().await();
+            Assert.assertThat(new File(extracted, "hello.txt").isFile(), is(true));
+        }
+
+        Assert.assertThat(resource.requests(), is(2));
+        Assert.assertThat(resource.notModified(), is(1));
+    }
+
+    @Test
+    public void streamedArchiveIsCachedByChecksum() throws Exception {
+        TestHttpServer.Resource resource = server.serve("/verified/hello.tgz", tgz);
+        File cache = folder.newFolder("cache");
+
+        for (int i = 0; i < 2; i++) {
+            Spacelift.task(UntarTool.class)
+                .from(Spacelift.task(DownloadTool.class).from(server.url("/verified/hello.tgz")).cache(cache)
+                    .sha256(sha256(tgz)))
+                .toDir(folder.newFolder("hello" + i))
+                .execute().await();
+        }
+
+        Assert.assertThat(resource.requests(), is(1));
+    }
+
+    @Test
+    public void checksumMismatchFailsAndIsNotCached() throws Exception {
+        TestHttpServer.Resource resource = server.serve("/corrupted/hello.tgz", tgz);
+        File cache = folder.newFolder("cache");
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                Spacelift.task(UntarTool.class)
+                    .from(Spacelift.task(DownloadTool.class).from(server.url("/corrupted/hello.tgz")).cache(cache)
+                        .sha256(sha256(tbz)))
+                    .toDir(folder.newFolder("hello" + i))
+                    .execute().await();
+                Assert.fail("Extraction should have failed");
+            } catch (ExecutionException e) {
+                // expected
+            }
+        }
+
+        Assert.assertThat(resource.requests(), is(2));
+    }
+
+    private static String sha256(byte[] content) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+        return String.format("%064x", new BigInteger(1, digest));
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.execution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.arquillian.spacelift.Spacelift;
+import org.arquillian.spacelift.execution.CompletableExecution;
+import org.arquillian.spacelift.execution.Execution;
+import org.arquillian.spacelift.execution.ExecutionException;
+import org.arquillian.spacelift.execution.ExecutionFunction;
+import org.arquillian.spacelift.execution.impl.DeferredExecution;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+
+public class CompletableExecutionTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private static final ExecutionFunction<Integer, Integer> INCREMENT = new ExecutionFunction<Integer, Integer>() {
+        @Override
+        public Integer apply(Integer input) throws Exception {
+            return input + 1;
+        }
+    };
+
+    @Test
+    public void serviceReturnsCompletableExecution() {
+        Assert.assertThat(Spacelift.service().execute(value(1)), instanceOf(CompletableExecution.class));
+    }
+
+    @Test
+    public void longChainDoesNotNeedThreadPerStep() {
+        final CountDownLatch gate = new CountDownLatch(1);
+        CompletableExecution<Integer> execution = (CompletableExecution<Integer>) Spacelift.service().execute(
+            new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    gate.await();
+                    return 0;
+                }
+            });
+
+        // deep enough to overflow the stack if each step completed the next one recursively
+        for (int i = 0; i < 20000; i++) {
+            execution = execution.thenApply(INCREMENT);
+        }
+
+        Assert.assertThat(execution.isFinished(), is(false));
+        gate.countDown();
+        Assert.assertThat(execution.awaitAtMost(5, TimeUnit.SECONDS), is(20000));
+    }
+
+    @Test
+    public void composeExecutions() {
+        CompletableExecution<Integer> execution = DeferredExecution.from(Spacelift.service().execute(value(20)))
+            .thenCompose(new ExecutionFunction<Integer, Execution<Integer>>() {
+                @Override
+                public Execution<Integer> apply(Integer input) throws Exception {
+                    return Spacelift.service().execute(value(input * 2));
+                }
+            })
+            .thenApply(INCREMENT)
+            .thenApply(INCREMENT);
+
+        Assert.assertThat(execution.awaitAtMost(5, TimeUnit.SECONDS), is(42));
+    }
+
+    @Test
+    public void allOfKeepsOrderOfResults() {
+        List<Execution<Integer>> executions = new ArrayList<Execution<Integer>>();
+        for (int i = 0; i < 10; i++) {
+            executions.add(Spacelift.service().schedule(value(i), 10 - i, TimeUnit.MILLISECONDS));
+        }
+
+        Assert.assertThat(DeferredExecution.allOf(executions).awaitAtMost(5, TimeUnit.SECONDS),
+            is(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9)));
+    }
+
+    @Test
+    public void anyOfCompletesWithFirstResult() {
+        List<Execution<Integer>> executions = new ArrayList<Execution<Integer>>();
+        executions.add(Spacelift.service().schedule(value(1), 1, TimeUnit.HOURS));
+        executions.add(Spacelift.service().execute(value(2)));
+
+        Assert.assertThat(DeferredExecution.anyOf(executions).awaitAtMost(5, TimeUnit.SECONDS), is(2));
+        executions.get(0).terminate();
+    }
+
+    @Test
+    public void failurePropagatesThroughChain() {
+        exception.expect(ExecutionException.class);
+        exception.expectMessage(containsString("broken"));
+
+        CompletableExecution<Integer> execution = DeferredExecution.from(Spacelift.service().execute(value(1)))
+            .thenApply(new ExecutionFunction<Integer, Integer>() {
+                @Override
+                public Integer apply(Integer input) throws Exception {
+                    throw new ExecutionException("broken");
+                }
+            })
+            .thenApply(INCREMENT);
+
+        execution.awaitAtMost(5, TimeUnit.SECONDS);
+    }
+
+    private static Callable<Integer> value(final int value) {
+        return new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return value;
+            }
+        };
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.execution;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.arquillian.spacelift.Spacelift;
+import org.arquillian.spacelift.execution.CompletionListener;
+import org.arquillian.spacelift.execution.Execution;
+import org.arquillian.spacelift.execution.ExecutionException;
+import org.arquillian.spacelift.execution.ObservableExecution;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+
+public class CompletionListenerTest {
+
+    @Test
+    public void listenerIsNotifiedAboutResult() throws Exception {
+        final CountDownLatch completed = new CountDownLatch(1);
+        final AtomicReference<String> result = new AtomicReference<String>();
+
+        ((ObservableExecution<String>) Spacelift.service().execute(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                Thread.sleep(100);
+                return "done";
+            }
+        })).onComplete(new CompletionListener<String>() {
+            @Override
+            public void completed(Execution<String> execution) {
+                result.set(execution.await());
+                completed.countDown();
+            }
+        });
+
+        Assert.assertThat(completed.await(5, TimeUnit.SECONDS), is(true));
+        Assert.assertThat(result.get(), is("done"));
+    }
+
+    @Test
+    public void listenerIsNotifiedAboutFailure() throws Exception {
+        final CountDownLatch completed = new CountDownLatch(1);
+        final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+
+        ((ObservableExecution<String>) Spacelift.service().execute(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                throw new IllegalStateException("broken");
+            }
+        })).onComplete(new CompletionListener<String>() {
+            @Override
+            public void completed(Execution<String> execution) {
+                try {
+                    execution.await();
+                } catch (ExecutionException e) {
+                    failure.set(e);
+                }
+                completed.countDown();
+            }
+        });
+
+        Assert.assertThat(completed.await(5, TimeUnit.SECONDS), is(true));
+        Assert.assertThat(failure.get() != null, is(true));
+    }
+
+    @Test
+    public void listenerRegisteredAfterCompletionIsNotifiedImmediately() {
+        Execution<String> execution = Spacelift.service().execute(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return "done";
+            }
+        });
+        execution.await();
+
+        final AtomicReference<Thread> notifiedFrom = new AtomicReference<Thread>();
+        ((ObservableExecution<String>) execution).onComplete(new CompletionListener<String>() {
+            @Override
+            public void completed(Execution<String> execution) {
+                notifiedFrom.set(Thread.currentThread());
+            }
+        });
+
+        Assert.assertThat(notifiedFrom.get(), is(Thread.currentThread()));
+    }
+
+    @Test
+    public void terminatedScheduledExecutionIsNotified() throws Exception {
+        final CountDownLatch completed = new CountDownLatch(1);
+
+        Execution<String> execution = ((ObservableExecution<String>) Spacelift.service().schedule(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return "done";
+            }
+        }, 1, TimeUnit.HOURS)).onComplete(new CompletionListener<String>() {
+            @Override
+            public void completed(Execution<String> execution) {
+                completed.countDown();
+            }
+        });
+
+        execution.terminate();
+
+        Assert.assertThat(completed.await(5, TimeUnit.SECONDS), is(true));
+        Assert.assertThat(execution.hasFailed(), is(true));
+    }
+}
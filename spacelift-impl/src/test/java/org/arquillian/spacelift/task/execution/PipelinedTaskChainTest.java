@@ -0,0 +1,97 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.execution;
+
+import java.util.concurrent.TimeUnit;
+import org.arquillian.spacelift.Spacelift;
+import org.arquillian.spacelift.execution.ExecutionException;
+import org.arquillian.spacelift.task.Task;
+import org.arquillian.spacelift.task.TaskTiming;
+import org.arquillian.spacelift.task.TimedExecution;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.hamcrest.CoreMatchers.is;
+
+public class PipelinedTaskChainTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void passOutputToNextStage() {
+        TimedExecution<Integer> execution = Spacelift.task(Start.class)
+            .then(Sleep.class)
+            .then(Sleep.class)
+            .then(Sleep.class)
+            .executePipelined();
+
+        Assert.assertThat(execution.awaitAtMost(5, TimeUnit.SECONDS), is(3));
+
+        long previousFinished = 0;
+        for (TaskTiming timing : execution.timings()) {
+            Assert.assertThat(timing.isFinished(), is(true));
+            Assert.assertTrue(timing + " started before previous stage finished",
+                timing.startedAfter(TimeUnit.NANOSECONDS) >= previousFinished);
+            previousFinished = timing.finishedAfter(TimeUnit.NANOSECONDS);
+        }
+        Assert.assertTrue(execution.criticalPath(TimeUnit.MILLISECONDS) >= 150);
+    }
+
+    @Test
+    public void manyChainsDoNotBlockThreads() {
+        // each pipeline waits for its first stage without occupying a thread
+        TimedExecution<?>[] executions = new TimedExecution<?>[50];
+        for (int i = 0; i < executions.length; i++) {
+            executions[i] = Spacelift.task(Start.class).then(Sleep.class).then(Sleep.class).executePipelined();
+        }
+        for (TimedExecution<?> execution : executions) {
+            Assert.assertThat((Integer) execution.awaitAtMost(30, TimeUnit.SECONDS), is(2));
+        }
+    }
+
+    @Test
+    public void failedStageFailsPipeline() {
+        exception.expect(ExecutionException.class);
+        Spacelift.task(Start.class).then(Fail.class).then(Sleep.class).executePipelined().awaitAtMost(5,
+            TimeUnit.SECONDS);
+    }
+
+    public static class Start extends Task<Object, Integer> {
+        @Override
+        protected Integer process(Object input) throws Exception {
+            return 0;
+        }
+    }
+
+    public static class Sleep extends Task<Integer, Integer> {
+        @Override
+        protected Integer process(Integer input) throws Exception {
+            Thread.sleep(50);
+            return input + 1;
+        }
+    }
+
+    public static class Fail extends Task<Integer, Integer> {
+        @Override
+        protected Integer process(Integer input) throws Exception {
+            throw new IllegalStateException("Stage failed");
+        }
+    }
+}
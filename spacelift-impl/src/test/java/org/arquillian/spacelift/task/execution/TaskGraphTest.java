@@ -0,0 +1,177 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.execution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.arquillian.spacelift.Spacelift;
+import org.arquillian.spacelift.execution.ExecutionException;
+import org.arquillian.spacelift.task.Task;
+import org.arquillian.spacelift.task.TaskGraph;
+import org.arquillian.spacelift.task.TaskTiming;
+import org.arquillian.spacelift.task.TimedExecution;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+
+public class TaskGraphTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void fanOutAndJoin() {
+        TaskGraph graph = new TaskGraph().concurrency(4);
+        Concurrency.reset();
+
+        TaskGraph.Node<Integer> start = graph.add(Spacelift.task(Start.class));
+        List<TaskGraph.Node<Integer>> branches = new ArrayList<TaskGraph.Node<Integer>>();
+        for (int i = 0; i < 12; i++) {
+            branches.add(graph.add(graph.add(start, Spacelift.task(Increment.class)), Spacelift.task(Increment.class)));
+        }
+        TaskGraph.Node<Integer> sum = graph.join(branches, Spacelift.task(Sum.class));
+
+        TimedExecution<TaskGraph.Results> execution = graph.execute();
+        TaskGraph.Results results = execution.awaitAtMost(10, TimeUnit.SECONDS);
+
+        Assert.assertThat(results.get(start), is(0));
+        Assert.assertThat(results.get(branches.get(5)), is(2));
+        Assert.assertThat(results.get(sum), is(24));
+
+        Assert.assertTrue("Limit exceeded: " + Concurrency.max.get(), Concurrency.max.get() <= 4);
+        Assert.assertTrue("Branches were not executed in parallel", Concurrency.max.get() > 1);
+
+        List<TaskTiming> timings = execution.timings();
+        Assert.assertThat(timings.size(), is(26));
+        for (TaskTiming timing : timings) {
+            Assert.assertThat(timing.isFinished(), is(true));
+        }
+        // critical path consists of start, two increments and sum, 24 increments run in 4 threads take longer
+        long critical = execution.criticalPath(TimeUnit.MILLISECONDS);
+        long elapsed = timings.get(timings.size() - 1).finishedAfter(TimeUnit.MILLISECONDS);
+        Assert.assertTrue("Critical path " + critical + " ms", critical >= 100 && critical < elapsed);
+    }
+
+    @Test
+    public void failureStopsGraph() {
+        TaskGraph graph = new TaskGraph().concurrency(1);
+        TaskGraph.Node<Integer> start = graph.add(Spacelift.task(Start.class));
+        TaskGraph.Node<Integer> failed = graph.add(start, Spacelift.task(Fail.class));
+        graph.add(failed, Spacelift.task(Increment.class));
+
+        TimedExecution<TaskGraph.Results> execution = graph.execute();
+        try {
+            execution.awaitAtMost(5, TimeUnit.SECONDS);
+            Assert.fail("Graph should have failed");
+        } catch (ExecutionException e) {
+            Assert.assertThat(execution.timings().get(2).startedAfter(TimeUnit.NANOSECONDS), is(-1L));
+        }
+    }
+
+    @Test
+    public void nodeOfOtherGraphIsRejected() {
+        TaskGraph.Node<Integer> foreign = new TaskGraph().add(Spacelift.task(Start.class));
+
+        exception.expect(IllegalArgumentException.class);
+        new TaskGraph().join(Arrays.asList(foreign), Spacelift.task(Sum.class));
+    }
+
+    @Test
+    public void chainedTaskWithInputIsRejected() {
+        TaskGraph graph = new TaskGraph();
+        TaskGraph.Node<Integer> start = graph.add(Spacelift.task(Start.class));
+
+        exception.expect(IllegalArgumentException.class);
+        graph.add(start, Spacelift.task(Start.class).then(Increment.class));
+    }
+
+    @Test
+    public void chainedTaskRunsWholeChain() {
+        TaskGraph graph = new TaskGraph();
+        TaskGraph.Node<Integer> chain = graph.add(Spacelift.task(Start.class).then(Increment.class)
+            .then(Increment.class));
+
+        Assert.assertThat(graph.execute().awaitAtMost(10, TimeUnit.SECONDS).get(chain), is(2));
+    }
+
+    @Test
+    public void emptyGraph() {
+        Assert.assertThat(new TaskGraph().execute().awaitAtMost(1, TimeUnit.SECONDS), notNullValue());
+    }
+
+    static class Concurrency {
+        static final AtomicInteger current = new AtomicInteger();
+        static final AtomicInteger max = new AtomicInteger();
+
+        static void reset() {
+            current.set(0);
+            max.set(0);
+        }
+
+        static void enter() {
+            int now = current.incrementAndGet();
+            int seen;
+            while ((seen = max.get()) < now && !max.compareAndSet(seen, now)) {
+            }
+        }
+    }
+
+    public static class Start extends Task<Object, Integer> {
+        @Override
+        protected Integer process(Object input) throws Exception {
+            return 0;
+        }
+    }
+
+    public static class Increment extends Task<Integer, Integer> {
+        @Override
+        protected Integer process(Integer input) throws Exception {
+            Concurrency.enter();
+            try {
+                Thread.sleep(50);
+            } finally {
+                Concurrency.current.decrementAndGet();
+            }
+            return input + 1;
+        }
+    }
+
+    public static class Sum extends Task<List<Integer>, Integer> {
+        @Override
+        protected Integer process(List<Integer> input) throws Exception {
+            int sum = 0;
+            for (Integer i : input) {
+                sum += i;
+            }
+            return sum;
+        }
+    }
+
+    public static class Fail extends Task<Integer, Integer> {
+        @Override
+        protected Integer process(Integer input) throws Exception {
+            throw new IllegalStateException("Node failed");
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.net;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.arquillian.spacelift.Spacelift;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+
+public class BatchDownloadToolTest {
+
+    TestHttpServer server;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void startServer() throws IOException {
+        server = TestHttpServer.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop();
+    }
+
+    @Test
+    public void downloadAll() throws Exception {
+        BatchDownloadTool batch = Spacelift.task(BatchDownloadTool.class);
+        byte[][] contents = new byte[5][];
+        for (int i = 0; i < contents.length; i++) {
+            contents[i] = TestHttpServer.randomContent(100000 + i);
+            server.serve("/file" + i, contents[i]);
+            batch.add(server.url("/file" + i), new File(folder.getRoot(), "file" + i).getPath());
+        }
+
+        BatchDownloadTool.Results results = batch.execute().await();
+
+        Assert.assertThat(results.isSuccessful(), is(true));
+        Assert.assertThat(results.downloads().size(), is(contents.length));
+        long total = 0;
+        for (int i = 0; i < contents.length; i++) {
+            BatchDownloadTool.Download download = results.get(new File(folder.getRoot(), "file" + i));
+            Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(download.file()), contents[i]), is(true));
+            Assert.assertThat(download.bytes(), is((long) contents[i].length));
+            total += contents[i].length;
+        }
+        Assert.assertThat(results.bytes(), is(total));
+        Assert.assertTrue("Throughput is reported", results.throughput() > 0);
+    }
+
+    @Test
+    public void limitConnectionsPerHost() throws Exception {
+        BatchDownloadTool batch = Spacelift.task(BatchDownloadTool.class).connectionsPerHost(2);
+        for (int i = 0; i < 6; i++) {
+            server.serve("/slow" + i, TestHttpServer.randomContent(1000)).delay(100);
+            batch.add(server.url("/slow" + i), new File(folder.getRoot(), "slow" + i).getPath());
+        }
+
+        BatchDownloadTool.Results results = batch.execute().await();
+
+        Assert.assertThat(results.isSuccessful(), is(true));
+        Assert.assertThat(server.maxConcurrentRequests(), is(2));
+        Assert.assertTrue("Downloads were limited, took " + results.duration(TimeUnit.MILLISECONDS) + " ms",
+            results.duration(TimeUnit.MILLISECONDS) >= 300);
+    }
+
+    @Test
+    public void reuseConnections() throws Exception {
+        BatchDownloadTool batch = Spacelift.task(BatchDownloadTool.class).connectionsPerHost(1);
+        for (int i = 0; i < 5; i++) {
+            server.serve("/file" + i, TestHttpServer.randomContent(50000));
+            // redirect responses must not close the connection either
+            server.redirect("/moved" + i, "/file" + i);
+            batch.add(server.url("/moved" + i), new File(folder.getRoot(), "file" + i).getPath());
+        }
+
+        BatchDownloadTool.Results results = batch.execute().await();
+
+        Assert.assertThat(results.isSuccessful(), is(true));
+        Assert.assertThat(server.connections(), is(1));
+    }
+
+    @Test
+    public void failureDoesNotStopOtherDownloads() throws Exception {
+        server.serve("/present", TestHttpServer.randomContent(1000));
+        File missing = new File(folder.getRoot(), "missing");
+        File present = new File(folder.getRoot(), "present");
+
+        BatchDownloadTool.Results results = Spacelift.task(BatchDownloadTool.class)
+            .add(server.url("/missing"), missing.getPath())
+            .add(server.url("/present"), present.getPath())
+            .execute().await();
+
+        Assert.assertThat(results.isSuccessful(), is(false));
+        Assert.assertThat(results.failures().size(), is(1));
+        Assert.assertThat(results.get(missing).isSuccessful(), is(false));
+        Assert.assertThat(results.get(present).isSuccessful(), is(true));
+        Assert.assertThat(results.get(present).failure(), nullValue());
+    }
+}
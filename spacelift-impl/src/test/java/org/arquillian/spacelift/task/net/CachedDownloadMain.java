@@ -0,0 +1,37 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.net;
+
+import java.io.File;
+import org.arquillian.spacelift.Spacelift;
+
+/**
+ * Downloads a file using a cache in a separate JVM
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+public class CachedDownloadMain {
+
+    public static void main(String[] args) {
+        Spacelift.task(DownloadTool.class)
+            .from(args[0])
+            .cache(new File(args[1]))
+            .to(new File(args[2]))
+            .execute().await();
+        System.exit(0);
+    }
+}
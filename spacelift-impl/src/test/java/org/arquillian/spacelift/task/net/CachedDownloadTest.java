@@ -0,0 +1,324 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.net;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.SystemUtils;
+import org.arquillian.spacelift.Spacelift;
+import org.arquillian.spacelift.execution.Execution;
+import org.arquillian.spacelift.task.os.CommandTool;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.is;
+
+public class CachedDownloadTest {
+
+    static TestHttpServer server;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        server = TestHttpServer.start();
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        server.stop();
+    }
+
+    @Test
+    public void revalidateCachedFile() throws IOException {
+        byte[] content = TestHttpServer.randomContent(100000);
+        TestHttpServer.Resource resource = server.serve("/cached.bin", content).etag("\"v1\"");
+        File cache = folder.newFolder("cache");
+
+        File first = download("/cached.bin", cache, "first.bin");
+        File second = download("/cached.bin", cache, "second.bin");
+
+        Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(first), content), is(true));
+        Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(second), content), is(true));
+        Assert.assertThat(resource.requests(), is(2));
+        Assert.assertThat(resource.notModified(), is(1));
+    }
+
+    @Test
+    public void changedFileIsDownloadedAgain() throws IOException {
+        File cache = folder.newFolder("cache");
+        server.serve("/changed.bin", TestHttpServer.randomContent(1000)).etag("\"v1\"");
+        File first = download("/changed.bin", cache, "first.bin");
+
+        byte[] changed = TestHttpServer.randomContent(2000);
+        TestHttpServer.Resource resource = server.serve("/changed.bin", changed).etag("\"v2\"");
+        File second = download("/changed.bin", cache, "second.bin");
+
+        Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(second), changed), is(true));
+        Assert.assertThat(resource.notModified(), is(0));
+        // file provided earlier is not affected
+        Assert.assertThat(first.length(), is(1000L));
+    }
+
+    @Test
+    public void modifiedFileDoesNotAffectCache() throws IOException {
+        byte[] content = TestHttpServer.randomContent(1000);
+        server.serve("/modified.bin", content).etag("\"v1\"");
+        File cache = folder.newFolder("cache");
+
+        File first = download("/modified.bin", cache, "first.bin");
+        RandomAccessFile file = new RandomAccessFile(first, "rw");
+        try {
+            file.write(new byte[100]);
+        } finally {
+            file.close();
+        }
+        File second = download("/modified.bin", cache, "second.bin");
+
+        Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(second), content), is(true));
+    }
+
+    @Test
+    public void linkedFileIsReadOnly() throws IOException {
+
+        // run only on linux
+        Assume.assumeThat(SystemUtils.IS_OS_LINUX, is(true));
+
+        byte[] content = TestHttpServer.randomContent(1000);
+        server.serve("/linked.bin", content).etag("\"v1\"");
+        File cache = folder.newFolder("cache");
+
+        File linked = Spacelift.task(DownloadTool.class)
+            .from(server.url("/linked.bin"))
+            .to(new File(folder.getRoot(), "linked.bin"))
+            .cache(cache)
+            .cacheLinks(true)
+            .execute().await();
+
+        Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(linked), content), is(true));
+        File cached = new DownloadCache(cache, Long.MAX_VALUE).entry(DownloadCache.key(server.url("/linked.bin"), null))
+            .content();
+        // File.canWrite() is true for root regardless of the mode, so inode and mode are listed instead
+        String[] linkedInode = ls("-li", linked);
+        Assert.assertThat(linkedInode[0], is(ls("-li", cached)[0]));
+        Assert.assertThat(linkedInode[1].charAt(2), is('-'));
+    }
+
+    @Test
+    public void linkedFileIsReplacedWithoutModifyingCache() throws IOException {
+        byte[] content = TestHttpServer.randomContent(1000);
+        server.serve("/replaced.bin", content).etag("\"v1\"");
+        byte[] other = TestHttpServer.randomContent(2000);
+        server.serve("/other.bin", other);
+        File cache = folder.newFolder("cache");
+        File output = new File(folder.getRoot(), "replaced.bin");
+
+        Spacelift.task(DownloadTool.class).from(server.url("/replaced.bin")).to(output).cache(cache).cacheLinks(true)
+            .execute().await();
+        Spacelift.task(DownloadTool.class).from(server.url("/other.bin")).to(output).execute().await();
+
+        File cached = new DownloadCache(cache, Long.MAX_VALUE)
+            .entry(DownloadCache.key(server.url("/replaced.bin"), null)).content();
+        Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(output), other), is(true));
+        Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(cached), content), is(true));
+    }
+
+    @Test
+    public void cachedStreamIsOpenedUnderEntryLock() throws Exception {
+        byte[] content = TestHttpServer.randomContent(1000);
+        server.serve("/streamed.bin", content).etag("\"v1\"");
+        final File cache = folder.newFolder("cache");
+        download("/streamed.bin", cache, "streamed.bin");
+
+        DownloadCache.Entry entry = new DownloadCache(cache, Long.MAX_VALUE)
+            .entry(DownloadCache.key(server.url("/streamed.bin"), null));
+        DownloadCache.EntryLock lock = entry.lock();
+        Execution<byte[]> read = Spacelift.service().execute(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                InputStream is = Spacelift.task(DownloadTool.class).from(server.url("/streamed.bin")).cache(cache)
+                    .openStream();
+                try {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[4096];
+                    int read;
+                    while ((read = is.read(buffer)) != -1) {
+                        bytes.write(buffer, 0, read);
+                    }
+                    return bytes.toByteArray();
+                } finally {
+                    is.close();
+                }
+            }
+        });
+        try {
+            // entry cannot be opened while it is being replaced
+            Thread.sleep(200);
+            Assert.assertThat(read.isFinished(), is(false));
+        } finally {
+            lock.release();
+        }
+        Assert.assertThat(Arrays.equals(read.awaitAtMost(5, TimeUnit.SECONDS), content), is(true));
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() throws IOException {
+        File cache = folder.newFolder("cache");
+        server.serve("/a.bin", TestHttpServer.randomContent(1000)).etag("\"a\"");
+        server.serve("/b.bin", TestHttpServer.randomContent(1000)).etag("\"b\"");
+        TestHttpServer.Resource c = server.serve("/c.bin", TestHttpServer.randomContent(1000)).etag("\"c\"");
+
+        download("/a.bin", cache, "a.bin", 2500);
+        setAccessTime(cache, 1000);
+        download("/b.bin", cache, "b.bin", 2500);
+        setAccessTime(cache, 2000);
+        // a is used again, so b becomes the least recently used entry
+        download("/a.bin", cache, "a.bin", 2500);
+        download("/c.bin", cache, "c.bin", 2500);
+
+        Assert.assertThat(presentEntries(cache), is(2));
+        TestHttpServer.Resource b = server.serve("/b.bin", TestHttpServer.randomContent(1000)).etag("\"b\"");
+        download("/b.bin", cache, "b.bin", 2500);
+        Assert.assertThat("b should have been evicted", b.notModified(), is(0));
+        Assert.assertThat(c.requests(), is(1));
+    }
+
+    @Test
+    public void entryInUseIsNotEvicted() throws IOException {
+        File cache = folder.newFolder("cache");
+        server.serve("/used.bin", TestHttpServer.randomContent(1000)).etag("\"used\"");
+        download("/used.bin", cache, "used.bin");
+
+        DownloadCache downloadCache = new DownloadCache(cache, 0);
+        DownloadCache.Entry used = downloadCache.entry(DownloadCache.key(server.url("/used.bin"), null));
+        DownloadCache.Entry other = downloadCache.entry("other");
+
+        DownloadCache.EntryLock lock = used.lockShared();
+        try {
+            downloadCache.evict(other);
+            Assert.assertThat(used.isPresent(), is(true));
+        } finally {
+            lock.release();
+        }
+
+        downloadCache.evict(other);
+        Assert.assertThat(used.isPresent(), is(false));
+        // lock file is kept, so all processes keep locking the same file
+        Assert.assertThat(new File(used.content().getParentFile(), "lock").isFile(), is(true));
+    }
+
+    @Test
+    public void concurrentDownloadsShareTransfer() throws IOException {
+        byte[] content = TestHttpServer.randomContent(100000);
+        TestHttpServer.Resource resource = server.serve("/shared.bin", content).etag("\"v1\"").delay(500);
+        File cache = folder.newFolder("cache");
+
+        List<Execution<File>> executions = new ArrayList<Execution<File>>();
+        for (int i = 0; i < 10; i++) {
+            executions.add(Spacelift.task(DownloadTool.class)
+                .from(server.url("/shared.bin"))
+                .to(new File(folder.getRoot(), "shared-" + i + ".bin"))
+                .cache(cache)
+                .execute());
+        }
+        for (Execution<File> execution : executions) {
+            Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(execution.await()), content), is(true));
+        }
+        Assert.assertThat(resource.requests(), is(1));
+    }
+
+    @Test
+    public void processesShareCacheEntry() throws Exception {
+        byte[] content = TestHttpServer.randomContent(100000);
+        TestHttpServer.Resource resource = server.serve("/processes.bin", content).etag("\"v1\"").delay(2000);
+        File cache = folder.newFolder("cache");
+
+        List<Process> processes = new ArrayList<Process>();
+        for (int i = 0; i < 2; i++) {
+            processes.add(new ProcessBuilder(new File(System.getProperty("java.home"), "bin/java").getAbsolutePath(),
+                "-cp", System.getProperty("java.class.path"), CachedDownloadMain.class.getName(),
+                server.url("/processes.bin"), cache.getAbsolutePath(),
+                new File(folder.getRoot(), "process-" + i + ".bin").getAbsolutePath())
+                .redirectErrorStream(true)
+                .start());
+        }
+        File local = download("/processes.bin", cache, "local.bin");
+
+        for (int i = 0; i < processes.size(); i++) {
+            Assert.assertThat(processes.get(i).waitFor(), is(0));
+            File file = new File(folder.getRoot(), "process-" + i + ".bin");
+            Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(file), content), is(true));
+        }
+        Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(local), content), is(true));
+        // content was transferred only once, other downloads were either waiting for the lock or revalidated
+        Assert.assertThat(resource.requests() - resource.notModified(), is(1));
+    }
+
+    private File download(String path, File cache, String name) {
+        return download(path, cache, name, Long.MAX_VALUE);
+    }
+
+    private File download(String path, File cache, String name, long limit) {
+        return Spacelift.task(DownloadTool.class)
+            .from(server.url(path))
+            .to(new File(folder.getRoot(), name))
+            .cache(cache)
+            .cacheLimit(limit)
+            .execute().await();
+    }
+
+    private static int presentEntries(File cache) {
+        int present = 0;
+        for (File entry : cache.listFiles()) {
+            if (new File(entry, "content").isFile()) {
+                present++;
+            }
+        }
+        return present;
+    }
+
+    // entries without explicit access time are considered newer, file times might have a coarse resolution
+    private static void setAccessTime(File cache, long time) {
+        for (File entry : cache.listFiles()) {
+            File metadata = new File(entry, "metadata");
+            if (metadata.lastModified() > 100000) {
+                metadata.setLastModified(time);
+            }
+        }
+    }
+
+    private static String[] ls(String options, File file) {
+        return Spacelift.task(CommandTool.class)
+            .programName("ls")
+            .parameters(options, file.getAbsolutePath())
+            .execute().await().output().get(0).trim().split("\\s+");
+    }
+}
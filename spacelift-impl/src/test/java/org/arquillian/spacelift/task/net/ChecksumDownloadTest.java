@@ -0,0 +1,192 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.net;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.arquillian.spacelift.Spacelift;
+import org.arquillian.spacelift.execution.ExecutionException;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+
+public class ChecksumDownloadTest {
+
+    private static final byte[] CONTENT = TestHttpServer.randomContent(2 * 1024 * 1024 + 3);
+
+    static TestHttpServer server;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        server = TestHttpServer.start();
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        server.stop();
+    }
+
+    @Test
+    public void verifyChecksums() throws Exception {
+        server.serve("/verified.bin", CONTENT);
+
+        File file = Spacelift.task(DownloadTool.class)
+            .from(server.url("/verified.bin"))
+            .to(new File(folder.getRoot(), "verified.bin"))
+            .sha256(checksum("SHA-256", CONTENT))
+            .md5(checksum("MD5", CONTENT).toUpperCase())
+            .execute().await();
+
+        Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(file), CONTENT), is(true));
+    }
+
+    @Test
+    public void mismatchRemovesContent() throws Exception {
+        server.serve("/corrupted.bin", CONTENT).etag("\"v1\"");
+        File output = new File(folder.getRoot(), "corrupted.bin");
+
+        try {
+            Spacelift.task(DownloadTool.class)
+                .from(server.url("/corrupted.bin"))
+                .to(output)
+                .sha1(checksum("SHA-1", new byte[0]))
+                .execute().await();
+            Assert.fail("Download should have failed");
+        } catch (ExecutionException e) {
+            Assert.assertThat(e.getMessage(), containsString("SHA-1 was " + checksum("SHA-1", CONTENT)));
+        }
+
+        Assert.assertThat(output.exists(), is(false));
+        Assert.assertThat(new File(output.getPath() + ".part").exists(), is(false));
+        Assert.assertThat(new File(output.getPath() + ".part.checkpoint").exists(), is(false));
+    }
+
+    @Test
+    public void verifyResumedDownload() throws Exception {
+        server.serve("/resumed.bin", CONTENT).etag("\"v1\"").failAfter(1024 * 1024 + 100, 1);
+
+        File file = Spacelift.task(DownloadTool.class)
+            .from(server.url("/resumed.bin"))
+            .to(new File(folder.getRoot(), "resumed.bin"))
+            .sha256(checksum("SHA-256", CONTENT))
+            .retries(1)
+            .retryDelay(10, TimeUnit.MILLISECONDS)
+            .execute().await();
+
+        Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(file), CONTENT), is(true));
+    }
+
+    @Test
+    public void verifySegmentedDownload() throws Exception {
+        server.serve("/segmented.bin", CONTENT);
+
+        File file = Spacelift.task(DownloadTool.class)
+            .from(server.url("/segmented.bin"))
+            .to(new File(folder.getRoot(), "segmented.bin"))
+            .segments(4)
+            .sha256(checksum("SHA-256", CONTENT))
+            .execute().await();
+
+        Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(file), CONTENT), is(true));
+    }
+
+    @Test
+    public void cachedContentIsIdentifiedByChecksum() throws Exception {
+        server.serve("/first/cached.bin", CONTENT);
+        TestHttpServer.Resource mirror = server.serve("/mirror/cached.bin", CONTENT);
+        File cache = folder.newFolder("cache");
+
+        Spacelift.task(DownloadTool.class)
+            .from(server.url("/first/cached.bin"))
+            .to(new File(folder.getRoot(), "first.bin"))
+            .cache(cache)
+            .sha256(checksum("SHA-256", CONTENT))
+            .execute().await();
+
+        File file = Spacelift.task(DownloadTool.class)
+            .from(server.url("/mirror/cached.bin"))
+            .to(new File(folder.getRoot(), "second.bin"))
+            .cache(cache)
+            .sha256(checksum("SHA-256", CONTENT))
+            .execute().await();
+
+        Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(file), CONTENT), is(true));
+        Assert.assertThat(mirror.requests(), is(0));
+    }
+
+    @Test
+    public void corruptedCachedContentIsDownloadedAgain() throws Exception {
+        TestHttpServer.Resource resource = server.serve("/corrupted.bin", CONTENT);
+        File cache = folder.newFolder("cache");
+
+        download("/corrupted.bin", cache, "first.bin");
+        for (File entry : cache.listFiles()) {
+            File content = new File(entry, "content");
+            if (content.isFile()) {
+                content.setWritable(true);
+                RandomAccessFile file = new RandomAccessFile(content, "rw");
+                try {
+                    file.write(new byte[100]);
+                } finally {
+                    file.close();
+                }
+            }
+        }
+        File file = download("/corrupted.bin", cache, "second.bin");
+
+        Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(file), CONTENT), is(true));
+        Assert.assertThat(resource.requests(), is(2));
+    }
+
+    @Test
+    public void invalidChecksumIsRejected() {
+        exception.expect(IllegalArgumentException.class);
+        Spacelift.task(DownloadTool.class).sha256("abc");
+    }
+
+    private File download(String path, File cache, String name) throws Exception {
+        return Spacelift.task(DownloadTool.class)
+            .from(server.url(path))
+            .to(new File(folder.getRoot(), name))
+            .cache(cache)
+            .sha256(checksum("SHA-256", CONTENT))
+            .execute().await();
+    }
+
+    private static String checksum(String algorithm, byte[] content) throws Exception {
+        byte[] digest = MessageDigest.getInstance(algorithm).digest(content);
+        return String.format("%0" + (digest.length * 2) + "x", new BigInteger(1, digest));
+    }
+}
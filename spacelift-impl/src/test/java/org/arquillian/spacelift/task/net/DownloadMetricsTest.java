@@ -0,0 +1,148 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.net;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.arquillian.spacelift.Spacelift;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.is;
+
+public class DownloadMetricsTest {
+
+    private static final byte[] CONTENT = TestHttpServer.randomContent(2 * 1024 * 1024 + 5);
+
+    static TestHttpServer server;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        server = TestHttpServer.start();
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        server.stop();
+    }
+
+    @Test
+    public void metricsOfFinishedDownload() throws Exception {
+        server.serve("/metrics.bin", CONTENT);
+        server.redirect("/moved.bin", "/metrics.bin");
+
+        DownloadExecution execution = Spacelift.task(DownloadTool.class)
+            .from(server.url("/moved.bin"))
+            .to(new File(folder.getRoot(), "metrics.bin"))
+            .execute();
+        execution.await();
+
+        DownloadMetrics metrics = execution.metrics();
+        Assert.assertThat(metrics.isFinished(), is(true));
+        Assert.assertThat(metrics.bytes(), is((long) CONTENT.length));
+        Assert.assertThat(metrics.contentLength(), is((long) CONTENT.length));
+        Assert.assertThat(metrics.redirects(), is(1));
+        Assert.assertTrue("Time to first byte is known", metrics.timeToFirstByte(TimeUnit.NANOSECONDS) > 0);
+        Assert.assertTrue("First byte arrived during download",
+            metrics.timeToFirstByte(TimeUnit.NANOSECONDS) <= metrics.duration(TimeUnit.NANOSECONDS));
+        Assert.assertTrue("Throughput is known", metrics.averageThroughput() > 0);
+        Assert.assertTrue("Current throughput is known", metrics.currentThroughput() > 0);
+    }
+
+    @Test
+    public void metricsOfRunningDownload() throws Exception {
+        server.serve("/slow.bin", CONTENT).delay(500);
+
+        DownloadExecution execution = Spacelift.task(DownloadTool.class)
+            .from(server.url("/slow.bin"))
+            .to(new File(folder.getRoot(), "slow.bin"))
+            .execute();
+
+        Assert.assertThat(execution.metrics().isFinished(), is(false));
+        Assert.assertThat(execution.metrics().timeToFirstByte(TimeUnit.MILLISECONDS), is(-1L));
+
+        execution.await();
+        Assert.assertTrue("Time to first byte includes server delay",
+            execution.metrics().timeToFirstByte(TimeUnit.MILLISECONDS) >= 500);
+    }
+
+    @Test
+    public void listenerIsNotified() throws Exception {
+        server.serve("/listened.bin", CONTENT);
+        final List<Long> progress = new CopyOnWriteArrayList<Long>();
+
+        Spacelift.task(DownloadTool.class)
+            .from(server.url("/listened.bin"))
+            .to(new File(folder.getRoot(), "listened.bin"))
+            .listener(new DownloadListener() {
+                @Override
+                public void progress(DownloadMetrics metrics) {
+                    progress.add(metrics.isFinished() ? -metrics.bytes() : metrics.bytes());
+                }
+            })
+            .progressInterval(1, TimeUnit.NANOSECONDS)
+            .execute().await();
+
+        Assert.assertTrue("Progress was reported during download, was " + progress.size(), progress.size() > 2);
+        Assert.assertThat(progress.get(progress.size() - 1), is((long) -CONTENT.length));
+        for (int i = 1; i < progress.size() - 1; i++) {
+            Assert.assertTrue("Progress grows", progress.get(i) >= progress.get(i - 1));
+        }
+    }
+
+    @Test
+    public void segmentsAreCounted() throws Exception {
+        server.serve("/segmented.bin", CONTENT);
+
+        DownloadExecution execution = Spacelift.task(DownloadTool.class)
+            .from(server.url("/segmented.bin"))
+            .to(new File(folder.getRoot(), "segmented.bin"))
+            .segments(4)
+            .execute();
+        execution.await();
+
+        Assert.assertThat(execution.metrics().bytes(), is((long) CONTENT.length));
+    }
+
+    @Test
+    public void attemptsAreCounted() throws Exception {
+        TestHttpServer.Resource resource = server.serve("/retried.bin", CONTENT).etag("\"v1\"")
+            .failAfter(1536 * 1024, 1);
+
+        DownloadExecution execution = Spacelift.task(DownloadTool.class)
+            .from(server.url("/retried.bin"))
+            .to(new File(folder.getRoot(), "retried.bin"))
+            .retries(1)
+            .retryDelay(10, TimeUnit.MILLISECONDS)
+            .execute();
+        execution.await();
+
+        // second attempt continued where the first one failed, metrics cover both of them
+        Assert.assertThat(resource.requests(), is(2));
+        Assert.assertThat(execution.metrics().bytes(), is((long) CONTENT.length));
+    }
+}
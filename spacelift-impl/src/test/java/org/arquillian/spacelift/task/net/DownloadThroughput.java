@@ -0,0 +1,111 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.net;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Locale;
+import org.arquillian.spacelift.Spacelift;
+
+/**
+ * Compares throughput of {@link DownloadTool} with a plain stream copy through a 4 kB buffer, for content served by a
+ * local HTTP server and for a local file. This is not run as a part of the test suite, run it as:
+ *
+ * <pre>
+ * java -Xmx3g -cp ... org.arquillian.spacelift.task.net.DownloadThroughput [size in MB] [rounds]
+ * </pre>
+ *
+ * Size defaults to 1024 MB. HTTP content is held in memory, so the heap has to be larger than the size.
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+public class DownloadThroughput {
+
+    private static final int LEGACY_BUFFER_SIZE = 4096;
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1024;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        File directory = File.createTempFile("spacelift-throughput", "");
+        directory.delete();
+        directory.mkdirs();
+
+        TestHttpServer server = TestHttpServer.start();
+        try {
+            byte[] content = TestHttpServer.randomContent(size * 1024 * 1024);
+            server.serve("/content.bin", content);
+            File source = new File(directory, "source.bin");
+            OutputStream os = new FileOutputStream(source);
+            try {
+                os.write(content);
+            } finally {
+                os.close();
+            }
+            content = null;
+
+            URL http = new URL(server.url("/content.bin"));
+            URL file = source.toURI().toURL();
+            File target = new File(directory, "target.bin");
+
+            for (int i = 0; i < rounds; i++) {
+                report("http, stream copy", size, legacy(http, target));
+                report("http, download tool", size, tool(http, target));
+                report("file, stream copy", size, legacy(file, target));
+                report("file, download tool", size, tool(file, target));
+            }
+        } finally {
+            server.stop();
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+        System.exit(0);
+    }
+
+    private static long legacy(URL url, File target) throws IOException {
+        long start = System.nanoTime();
+        InputStream is = url.openStream();
+        OutputStream os = new FileOutputStream(target);
+        try {
+            byte[] buffer = new byte[LEGACY_BUFFER_SIZE];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                os.write(buffer, 0, read);
+            }
+        } finally {
+            is.close();
+            os.close();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long tool(URL url, File target) {
+        long start = System.nanoTime();
+        Spacelift.task(DownloadTool.class).from(url).to(target).execute().await();
+        return System.nanoTime() - start;
+    }
+
+    private static void report(String name, int size, long nanos) {
+        System.out.println(String.format(Locale.ENGLISH, "%-22s %8.1f MB/s", name, size * 1e9 / nanos));
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.net;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import org.arquillian.spacelift.Spacelift;
+import org.arquillian.spacelift.execution.ExecutionException;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.is;
+
+public class LocalDownloadTest {
+
+    private static final byte[] CONTENT = TestHttpServer.randomContent(3 * 1024 * 1024 + 11);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void copyLocalFile() throws Exception {
+        File source = write(folder.newFile("source.bin"), CONTENT);
+
+        File file = Spacelift.task(DownloadTool.class)
+            .from(source.toURI().toURL())
+            .to(new File(folder.getRoot(), "target.bin"))
+            .sha256(sha256(CONTENT))
+            .execute().await();
+
+        Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(file), CONTENT), is(true));
+        Assert.assertThat(new File(folder.getRoot(), "target.bin.part.checkpoint").exists(), is(false));
+    }
+
+    @Test
+    public void replaceExistingFile() throws Exception {
+        File source = write(folder.newFile("source.bin"), CONTENT);
+        File target = write(folder.newFile("target.bin"), TestHttpServer.randomContent(CONTENT.length * 2));
+
+        File file = Spacelift.task(DownloadTool.class)
+            .from(source.toURI().toURL())
+            .to(target)
+            .execute().await();
+
+        Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(file), CONTENT), is(true));
+    }
+
+    @Test
+    public void copyJarEntry() throws Exception {
+        File jar = folder.newFile("content.jar");
+        JarOutputStream jos = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            jos.putNextEntry(new JarEntry("nested/content.bin"));
+            jos.write(CONTENT);
+            jos.closeEntry();
+        } finally {
+            jos.close();
+        }
+
+        File file = Spacelift.task(DownloadTool.class)
+            .from("jar:" + jar.toURI() + "!/nested/content.bin")
+            .to(new File(folder.getRoot(), "content.bin"))
+            .sha256(sha256(CONTENT))
+            .execute().await();
+
+        Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(file), CONTENT), is(true));
+    }
+
+    @Test
+    public void missingLocalFile() throws Exception {
+        exception.expect(ExecutionException.class);
+        Spacelift.task(DownloadTool.class)
+            .from(new File(folder.getRoot(), "missing.bin").toURI().toURL())
+            .to(new File(folder.getRoot(), "target.bin"))
+            .execute().await();
+    }
+
+    private static File write(File file, byte[] content) throws IOException {
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            fos.write(content);
+        } finally {
+            fos.close();
+        }
+        return file;
+    }
+
+    private static String sha256(byte[] content) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+        return String.format("%064x", new BigInteger(1, digest));
+    }
+}
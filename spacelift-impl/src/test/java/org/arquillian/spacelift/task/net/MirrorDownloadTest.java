@@ -0,0 +1,157 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.net;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import org.arquillian.spacelift.Spacelift;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+
+public class MirrorDownloadTest {
+
+    private static final byte[] CONTENT = TestHttpServer.randomContent(2 * 1024 * 1024 + 5);
+
+    static TestHttpServer primary;
+    static TestHttpServer mirror;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void startServers() throws IOException {
+        primary = TestHttpServer.start();
+        mirror = TestHttpServer.start();
+    }
+
+    @AfterClass
+    public static void stopServers() {
+        primary.stop();
+        mirror.stop();
+    }
+
+    @Test
+    public void fastestMirrorIsUsed() throws Exception {
+        TestHttpServer.Resource slow = primary.serve("/fastest.bin", CONTENT).delay(300);
+        TestHttpServer.Resource fast = mirror.serve("/fastest.bin", CONTENT);
+
+        File file = Spacelift.task(DownloadTool.class)
+            .from(primary.url("/fastest.bin"))
+            .mirror(mirror.url("/fastest.bin"))
+            .to(new File(folder.getRoot(), "fastest.bin"))
+            .execute().await();
+
+        Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(file), CONTENT), is(true));
+        // both were probed, but content was downloaded from the mirror only
+        Assert.assertThat(slow.requests(), is(1));
+        Assert.assertThat(fast.requests(), is(2));
+    }
+
+    @Test
+    public void unavailableSourceIsSkipped() throws Exception {
+        TestHttpServer.Resource available = mirror.serve("/available.bin", CONTENT);
+
+        File file = Spacelift.task(DownloadTool.class)
+            .from(primary.url("/missing.bin"))
+            .mirror("http://127.0.0.1:1/unreachable.bin")
+            .mirror(mirror.url("/available.bin"))
+            .to(new File(folder.getRoot(), "available.bin"))
+            .execute().await();
+
+        Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(file), CONTENT), is(true));
+        Assert.assertThat(available.requests(), is(2));
+    }
+
+    @Test
+    public void failoverResumesOnNextMirror() throws Exception {
+        long failAfter = 512 * 1024;
+        TestHttpServer.Resource broken = primary.serve("/failover.bin", CONTENT).etag("\"primary\"")
+            .failAfter(failAfter, 1);
+        // mirror responds later, so the primary is tried first
+        TestHttpServer.Resource next = mirror.serve("/failover.bin", CONTENT).etag("\"mirror\"").delay(200);
+
+        File file = Spacelift.task(DownloadTool.class)
+            .from(primary.url("/failover.bin"))
+            .mirror(mirror.url("/failover.bin"))
+            .to(new File(folder.getRoot(), "failover.bin"))
+            .execute().await();
+
+        Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(file), CONTENT), is(true));
+        Assert.assertThat(broken.requests(), is(2));
+        List<String> ranges = next.ranges();
+        Assert.assertThat(ranges.get(ranges.size() - 1), is("bytes=" + failAfter + "-"));
+    }
+
+    @Test
+    public void checksumMismatchFailsOver() throws Exception {
+        primary.serve("/corrupted.bin", TestHttpServer.randomContent(1024));
+        mirror.serve("/corrupted.bin", CONTENT).delay(200);
+
+        File file = Spacelift.task(DownloadTool.class)
+            .from(primary.url("/corrupted.bin"))
+            .mirror(mirror.url("/corrupted.bin"))
+            .to(new File(folder.getRoot(), "corrupted.bin"))
+            .sha256(sha256(CONTENT))
+            .execute().await();
+
+        Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(file), CONTENT), is(true));
+    }
+
+    @Test
+    public void statisticsArePersisted() throws Exception {
+        primary.serve("/stats.bin", CONTENT);
+        mirror.serve("/stats.bin", CONTENT);
+        File cache = folder.newFolder("cache");
+
+        Spacelift.task(DownloadTool.class)
+            .from(primary.url("/stats.bin"))
+            .mirror(mirror.url("/stats.bin"))
+            .to(new File(folder.getRoot(), "stats.bin"))
+            .cache(cache)
+            .execute().await();
+
+        Properties stats = new Properties();
+        FileInputStream is = new FileInputStream(new File(cache, MirrorStats.FILE_NAME));
+        try {
+            stats.load(is);
+        } finally {
+            is.close();
+        }
+        String primaryHost = primary.url("").replaceAll("/$", "");
+        String mirrorHost = mirror.url("").replaceAll("/$", "");
+        Assert.assertThat(stats.getProperty(primaryHost + ".latency"), notNullValue());
+        Assert.assertThat(stats.getProperty(mirrorHost + ".latency"), notNullValue());
+    }
+
+    private static String sha256(byte[] content) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+        return String.format("%0" + (digest.length * 2) + "x", new BigInteger(1, digest));
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.net;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.arquillian.spacelift.Spacelift;
+import org.arquillian.spacelift.execution.ExecutionException;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.is;
+
+public class ResumableDownloadTest {
+
+    private static final byte[] CONTENT = TestHttpServer.randomContent(3 * 1024 * 1024 + 5);
+
+    private static final int FAIL_AFTER = 1536 * 1024;
+
+    static TestHttpServer server;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        server = TestHttpServer.start();
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        server.stop();
+    }
+
+    @Test
+    public void retryContinuesFromStoredData() throws IOException {
+        TestHttpServer.Resource resource = server.serve("/retry.bin", CONTENT).etag("\"v1\"").failAfter(FAIL_AFTER, 1);
+        File output = new File(folder.getRoot(), "retry.bin");
+
+        File file = Spacelift.task(DownloadTool.class)
+            .from(server.url("/retry.bin"))
+            .to(output)
+            .retries(2)
+            .retryDelay(10, TimeUnit.MILLISECONDS)
+            .execute().awaitAtMost(30, TimeUnit.SECONDS);
+
+        Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(file), CONTENT), is(true));
+        Assert.assertThat(resource.requests(), is(2));
+        Assert.assertThat(resource.ranges().get(0), is("null"));
+        Assert.assertTrue("Download did not continue: " + resource.ranges(), rangeStart(resource.ranges().get(1)) > 0);
+        assertNoPartialFiles(output);
+    }
+
+    @Test
+    public void nextDownloadContinuesFromStoredData() throws IOException {
+        TestHttpServer.Resource resource = server.serve("/next.bin", CONTENT).etag("\"v1\"").failAfter(FAIL_AFTER, 1);
+        File output = new File(folder.getRoot(), "next.bin");
+
+        try {
+            Spacelift.task(DownloadTool.class).from(server.url("/next.bin")).to(output).execute().await();
+            Assert.fail("Download should have failed");
+        } catch (ExecutionException e) {
+            Assert.assertThat(output.exists(), is(false));
+            Assert.assertThat(new File(output.getPath() + ".part").exists(), is(true));
+            Assert.assertThat(new File(output.getPath() + ".part.checkpoint").exists(), is(true));
+        }
+
+        File file = Spacelift.task(DownloadTool.class).from(server.url("/next.bin")).to(output).execute().await();
+
+        Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(file), CONTENT), is(true));
+        Assert.assertTrue("Download did not continue: " + resource.ranges(), rangeStart(resource.ranges().get(1)) > 0);
+        assertNoPartialFiles(output);
+    }
+
+    @Test
+    public void partialFilesAreRemovedWhenContentIsGone() throws IOException {
+        server.serve("/gone.bin", CONTENT).etag("\"v1\"").failAfter(FAIL_AFTER, 1);
+        File output = new File(folder.getRoot(), "gone.bin");
+
+        try {
+            Spacelift.task(DownloadTool.class).from(server.url("/gone.bin")).to(output).execute().await();
+            Assert.fail("Download should have failed");
+        } catch (ExecutionException e) {
+            Assert.assertThat(new File(output.getPath() + ".part").exists(), is(true));
+        }
+
+        server.remove("/gone.bin");
+        try {
+            Spacelift.task(DownloadTool.class).from(server.url("/gone.bin")).to(output).execute().await();
+            Assert.fail("Download should have failed");
+        } catch (ExecutionException e) {
+            Assert.assertThat(output.exists(), is(false));
+            assertNoPartialFiles(output);
+        }
+    }
+
+    @Test
+    public void changedContentIsDownloadedAgain() throws IOException {
+        server.serve("/changed.bin", CONTENT).etag("\"v1\"").failAfter(FAIL_AFTER, 1);
+        File output = new File(folder.getRoot(), "changed.bin");
+
+        try {
+            Spacelift.task(DownloadTool.class).from(server.url("/changed.bin")).to(output).execute().await();
+            Assert.fail("Download should have failed");
+        } catch (ExecutionException e) {
+            // expected
+        }
+
+        byte[] changed = TestHttpServer.randomContent(2 * 1024 * 1024);
+        TestHttpServer.Resource resource = server.serve("/changed.bin", changed).etag("\"v2\"");
+
+        File file = Spacelift.task(DownloadTool.class).from(server.url("/changed.bin")).to(output).execute().await();
+
+        Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(file), changed), is(true));
+        Assert.assertThat(resource.requests(), is(1));
+        assertNoPartialFiles(output);
+    }
+
+    @Test
+    public void retryContinuesSegments() throws IOException {
+        TestHttpServer.Resource resource = server.serve("/segments.bin", CONTENT).etag("\"v1\"").failAfter(100000, 1);
+        File output = new File(folder.getRoot(), "segments.bin");
+
+        File file = Spacelift.task(DownloadTool.class)
+            .from(server.url("/segments.bin"))
+            .to(output)
+            .segments(4)
+            .retries(2)
+            .retryDelay(10, TimeUnit.MILLISECONDS)
+            .execute().awaitAtMost(30, TimeUnit.SECONDS);
+
+        Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(file), CONTENT), is(true));
+        // second attempt continues the segment that failed from the data that were stored, segments are requested in
+        // parallel, so any of them might be the one that failed
+        List<String> ranges = resource.ranges();
+        List<Long> segmentStarts = new ArrayList<Long>();
+        for (String range : ranges.subList(0, 4)) {
+            segmentStarts.add(range.startsWith("bytes=") ? rangeStart(range) : 0L);
+        }
+        boolean continued = false;
+        for (String range : ranges.subList(4, ranges.size())) {
+            continued |= range.startsWith("bytes=") && !segmentStarts.contains(rangeStart(range));
+        }
+        Assert.assertTrue("No segment did continue: " + ranges, continued);
+        assertNoPartialFiles(output);
+    }
+
+    private static long rangeStart(String range) {
+        return Long.parseLong(range.substring("bytes=".length(), range.indexOf('-')));
+    }
+
+    private static void assertNoPartialFiles(File output) {
+        Assert.assertThat(new File(output.getPath() + ".part").exists(), is(false));
+        Assert.assertThat(new File(output.getPath() + ".part.checkpoint").exists(), is(false));
+    }
+}
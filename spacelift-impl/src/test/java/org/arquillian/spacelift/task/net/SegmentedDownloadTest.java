@@ -0,0 +1,97 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.net;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.arquillian.spacelift.Spacelift;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.is;
+
+public class SegmentedDownloadTest {
+
+    private static final byte[] CONTENT = TestHttpServer.randomContent(3 * 1024 * 1024 + 17);
+
+    static TestHttpServer server;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        server = TestHttpServer.start();
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        server.stop();
+    }
+
+    @Test
+    public void downloadInSegments() throws IOException {
+        TestHttpServer.Resource resource = server.serve("/segmented.bin", CONTENT);
+
+        File file = Spacelift.task(DownloadTool.class)
+            .from(server.url("/segmented.bin"))
+            .to(new File(folder.getRoot(), "segmented.bin"))
+            .segments(4)
+            .execute().awaitAtMost(30, TimeUnit.SECONDS);
+
+        Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(file), CONTENT), is(true));
+        Assert.assertThat(resource.requests(), is(4));
+        Assert.assertThat(resource.ranges(), hasItem("bytes=" + (CONTENT.length / 4 * 3) + "-" + (CONTENT.length - 1)));
+    }
+
+    @Test
+    public void fallBackToSingleStreamWithoutRanges() throws IOException {
+        TestHttpServer.Resource resource = server.serve("/single.bin", CONTENT).acceptRanges(false);
+
+        File file = Spacelift.task(DownloadTool.class)
+            .from(server.url("/single.bin"))
+            .to(new File(folder.getRoot(), "single.bin"))
+            .segments(4)
+            .execute().awaitAtMost(30, TimeUnit.SECONDS);
+
+        Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(file), CONTENT), is(true));
+        Assert.assertThat(resource.requests(), is(1));
+    }
+
+    @Test
+    public void smallFileIsNotSplit() throws IOException {
+        byte[] content = TestHttpServer.randomContent(1000);
+        TestHttpServer.Resource resource = server.serve("/small.bin", content);
+        server.redirect("/redirect", "/small.bin");
+
+        File file = Spacelift.task(DownloadTool.class)
+            .from(server.url("/redirect"))
+            .to(new File(folder.getRoot(), "small.bin"))
+            .segments(4)
+            .execute().awaitAtMost(30, TimeUnit.SECONDS);
+
+        Assert.assertThat(Arrays.equals(TestHttpServer.contentOf(file), content), is(true));
+        Assert.assertThat(resource.requests(), is(1));
+    }
+}
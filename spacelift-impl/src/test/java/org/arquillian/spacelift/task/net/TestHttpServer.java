@@ -0,0 +1,335 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.net;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Embedded HTTP server serving content from memory, so downloads can be tested without network access
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+public class TestHttpServer {
+
+    private static final int CHUNK_SIZE = 65536;
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, Resource> resources = new ConcurrentHashMap<String, Resource>();
+    private final Set<Integer> clientPorts = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+
+    private TestHttpServer(HttpServer server) {
+        this.server = server;
+    }
+
+    /**
+     * Starts a server on a random free port of the loopback interface
+     */
+    public static TestHttpServer start() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        final TestHttpServer testServer = new TestHttpServer(server);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                testServer.clientPorts.add(exchange.getRemoteAddress().getPort());
+                int active = testServer.active.incrementAndGet();
+                while (active > testServer.maxActive.get()) {
+                    testServer.maxActive.compareAndSet(testServer.maxActive.get(), active);
+                }
+                try {
+                    testServer.handle(exchange);
+                } finally {
+                    testServer.active.decrementAndGet();
+                    exchange.close();
+                }
+            }
+        });
+        server.setExecutor(testServer.executor);
+        server.start();
+        return testServer;
+    }
+
+    /**
+     * Creates random content of given size
+     */
+    public static byte[] randomContent(int size) {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+
+    /**
+     * Reads whole file
+     */
+    public static byte[] contentOf(File file) throws IOException {
+        byte[] content = new byte[(int) file.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(content);
+        } finally {
+            in.close();
+        }
+        return content;
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    /**
+     * Returns number of distinct connections that sent a request
+     */
+    public int connections() {
+        return clientPorts.size();
+    }
+
+    /**
+     * Returns the highest number of requests that were being handled at the same time
+     */
+    public int maxConcurrentRequests() {
+        return maxActive.get();
+    }
+
+    /**
+     * Serves content on given path
+     */
+    public Resource serve(String path, byte[] content) {
+        Resource resource = new Resource(content);
+        resources.put(path, resource);
+        return resource;
+    }
+
+    /**
+     * Stops serving given path, so requests on it are answered by 404
+     */
+    public void remove(String path) {
+        resources.remove(path);
+    }
+
+    /**
+     * Redirects requests on given path to another path
+     */
+    public Resource redirect(String path, String target) {
+        Resource resource = new Resource(new byte[0]);
+        resource.redirect = target;
+        resources.put(path, resource);
+        return resource;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        Resource resource = resources.get(exchange.getRequestURI().getPath());
+        if (resource == null) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+
+        Headers request = exchange.getRequestHeaders();
+        resource.requests.incrementAndGet();
+        resource.ranges.add(String.valueOf(request.getFirst("Range")));
+
+        Headers response = exchange.getResponseHeaders();
+        if (resource.redirect != null) {
+            response.set("Location", url(resource.redirect));
+            // server closes connection after responses without a body, so redirect sends one to stay alive
+            byte[] body = ("Moved to " + resource.redirect).getBytes("UTF-8");
+            exchange.sendResponseHeaders(302, body.length);
+            exchange.getResponseBody().write(body);
+            return;
+        }
+
+        byte[] content = resource.content;
+        long from = 0;
+        long to = content.length - 1;
+        int code = 200;
+
+        if (resource.etag != null) {
+            response.set("ETag", resource.etag);
+        }
+
+        String ifNoneMatch = request.getFirst("If-None-Match");
+        if (ifNoneMatch != null && ifNoneMatch.equals(resource.etag)) {
+            resource.notModified.incrementAndGet();
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+
+        // range is ignored if the content has changed
+        String ifRange = request.getFirst("If-Range");
+        boolean sameContent = ifRange == null || ifRange.equals(resource.etag);
+
+        if (resource.acceptRanges) {
+            response.set("Accept-Ranges", "bytes");
+            Matcher range = request.getFirst("Range") != null ? RANGE.matcher(request.getFirst("Range")) : null;
+            if (range != null && range.matches() && sameContent) {
+                from = Long.parseLong(range.group(1));
+                if (range.group(2).length() > 0) {
+                    to = Math.min(to, Long.parseLong(range.group(2)));
+                }
+                if (from > to) {
+                    response.set("Content-Range", "bytes */" + content.length);
+                    exchange.sendResponseHeaders(416, -1);
+                    return;
+                }
+                code = 206;
+                response.set("Content-Range", "bytes " + from + "-" + to + "/" + content.length);
+            }
+        }
+
+        if (resource.delay > 0) {
+            try {
+                Thread.sleep(resource.delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        long length = to - from + 1;
+        exchange.sendResponseHeaders(code, length == 0 ? -1 : length);
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            return;
+        }
+
+        // simulate a connection broken in the middle of the transfer
+        long sent = length;
+        if (resource.failures.getAndDecrement() > 0) {
+            sent = Math.min(length, resource.failAfter);
+        }
+
+        OutputStream os = exchange.getResponseBody();
+        try {
+            // server copies each write into a buffer of its own, so large content is written in chunks
+            for (long offset = 0; offset < sent; offset += CHUNK_SIZE) {
+                os.write(content, (int) (from + offset), (int) Math.min(CHUNK_SIZE, sent - offset));
+            }
+            if (sent < length) {
+                os.flush();
+                // closing the exchange before whole body is written closes the connection
+                exchange.close();
+                return;
+            }
+        } catch (IOException e) {
+            // client closed the connection
+        } finally {
+            try {
+                os.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    /**
+     * Content served on a path
+     */
+    public static class Resource {
+
+        private final byte[] content;
+        private final AtomicInteger requests = new AtomicInteger();
+        private final List<String> ranges = new CopyOnWriteArrayList<String>();
+
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicInteger notModified = new AtomicInteger();
+
+        private volatile boolean acceptRanges = true;
+        private volatile String redirect;
+        private volatile String etag;
+        private volatile long failAfter;
+        private volatile long delay;
+
+        Resource(byte[] content) {
+            this.content = content;
+        }
+
+        public Resource acceptRanges(boolean acceptRanges) {
+            this.acceptRanges = acceptRanges;
+            return this;
+        }
+
+        public Resource etag(String etag) {
+            this.etag = etag;
+            return this;
+        }
+
+        /**
+         * Delays each response with content by {@code millis} milliseconds
+         */
+        public Resource delay(long millis) {
+            this.delay = millis;
+            return this;
+        }
+
+        /**
+         * Breaks connection of next {@code times} responses after {@code bytes} bytes of the body
+         */
+        public Resource failAfter(long bytes, int times) {
+            this.failAfter = bytes;
+            this.failures.set(times);
+            return this;
+        }
+
+        /**
+         * Returns number of requests for the content
+         */
+        public int requests() {
+            return requests.get();
+        }
+
+        /**
+         * Returns number of requests answered by {@code 304 Not Modified}
+         */
+        public int notModified() {
+            return notModified.get();
+        }
+
+        /**
+         * Returns value of {@code Range} header of each request, or {@code "null"} if there was none
+         */
+        public List<String> ranges() {
+            return Collections.unmodifiableList(ranges);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.os;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.SystemUtils;
+import org.arquillian.spacelift.Spacelift;
+import org.arquillian.spacelift.execution.ExecutionException;
+import org.arquillian.spacelift.process.ProcessInteractionBuilder;
+import org.arquillian.spacelift.process.ProcessResult;
+import org.arquillian.spacelift.process.SeparatedProcessResult;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.is;
+
+public class ErrorOutputTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void errorOutputIsMergedByDefault() {
+
+        // run only on linux
+        Assume.assumeThat(SystemUtils.IS_OS_LINUX, is(true));
+
+        ProcessResult result = Spacelift.task(CommandTool.class)
+            .programName("sh")
+            .parameters("-c", "echo out; sleep 0.1; echo err >&2")
+            .execute().await();
+
+        Assert.assertThat(result.output(), is(Arrays.asList("out", "err")));
+        Assert.assertThat(((SeparatedProcessResult) result).errorOutput().isEmpty(), is(true));
+    }
+
+    @Test
+    public void errorOutputIsKeptSeparately() {
+
+        // run only on linux
+        Assume.assumeThat(SystemUtils.IS_OS_LINUX, is(true));
+
+        ProcessResult result = Spacelift.task(CommandTool.class)
+            .programName("sh")
+            .parameters("-c", "echo out; echo err >&2")
+            .redirectErrorStream(false)
+            .execute().await();
+
+        Assert.assertThat(result.output(), is(Arrays.asList("out")));
+        Assert.assertThat(((SeparatedProcessResult) result).errorOutput(), is(Arrays.asList("err")));
+    }
+
+    @Test
+    public void floodedErrorOutputDoesNotBlockStandardOutput() {
+
+        // run only on linux
+        Assume.assumeThat(SystemUtils.IS_OS_LINUX, is(true));
+
+        // error output is much larger than pipe buffer, so process would block if it was not consumed
+        ProcessResult result = Spacelift.task(CommandTool.class)
+            .programName("sh")
+            .parameters("-c", "seq 1 200000 >&2; read answer; echo $answer")
+            .redirectErrorStream(false)
+            .interaction(new ProcessInteractionBuilder().when("200000").replyWith("done\n"))
+            .execute().awaitAtMost(30, TimeUnit.SECONDS);
+
+        Assert.assertThat(((SeparatedProcessResult) result).errorOutput().get(0), is("1"));
+        Assert.assertThat(((SeparatedProcessResult) result).errorOutput(), hasItem("200000done"));
+        Assert.assertThat(result.output(), is(Arrays.asList("done")));
+    }
+
+    @Test
+    public void failureReportsErrorOutput() {
+
+        // run only on linux
+        Assume.assumeThat(SystemUtils.IS_OS_LINUX, is(true));
+
+        exception.expect(ExecutionException.class);
+        exception.expectMessage(containsString("error output:\nbroken"));
+
+        Spacelift.task(CommandTool.class)
+            .programName("sh")
+            .parameters("-c", "echo broken >&2; exit 1")
+            .redirectErrorStream(false)
+            .execute().await();
+    }
+}
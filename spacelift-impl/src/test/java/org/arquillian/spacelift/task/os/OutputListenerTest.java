@@ -0,0 +1,101 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.os;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.SystemUtils;
+import org.arquillian.spacelift.Spacelift;
+import org.arquillian.spacelift.execution.Execution;
+import org.arquillian.spacelift.process.ByteOutputListener;
+import org.arquillian.spacelift.process.OutputListener;
+import org.arquillian.spacelift.process.ProcessResult;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+
+public class OutputListenerTest {
+
+    @Test
+    public void listenersSeeCompleteOutput() {
+
+        // run only on linux
+        Assume.assumeThat(SystemUtils.IS_OS_LINUX, is(true));
+
+        final List<String> lines = new ArrayList<String>();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        ProcessResult result = Spacelift.task(CommandTool.class)
+            .programName("seq")
+            .parameters("1", "1000")
+            .retainLastLines(1)
+            .onLine(new OutputListener() {
+                @Override
+                public void onLine(String line) {
+                    lines.add(line);
+                }
+            })
+            .onBytes(new ByteOutputListener() {
+                @Override
+                public void onBytes(byte[] buffer, int offset, int length) {
+                    bytes.write(buffer, offset, length);
+                }
+            })
+            .execute().await();
+
+        Assert.assertThat(result.output().size(), is(1));
+        Assert.assertThat(lines.size(), is(1000));
+        Assert.assertThat(lines.get(0), is("1"));
+        Assert.assertThat(lines.get(999), is("1000"));
+        Assert.assertThat(bytes.toString().startsWith("1\n2\n3\n"), is(true));
+        Assert.assertThat(bytes.toString().endsWith("999\n1000\n"), is(true));
+    }
+
+    @Test
+    public void lineIsDeliveredBeforeProcessExits() throws Exception {
+
+        // run only on linux
+        Assume.assumeThat(SystemUtils.IS_OS_LINUX, is(true));
+
+        final CountDownLatch ready = new CountDownLatch(1);
+
+        Execution<ProcessResult> execution = Spacelift.task(CommandTool.class)
+            .programName("sh")
+            .parameters("-c", "echo ready; sleep 30")
+            .onLine(new OutputListener() {
+                @Override
+                public void onLine(String line) {
+                    if ("ready".equals(line)) {
+                        ready.countDown();
+                    }
+                }
+            })
+            .execute();
+
+        try {
+            Assert.assertThat(ready.await(10, TimeUnit.SECONDS), is(true));
+            Assert.assertThat(execution.isFinished(), is(false));
+        } finally {
+            execution.terminate();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.os;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+import org.apache.commons.lang3.SystemUtils;
+import org.arquillian.spacelift.Spacelift;
+import org.arquillian.spacelift.execution.CompletionListener;
+import org.arquillian.spacelift.execution.Execution;
+import org.arquillian.spacelift.execution.ObservableExecution;
+import org.arquillian.spacelift.process.ProcessResult;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+
+public class ProcessExitNotificationTest {
+
+    private static final Logger log = Logger.getLogger(ProcessExitNotificationTest.class.getName());
+
+    @Test
+    public void listenerIsNotifiedOnProcessExit() throws Exception {
+
+        // run only on linux
+        Assume.assumeThat(SystemUtils.IS_OS_LINUX, is(true));
+
+        final CountDownLatch exited = new CountDownLatch(1);
+        final AtomicBoolean finished = new AtomicBoolean();
+
+        long start = System.nanoTime();
+        Execution<ProcessResult> execution = ((ObservableExecution<ProcessResult>) Spacelift.task(CommandTool.class)
+            .programName("sleep")
+            .parameters("0.2")
+            .execute())
+            .onComplete(new CompletionListener<ProcessResult>() {
+                @Override
+                public void completed(Execution<ProcessResult> execution) {
+                    finished.set(execution.isFinished());
+                    exited.countDown();
+                }
+            });
+
+        Assert.assertThat(exited.await(5, TimeUnit.SECONDS), is(true));
+        log.info("Exit notified after " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+
+        Assert.assertThat(finished.get(), is(true));
+        Assert.assertThat(execution.await().exitValue(), is(0));
+    }
+
+    @Test
+    public void listenerIsNotifiedAfterOutputIsConsumed() throws Exception {
+
+        // run only on linux
+        Assume.assumeThat(SystemUtils.IS_OS_LINUX, is(true));
+
+        final CountDownLatch completed = new CountDownLatch(1);
+        final AtomicReference<ProcessResult> result = new AtomicReference<ProcessResult>();
+
+        // spawned process keeps output open after the shell exits
+        ((ObservableExecution<ProcessResult>) Spacelift.task(CommandTool.class)
+            .programName("sh")
+            .parameters("-c", "echo done; sleep 2 &")
+            .execute())
+            .onComplete(new CompletionListener<ProcessResult>() {
+                @Override
+                public void completed(Execution<ProcessResult> execution) {
+                    // result must be already available, listener must not wait for the output
+                    try {
+                        result.set(execution.awaitAtMost(1, TimeUnit.MILLISECONDS));
+                    } finally {
+                        completed.countDown();
+                    }
+                }
+            });
+
+        Assert.assertThat(completed.await(5, TimeUnit.SECONDS), is(true));
+        Assert.assertThat(result.get().output().contains("done"), is(true));
+    }
+
+    @Test
+    public void listenerIsNotifiedOnTermination() throws Exception {
+
+        // run only on linux
+        Assume.assumeThat(SystemUtils.IS_OS_LINUX, is(true));
+
+        final CountDownLatch exited = new CountDownLatch(1);
+
+        Execution<ProcessResult> execution = ((ObservableExecution<ProcessResult>) Spacelift.task(CommandTool.class)
+            .programName("sleep")
+            .parameters("30")
+            .execute())
+            .onComplete(new CompletionListener<ProcessResult>() {
+                @Override
+                public void completed(Execution<ProcessResult> execution) {
+                    exited.countDown();
+                }
+            });
+
+        // wait for the process to be started
+        Thread.sleep(200);
+        execution.terminate();
+
+        Assert.assertThat(exited.await(5, TimeUnit.SECONDS), is(true));
+    }
+}
@@ -21,12 +21,15 @@ import org.arquillian.spacelift.Spacelift;
 import org.arquillian.spacelift.execution.Execution;
 import org.arquillian.spacelift.process.ProcessInteractionBuilder;
 import org.arquillian.spacelift.process.ProcessResult;
+import org.junit.Assert;
 import org.junit.Assume;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import static org.hamcrest.CoreMatchers.hasItem;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
 
 /**
  * Checks basic process IO support
@@ -78,4 +81,58 @@ public class ProcessInteractionTest {
 
         cat.await();
     }
+
+    @Test
+    public void terminateOnLinePrefix() {
+        // run only on linux
+        Assume.assumeThat(SystemUtils.IS_OS_LINUX, is(true));
+
+        Execution<ProcessResult> server = Spacelift.task(CommandTool.class)
+            .programName("sh")
+            .parameters("-c", "echo 'Server started in 5s'; sleep 3; echo done")
+            .shouldExitWith(143)
+            .interaction(new ProcessInteractionBuilder()
+                .when("Server started")
+                .terminate())
+            .execute();
+
+        // pattern matches beginning of the first line, so the process is terminated before it sleeps out
+        ProcessResult result = server.await();
+        Assert.assertThat(result.output(), not(hasItem("done")));
+    }
+
+    @Test
+    public void replyToLinePrefix() {
+        // run only on linux
+        Assume.assumeThat(SystemUtils.IS_OS_LINUX, is(true));
+
+        ProcessResult result = Spacelift.task(CommandTool.class)
+            .programName("sh")
+            .parameters("-c", "echo 'Continue? [y/n] (default n)'; read answer; echo \"answer $answer\"")
+            .interaction(new ProcessInteractionBuilder()
+                .when("Continue\\?")
+                .replyWith("y\n"))
+            .execute().await();
+
+        Assert.assertThat(result.output().get(result.output().size() - 1), is("answer y"));
+    }
+
+    @Test
+    public void replyOnceToGrowingLine() {
+        // run only on linux
+        Assume.assumeThat(SystemUtils.IS_OS_LINUX, is(true));
+
+        ProcessResult result = Spacelift.task(CommandTool.class)
+            .programName("bash")
+            .parameters("-c", "echo 'Continue? [y/n]'; read a; read -t 1 b; echo \"got [$a] [$b]\"")
+            .interaction(new ProcessInteractionBuilder()
+                .when("Continue.*")
+                .replyWith("y\n"))
+            .execute().await();
+
+        // reply finishes the line right after the matching prefix, the rest of the output forms a new line
+        Assert.assertThat(result.output(), hasItem("Continuey"));
+        Assert.assertThat(result.output(), hasItem("? [y/n]"));
+        Assert.assertThat(result.output(), hasItem("got [y] []"));
+    }
 }
@@ -0,0 +1,183 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.os;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import org.apache.commons.lang3.SystemUtils;
+import org.arquillian.spacelift.Spacelift;
+import org.arquillian.spacelift.execution.Execution;
+import org.arquillian.spacelift.process.OutputListener;
+import org.arquillian.spacelift.process.ProcessResult;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+
+/**
+ * Checks how consumption of process output scales with number of concurrently running processes
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+public class ProcessIoEngineTest {
+
+    private static final Logger log = Logger.getLogger(ProcessIoEngineTest.class.getName());
+
+    private static final int PROCESSES = 100;
+
+    @Test
+    public void runningProcessesDoNotBlockReaderThreads() throws Exception {
+
+        // run only on linux
+        Assume.assumeThat(SystemUtils.IS_OS_LINUX, is(true));
+
+        int threadsBefore = Thread.activeCount();
+
+        final CountDownLatch started = new CountDownLatch(PROCESSES);
+        List<Execution<ProcessResult>> executions = new ArrayList<Execution<ProcessResult>>();
+        for (int i = 0; i < PROCESSES; i++) {
+            executions.add(Spacelift.task(CommandTool.class)
+                .programName("sh")
+                .parameters("-c", "echo started; sleep 2; echo finished")
+                .onLine(new OutputListener() {
+                    @Override
+                    public void onLine(String line) {
+                        if ("started".equals(line)) {
+                            started.countDown();
+                        }
+                    }
+                })
+                .execute());
+        }
+
+        Assert.assertThat(started.await(30, TimeUnit.SECONDS), is(true));
+
+        // count Spacelift threads blocked in a read
+        int readers = 0;
+        for (Map.Entry<Thread, StackTraceElement[]> entry : Thread.getAllStackTraces().entrySet()) {
+            StackTraceElement[] stack = entry.getValue();
+            if (stack.length == 0 || !stack[0].getMethodName().equals("readBytes")) {
+                continue;
+            }
+            for (StackTraceElement element : stack) {
+                if (element.getClassName().startsWith("org.arquillian.spacelift")) {
+                    readers++;
+                    break;
+                }
+            }
+        }
+
+        log.info("Running " + PROCESSES + " processes with " + (Thread.activeCount() - threadsBefore)
+            + " additional threads, " + readers + " of them blocked reading process output, virtual threads: "
+            + ProcessIoEngine.getInstance().usesVirtualThreads());
+
+        for (Execution<ProcessResult> execution : executions) {
+            Assert.assertThat(execution.awaitAtMost(30, TimeUnit.SECONDS).output().get(1), is("finished"));
+        }
+
+        // no thread is parked in a blocking read of process output while processes are idle
+        if (!ProcessIoEngine.getInstance().usesVirtualThreads()) {
+            Assert.assertThat(readers, is(0));
+        }
+    }
+
+    @Test
+    public void consumeOutputOfManyProcesses() {
+
+        // run only on linux
+        Assume.assumeThat(SystemUtils.IS_OS_LINUX, is(true));
+
+        long start = System.currentTimeMillis();
+
+        List<Execution<ProcessResult>> executions = new ArrayList<Execution<ProcessResult>>();
+        for (int i = 0; i < PROCESSES; i++) {
+            executions.add(Spacelift.task(CommandTool.class)
+                .programName("seq")
+                .parameters("1", "20000")
+                .execute());
+        }
+
+        for (Execution<ProcessResult> execution : executions) {
+            List<String> output = execution.awaitAtMost(60, TimeUnit.SECONDS).output();
+            Assert.assertThat(output.size(), is(20000));
+            Assert.assertThat(output.get(19999), is("20000"));
+        }
+
+        log.info("Consumed output of " + PROCESSES + " concurrent processes in "
+            + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    @Test
+    public void slowListenerDelaysOnlyItsOwnProcess() throws Exception {
+
+        // run only on linux
+        Assume.assumeThat(SystemUtils.IS_OS_LINUX, is(true));
+
+        final CountDownLatch release = new CountDownLatch(1);
+        Execution<ProcessResult> slow = Spacelift.task(CommandTool.class)
+            .programName("seq")
+            .parameters("1", "200000")
+            .onLine(new OutputListener() {
+                @Override
+                public void onLine(String line) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            })
+            .execute();
+
+        try {
+            // output of other processes is consumed while the listener blocks
+            for (int i = 0; i < 10; i++) {
+                List<String> output = Spacelift.task(CommandTool.class)
+                    .programName("seq")
+                    .parameters("1", "20000")
+                    .execute().awaitAtMost(10, TimeUnit.SECONDS).output();
+                Assert.assertThat(output.get(19999), is("20000"));
+            }
+            Assert.assertThat(slow.isFinished(), is(false));
+        } finally {
+            release.countDown();
+        }
+
+        Assert.assertThat(slow.awaitAtMost(30, TimeUnit.SECONDS).output().get(199999), is("200000"));
+    }
+
+    @Test
+    public void outputKeptOpenBySpawnedProcessIsNotAwaited() {
+
+        // run only on linux
+        Assume.assumeThat(SystemUtils.IS_OS_LINUX, is(true));
+
+        long start = System.currentTimeMillis();
+        ProcessResult result = Spacelift.task(CommandTool.class)
+            .programName("sh")
+            .parameters("-c", "sleep 10 & echo done")
+            .execute().awaitAtMost(8, TimeUnit.SECONDS);
+
+        Assert.assertThat(result.output().get(0), is("done"));
+        Assert.assertThat(System.currentTimeMillis() - start < ProcessIoEngine.DRAIN_TIMEOUT_MILLIS + 3000, is(true));
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.os;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.lang3.SystemUtils;
+import org.arquillian.spacelift.Spacelift;
+import org.arquillian.spacelift.execution.ExecutionException;
+import org.arquillian.spacelift.process.ProcessResult;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+
+public class ProcessOutputRetentionTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void retainLastLines() {
+
+        // run only on linux
+        Assume.assumeThat(SystemUtils.IS_OS_LINUX, is(true));
+
+        ProcessResult result = Spacelift.task(CommandTool.class)
+            .programName("seq")
+            .parameters("1", "1000")
+            .retainLastLines(10)
+            .execute().await();
+
+        List<String> output = result.output();
+        Assert.assertThat(output.size(), is(10));
+        Assert.assertThat(output.get(0), is("991"));
+        Assert.assertThat(output.get(9), is("1000"));
+    }
+
+    @Test
+    public void retainLastBytes() {
+
+        // run only on linux
+        Assume.assumeThat(SystemUtils.IS_OS_LINUX, is(true));
+
+        // each line takes 5 bytes including line terminator
+        ProcessResult result = Spacelift.task(CommandTool.class)
+            .programName("seq")
+            .parameters("1000", "1999")
+            .retainLastBytes(50)
+            .execute().await();
+
+        List<String> output = result.output();
+        Assert.assertThat(output.size(), is(10));
+        Assert.assertThat(output.get(9), is("1999"));
+    }
+
+    @Test
+    public void spillOutputToFile() throws IOException {
+
+        // run only on linux
+        Assume.assumeThat(SystemUtils.IS_OS_LINUX, is(true));
+
+        File spill = folder.newFile("spilled-output.log");
+
+        ProcessResult result = Spacelift.task(CommandTool.class)
+            .programName("seq")
+            .parameters("1", "100000")
+            .retainLastLines(1)
+            .spillOutput(spill)
+            .execute().await();
+
+        Assert.assertThat(spill.length(), is(not(0L)));
+
+        List<String> output = result.output();
+        Assert.assertThat(output.size(), is(100000));
+        Assert.assertThat(output.get(0), is("1"));
+        Assert.assertThat(output.get(41999), is("42000"));
+
+        List<String> iterated = new ArrayList<String>();
+        for (String line : output) {
+            iterated.add(line);
+        }
+        Assert.assertThat(iterated.size(), is(100000));
+        Assert.assertThat(iterated.get(99999), is("100000"));
+    }
+
+    @Test
+    public void failureReportsRetainedTail() throws IOException {
+
+        // run only on linux
+        Assume.assumeThat(SystemUtils.IS_OS_LINUX, is(true));
+
+        File spill = folder.newFile("failed-output.log");
+
+        exception.expect(ExecutionException.class);
+        exception.expectMessage(containsString("last 50 lines"));
+        exception.expectMessage(containsString("\n100"));
+
+        Spacelift.task(CommandTool.class)
+            .programName("sh")
+            .parameters("-c", "seq 1 100; exit 3")
+            .spillOutput(spill)
+            .execute().await();
+    }
+}
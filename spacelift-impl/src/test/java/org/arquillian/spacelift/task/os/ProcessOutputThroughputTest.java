@@ -0,0 +1,94 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.arquillian.spacelift.task.os;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import org.apache.commons.lang3.SystemUtils;
+import org.arquillian.spacelift.Spacelift;
+import org.arquillian.spacelift.process.ProcessInteractionBuilder;
+import org.arquillian.spacelift.process.ProcessResult;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.is;
+
+/**
+ * Checks that process output is consumed in blocks and matched by interaction rules in reasonable time
+ *
+ * @author <a href="kpiwko@redhat.com">Karel Piwko</a>
+ */
+public class ProcessOutputThroughputTest {
+
+    private static final Logger log = Logger.getLogger(ProcessOutputThroughputTest.class.getName());
+
+    private static final int LINES = 200000;
+
+    @Test
+    public void matchLargeOutputByReplyAndTerminateRules() {
+
+        // run only on linux
+        Assume.assumeThat(SystemUtils.IS_OS_LINUX, is(true));
+
+        // reply and terminate rules are matched against each prefix of each line, none of them matches the output
+        ProcessInteractionBuilder interaction = new ProcessInteractionBuilder();
+        for (int i = 0; i < 10; i++) {
+            interaction.when("ERROR " + i + ".*").replyWith("retry\n");
+            interaction.when("FATAL " + i + ".*").terminate();
+        }
+        interaction.when(".*FAILED").terminate();
+
+        long start = System.currentTimeMillis();
+
+        ProcessResult result = Spacelift.task(CommandTool.class)
+            .programName("seq")
+            .parameters("-f", "line %g of the output, long enough to be matched after each of its characters", "1",
+                String.valueOf(LINES))
+            .interaction(interaction)
+            .execute()
+            .awaitAtMost(30, TimeUnit.SECONDS);
+
+        long elapsed = System.currentTimeMillis() - start;
+        log.info("Matched " + LINES + " lines in " + elapsed + " ms");
+
+        List<String> output = result.output();
+        Assert.assertThat(output.size(), is(LINES));
+        Assert.assertThat(output.get(LINES - 1).startsWith("line " + LINES + " "), is(true));
+    }
+
+    @Test
+    public void replyToPromptWithoutNewline() {
+
+        // run only on linux
+        Assume.assumeThat(SystemUtils.IS_OS_LINUX, is(true));
+
+        ProcessResult result = Spacelift.task(CommandTool.class)
+            .programName("sh")
+            .parameters("-c", "printf 'Name: '; read name; echo \"Hello $name\"")
+            .interaction(new ProcessInteractionBuilder()
+                .when("Name: ")
+                .replyWith("Spacelift\n"))
+            .execute()
+            .awaitAtMost(10, TimeUnit.SECONDS);
+
+        Assert.assertThat(result.output(), hasItem("Name: Spacelift"));
+        Assert.assertThat(result.output(), hasItem("Hello Spacelift"));
+    }
+}